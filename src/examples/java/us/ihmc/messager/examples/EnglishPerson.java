@@ -21,7 +21,7 @@ public class EnglishPerson
 
    private static final CategoryTheme English = apiFactory.createCategoryTheme("English");
 
-   private static final TypedTopicTheme<String> Speak = apiFactory.createTypedTopicTheme("Speak");
+   private static final TypedTopicTheme<String> Speak = apiFactory.createTypedTopicTheme("Speak", String.class);
    private static final TopicTheme Listen = apiFactory.createTopicTheme("Listen");
 
    public static final Topic<String> SpeakEnglish = Root.child(English).topic(Speak);
@@ -22,7 +22,7 @@ public class FrenchPerson
 
    private static final CategoryTheme French = apiFactory.createCategoryTheme("French");
 
-   private static final TypedTopicTheme<String> Speak = apiFactory.createTypedTopicTheme("Speak");
+   private static final TypedTopicTheme<String> Speak = apiFactory.createTypedTopicTheme("Speak", String.class);
    private static final TopicTheme Listen = apiFactory.createTopicTheme("Listen");
 
    public static final Topic<String> SpeakFrench = Root.child(French).topic(Speak);
@@ -4,6 +4,8 @@ import javafx.beans.InvalidationListener;
 import javafx.beans.property.Property;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
+import us.ihmc.messager.BatchTopicListener;
+import us.ihmc.messager.BatchingTopicListener;
 import us.ihmc.messager.Messager;
 import us.ihmc.messager.MessagerAPIFactory.Topic;
 import us.ihmc.messager.TopicListenerBase;
@@ -147,6 +149,22 @@ public interface JavaFXMessager extends Messager
     */
    <T> void addFXTopicListenerBase(Topic<T> topic, TopicListenerBase<T> listener);
 
+   /**
+    * Same as {@link #addBatchTopicListener(Topic, BatchTopicListener)} but the listener is notified
+    * on the rendering thread, once per tick, of all the data received since the previous tick.
+    *
+    * @param topic    the topic to listen to.
+    * @param listener the listener to be registered.
+    * @return the listener registered to this messager, it can be used to remove the listener with
+    *         {@link #removeFXTopicListener(Topic, TopicListenerBase)}.
+    */
+   default <T> BatchingTopicListener<T> addFXBatchTopicListener(Topic<T> topic, BatchTopicListener<T> listener)
+   {
+      BatchingTopicListener<T> batchingListener = new BatchingTopicListener<>(listener, -1, -1L);
+      addFXTopicListener(topic, batchingListener);
+      return batchingListener;
+   }
+
    /**
     * Removes a listener that was previously registered to this messager.
     *
@@ -1,31 +1,36 @@
 package us.ihmc.messager.javafx;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 
-import org.apache.commons.lang3.mutable.MutableBoolean;
-
 import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
+import us.ihmc.messager.BoundedQueue;
+import us.ihmc.messager.ConflatingSlot;
 import us.ihmc.messager.Message;
 import us.ihmc.messager.MessagerAPIFactory.MessagerAPI;
 import us.ihmc.messager.MessagerAPIFactory.Topic;
 import us.ihmc.messager.SharedMemoryMessager;
 import us.ihmc.messager.SynchronizeHint;
+import us.ihmc.messager.TopicDispatchTable;
 import us.ihmc.messager.TopicListenerBase;
 
 /**
  * Implementation of {@code JavaFXMessager} using shared memory.
+ * <p>
+ * When a topic is conflated, see {@link #setConflated(Topic, boolean)}, the JavaFX listeners only
+ * receive the latest message at each JavaFX pulse.
+ * </p>
  *
  * @author Sylvain Bertrand
  */
 public class SharedMemoryJavaFXMessager extends SharedMemoryMessager implements JavaFXMessager
 {
-   private final Map<Topic<?>, JavaFXTopicListeners> fxTopicListeners = new HashMap<>();
+   /** The JavaFX listeners for each topic. */
+   private final TopicDispatchTable fxDispatchTable;
+   /** The messages waiting for the next JavaFX pulse, indexed by topic ordinal. */
+   private final JavaFXTopicListeners[] fxTopicListeners;
    private final AnimationTimer animationTimer;
-   private boolean readingListeners = false;
 
    /**
     * Creates a new messager.
@@ -45,6 +50,12 @@ public class SharedMemoryJavaFXMessager extends SharedMemoryMessager implements
    public SharedMemoryJavaFXMessager(MessagerAPI messagerAPI, boolean managed)
    {
       super(messagerAPI);
+
+      fxDispatchTable = new TopicDispatchTable(messagerAPI);
+      fxTopicListeners = new JavaFXTopicListeners[messagerAPI.getNumberOfTopics()];
+      for (int i = 0; i < fxTopicListeners.length; i++)
+         fxTopicListeners[i] = new JavaFXTopicListeners(i);
+
       if (managed)
       {
          animationTimer = null;
@@ -60,73 +71,149 @@ public class SharedMemoryJavaFXMessager extends SharedMemoryMessager implements
             }
          };
       }
-
    }
 
+   /**
+    * Notifies the JavaFX listeners of the messages received since the previous JavaFX pulse, and then
+    * flushes the JavaFX batch listeners, see
+    * {@link #addFXBatchTopicListener(Topic, us.ihmc.messager.BatchTopicListener)}.
+    * <p>
+    * The batch listeners that are not JavaFX listeners are only flushed by
+    * {@link #flushBatchTopicListeners()}, on the thread calling it.
+    * </p>
+    */
    public void updateFXTopicListeners()
    {
       try
       {
-         readingListeners = true;
-
-         fxTopicListeners.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+         for (int ordinal = 0; ordinal < fxTopicListeners.length; ordinal++)
+         {
+            if (fxDispatchTable.hasSubscribers(ordinal))
+               fxTopicListeners[ordinal].notifyListeners();
+         }
 
-         for (JavaFXTopicListeners listener : fxTopicListeners.values())
-            listener.notifyListeners();
+         fxDispatchTable.flushBatchListeners();
       }
       catch (Exception e)
       {
          e.printStackTrace();
       }
-      finally
-      {
-         readingListeners = false;
-      }
    }
 
-   /** {@inheritDoc} */
-   @SuppressWarnings("unchecked")
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The messages are kept until the JavaFX listeners are notified.
+    * </p>
+    */
    @Override
-   public <T> void submitMessage(Message<T> message)
+   protected boolean canReuseMessageHolders()
    {
-      super.submitMessage(message);
-      JavaFXTopicListeners topicListeners = fxTopicListeners.get(message.getTopic(messagerAPI));
-      if (topicListeners != null)
-         topicListeners.submitMessage((Message<Object>) message);
+      return false;
    }
 
    /** {@inheritDoc} */
    @Override
-   public <T> void addFXTopicListenerBase(Topic<T> topic, TopicListenerBase<T> listener)
+   protected void submitMessage(int ordinal, Message<Object> message)
    {
-      JavaFXTopicListeners topicListeners = fxTopicListeners.get(topic);
+      super.submitMessage(ordinal, message);
+      if (fxDispatchTable.hasSubscribers(ordinal))
+         fxTopicListeners[ordinal].submitMessage(message);
+   }
 
-      if (topicListeners != null)
-      {
-         topicListeners.addListener(listener);
-         return;
+   /** {@inheritDoc} */
+   @Override
+   protected void submitPrimitive(int ordinal, long bits)
+   {
+      super.submitPrimitive(ordinal, bits);
+      if (fxDispatchTable.hasSubscribers(ordinal))
+      { // The FX listeners are queued, the value has to be boxed.
+         Topic<Object> topic = messagerAPI.getTopic(ordinal);
+         Message<Object> message = new Message<>(topic, topic.getPrimitiveType().toBoxed(bits));
+         message.setSynchronizeHint(SynchronizeHint.NONE);
+         fxTopicListeners[ordinal].submitMessage(message);
       }
+   }
 
-      if (!readingListeners && Platform.isFxApplicationThread())
-      { // It appears to not be enough to check for application thread somehow.
-         topicListeners = new JavaFXTopicListeners(topic);
-         fxTopicListeners.put(topic, topicListeners);
-         topicListeners.addListener(listener);
-      }
-      else // The following one can throw an exception if the JavaFX thread has not started yet.
-      {
-         try
-         { // Postpone the entire registration in case JavaFXSyncedTopicListeners has been created by another caller.
-            runFXLater(() -> addFXTopicListenerBase(topic, listener));
-            return;
-         }
-         catch (IllegalStateException e)
-         { // The JavaFX thread has not started yet, no need to invoke Platform.runLater(...).
-            topicListeners = new JavaFXTopicListeners(topic);
-            fxTopicListeners.put(topic, topicListeners);
-            topicListeners.addListener(listener);
-         }
-      }
+   /**
+    * {@inheritDoc}
+    * <p>
+    * This includes the messages dropped for the JavaFX listeners.
+    * </p>
+    */
+   @Override
+   public long getNumberOfConflatedMessages(Topic<?> topic)
+   {
+      long numberOfConflatedMessages = super.getNumberOfConflatedMessages(topic);
+      numberOfConflatedMessages += getFXTopicListeners(topic).conflatingSlot.getNumberOfConflatedValues();
+      return numberOfConflatedMessages;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The JavaFX listeners of the topic get their own queue with the same capacity and policy.
+    * </p>
+    */
+   @Override
+   public void setBoundedQueue(Topic<?> topic, int capacity, BoundedQueue.OverflowPolicy overflowPolicy)
+   {
+      super.setBoundedQueue(topic, capacity, overflowPolicy);
+      getFXTopicListeners(topic).setBoundedQueue(capacity, overflowPolicy);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * This includes the messages dropped for the JavaFX listeners.
+    * </p>
+    */
+   @Override
+   public long getNumberOfDroppedMessages(Topic<?> topic)
+   {
+      long numberOfDroppedMessages = super.getNumberOfDroppedMessages(topic);
+      BoundedQueue<Message<Object>> fxQueue = getFXBoundedQueue(topic);
+      if (fxQueue != null)
+         numberOfDroppedMessages += fxQueue.getNumberOfDroppedElements();
+      return numberOfDroppedMessages;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * This includes the messages waiting for the JavaFX listeners.
+    * </p>
+    */
+   @Override
+   public int getNumberOfQueuedMessages(Topic<?> topic)
+   {
+      int numberOfQueuedMessages = super.getNumberOfQueuedMessages(topic);
+      BoundedQueue<Message<Object>> fxQueue = getFXBoundedQueue(topic);
+      if (fxQueue != null)
+         numberOfQueuedMessages += fxQueue.size();
+      return numberOfQueuedMessages;
+   }
+
+   private BoundedQueue<Message<Object>> getFXBoundedQueue(Topic<?> topic)
+   {
+      return getFXTopicListeners(topic).boundedMessageQueue;
+   }
+
+   private JavaFXTopicListeners getFXTopicListeners(Topic<?> topic)
+   {
+      return fxTopicListeners[fxDispatchTable.getTopicOrdinal(topic)];
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The listener can be registered from any thread, it is notified from the next JavaFX pulse.
+    * </p>
+    */
+   @Override
+   public <T> void addFXTopicListenerBase(Topic<T> topic, TopicListenerBase<T> listener)
+   {
+      fxDispatchTable.addListener(fxDispatchTable.getTopicOrdinal(topic), listener);
    }
 
    protected void runFXLater(Runnable fxTask)
@@ -178,27 +265,14 @@ public class SharedMemoryJavaFXMessager extends SharedMemoryMessager implements
    @Override
    public <T> boolean removeFXTopicListener(Topic<T> topic, TopicListenerBase<T> listener)
    {
-      JavaFXTopicListeners topicListeners = fxTopicListeners.get(topic);
-      if (topicListeners == null)
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
          return false;
 
-      if (!readingListeners && Platform.isFxApplicationThread())
-      {
-         return topicListeners.removeListener(listener);
-      }
-      else
-      {
-         try
-         { // The following one can throw an exception if the JavaFX thread has not started yet.
-            MutableBoolean result = new MutableBoolean();
-            runFXAndWait(() -> result.setValue(topicListeners.removeListener(listener)));
-            return result.booleanValue();
-         }
-         catch (IllegalStateException e)
-         { // The JavaFX thread has not started yet, no need to invoke Platform.runLater(...).
-            return topicListeners.removeListener(listener);
-         }
-      }
+      boolean removed = fxDispatchTable.removeListener(ordinal, listener);
+      if (removed && !fxDispatchTable.hasSubscribers(ordinal))
+         fxTopicListeners[ordinal].dispose();
+      return removed;
    }
 
    /** {@inheritDoc} */
@@ -214,59 +288,91 @@ public class SharedMemoryJavaFXMessager extends SharedMemoryMessager implements
    @Override
    public void closeMessager()
    {
-      fxTopicListeners.values().forEach(JavaFXTopicListeners::dispose);
-      fxTopicListeners.clear();
+      for (JavaFXTopicListeners topicListeners : fxTopicListeners)
+         topicListeners.dispose();
+      fxDispatchTable.clear();
       super.closeMessager();
       if (animationTimer != null)
          animationTimer.stop();
    }
 
-   @SuppressWarnings("unchecked")
+   /**
+    * Holds the messages of a single topic until they are delivered to the JavaFX listeners.
+    */
    protected class JavaFXTopicListeners
    {
       protected final ConcurrentLinkedQueue<Message<Object>> messageQueue = new ConcurrentLinkedQueue<>();
-      protected final ConcurrentLinkedQueue<TopicListenerBase<Object>> listeners = new ConcurrentLinkedQueue<>();
+      /** Used instead of the queue when the topic is conflated. */
+      protected final ConflatingSlot<Message<Object>> conflatingSlot = new ConflatingSlot<>();
+      /** Used instead of the unbounded queue when a bounded queue is set for the topic. */
+      protected volatile BoundedQueue<Message<Object>> boundedMessageQueue = null;
+      private final int ordinal;
+      private final Topic<?> topic;
 
-      protected JavaFXTopicListeners(Topic<?> topic)
+      protected JavaFXTopicListeners(int ordinal)
       {
+         this.ordinal = ordinal;
+         topic = messagerAPI.getTopic(ordinal);
       }
 
-      protected void submitMessage(Message<Object> message)
+      protected void setBoundedQueue(int capacity, BoundedQueue.OverflowPolicy overflowPolicy)
       {
-         if (message.getSynchronizeHint() == SynchronizeHint.SYNCHRONOUS)
-            runFXAndWait(() -> listeners.forEach(listener -> listener.receivedMessageForTopic(message)));
-         else
-            messageQueue.add(message);
+         BoundedQueue<Message<Object>> previousQueue = boundedMessageQueue;
+         boundedMessageQueue = capacity > 0 ? new BoundedQueue<>(capacity, overflowPolicy) : null;
+
+         if (previousQueue != null)
+         { // Not dropping the messages that were pending.
+            Message<Object> message;
+            while ((message = previousQueue.poll()) != null)
+               messageQueue.add(message);
+         }
       }
 
-      protected void addListener(TopicListenerBase<?> listener)
+      protected void submitMessage(Message<Object> message)
       {
-         listeners.add((TopicListenerBase<Object>) listener);
+         if (message.getSynchronizeHint() == SynchronizeHint.SYNCHRONOUS)
+            runFXAndWait(() -> fxDispatchTable.dispatch(ordinal, message));
+         else if (isConflated(topic))
+            conflatingSlot.offer(message);
+         else if (!offerToBoundedQueue(message))
+            messageQueue.add(message);
       }
 
-      protected boolean removeListener(TopicListenerBase<?> listener)
+      private boolean offerToBoundedQueue(Message<Object> message)
       {
-         return listeners.remove(listener);
+         BoundedQueue<Message<Object>> currentQueue = boundedMessageQueue;
+         if (currentQueue == null)
+            return false;
+         currentQueue.offer(message);
+         return true;
       }
 
       protected void notifyListeners()
       {
-         while (!messageQueue.isEmpty())
+         Message<Object> newMessage;
+
+         while ((newMessage = messageQueue.poll()) != null)
+            fxDispatchTable.dispatch(ordinal, newMessage);
+
+         BoundedQueue<Message<Object>> currentQueue = boundedMessageQueue;
+         if (currentQueue != null)
          {
-            Message<Object> newMessage = messageQueue.poll();
-            listeners.forEach(listener -> listener.receivedMessageForTopic(newMessage));
+            while ((newMessage = currentQueue.poll()) != null)
+               fxDispatchTable.dispatch(ordinal, newMessage);
          }
-      }
 
-      protected boolean isEmpty()
-      {
-         return listeners.isEmpty();
+         newMessage = conflatingSlot.poll();
+         if (newMessage != null)
+            fxDispatchTable.dispatch(ordinal, newMessage);
       }
 
       protected void dispose()
       {
          messageQueue.clear();
-         listeners.clear();
+         conflatingSlot.poll();
+         BoundedQueue<Message<Object>> currentQueue = boundedMessageQueue;
+         if (currentQueue != null)
+            currentQueue.clear();
       }
    }
 }
@@ -0,0 +1,250 @@
+package us.ihmc.messager.kryo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import us.ihmc.messager.MessagerAPIFactory.MessagerAPI;
+import us.ihmc.messager.MessagerAPIFactory.Topic;
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
+
+/**
+ * Network description of the API of a {@link KryoMessager}, sent to the remote side when connecting
+ * and before any message.
+ * <p>
+ * It carries the topics of the API in wire order such that the remote side can resolve the topic
+ * ordinals sent afterwards even if its API differs, and the classes registered with Kryo such that
+ * inconsistent registrations are detected when connecting instead of when exchanging messages.
+ * </p>
+ */
+public class APIHandshake
+{
+   /**
+    * Hash of the API, equal on both sides if and only if they share the same topics, payload types
+    * and class registrations.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public long fingerprint;
+   /**
+    * The ID of each topic, indexed by wire ordinal, see {@link TopicIDSerializer}.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public int[][] topicIDs;
+   /**
+    * The name of each topic, indexed by wire ordinal.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public String[] topicNames;
+   /**
+    * The name of the payload type of each topic, {@code null} if unknown, indexed by wire ordinal.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public String[] payloadTypeNames;
+   /**
+    * The name of the classes registered by the messager, in the order of their names.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public String[] registeredClassNames;
+   /**
+    * The ID each class of {@link #registeredClassNames} is registered with.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public int[] registeredClassIDs;
+
+   /** Empty constructor only used for serialization purposes. */
+   public APIHandshake()
+   {
+   }
+
+   /**
+    * Creates the handshake describing the given API.
+    *
+    * @param messagerAPI          the API to describe.
+    * @param topicIDSerializer    the serializer defining the wire order of the topics.
+    * @param registeredClassIDs   the ID of the classes registered by the messager, by class name.
+    */
+   public APIHandshake(MessagerAPI messagerAPI, TopicIDSerializer topicIDSerializer, Map<String, Integer> registeredClassIDs)
+   {
+      int numberOfTopics = messagerAPI.getNumberOfTopics();
+      topicIDs = topicIDSerializer.getTopicIDsInWireOrder();
+      topicNames = new String[numberOfTopics];
+      payloadTypeNames = new String[numberOfTopics];
+
+      for (int wireOrdinal = 0; wireOrdinal < numberOfTopics; wireOrdinal++)
+      {
+         Topic<?> topic = messagerAPI.getTopic(topicIDSerializer.getLocalOrdinal(wireOrdinal));
+         topicNames[wireOrdinal] = topic.getName();
+         payloadTypeNames[wireOrdinal] = topic.getPayloadType() == null ? null : topic.getPayloadType().getName();
+      }
+
+      registeredClassNames = new String[registeredClassIDs.size()];
+      this.registeredClassIDs = new int[registeredClassIDs.size()];
+      int index = 0;
+
+      for (Entry<String, Integer> entry : new TreeMap<>(registeredClassIDs).entrySet())
+      {
+         registeredClassNames[index] = entry.getKey();
+         this.registeredClassIDs[index] = entry.getValue();
+         index++;
+      }
+
+      fingerprint = computeFingerprint();
+   }
+
+   /**
+    * Computes a 64-bit FNV-1a hash of the content of this handshake.
+    */
+   private long computeFingerprint()
+   {
+      long hash = 0xcbf29ce484222325L;
+
+      for (int wireOrdinal = 0; wireOrdinal < topicIDs.length; wireOrdinal++)
+      {
+         for (int id : topicIDs[wireOrdinal])
+            hash = hash(hash, id);
+         hash = hash(hash, topicNames[wireOrdinal]);
+         hash = hash(hash, payloadTypeNames[wireOrdinal]);
+      }
+
+      for (int i = 0; i < registeredClassNames.length; i++)
+      {
+         hash = hash(hash, registeredClassNames[i]);
+         hash = hash(hash, registeredClassIDs[i]);
+      }
+
+      return hash;
+   }
+
+   private static long hash(long hash, String value)
+   {
+      if (value == null)
+         return hash(hash, -1);
+
+      for (byte b : value.getBytes(StandardCharsets.UTF_8))
+         hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+      return hash(hash, value.length());
+   }
+
+   private static long hash(long hash, int value)
+   {
+      for (int shift = 0; shift < 32; shift += 8)
+         hash = (hash ^ ((value >>> shift) & 0xFF)) * 0x100000001b3L;
+      return hash;
+   }
+
+   /**
+    * Checks that the remote side is compatible with the local side described by this handshake.
+    * <p>
+    * The two sides are compatible when the topics they share carry the same payload types, when the
+    * classes they both registered were assigned the same IDs, and when no ID is assigned to a different
+    * class on each side. An ID differs when the name of a class hashes to an ID already in use, see
+    * {@link KryoMessager#registerClasses(Class...)}.
+    * </p>
+    *
+    * @param remote the handshake received from the remote side.
+    * @return the description of the first incompatibility found, or {@code null} if the two sides
+    *         are compatible.
+    */
+   public String findIncompatibility(APIHandshake remote)
+   {
+      for (int remoteOrdinal = 0; remoteOrdinal < remote.topicIDs.length; remoteOrdinal++)
+      {
+         int localOrdinal = indexOf(remote.topicIDs[remoteOrdinal]);
+         if (localOrdinal < 0)
+            continue;
+
+         String localType = payloadTypeNames[localOrdinal];
+         String remoteType = remote.payloadTypeNames[remoteOrdinal];
+
+         if (localType != null && remoteType != null && !localType.equals(remoteType))
+            return "The topic " + topicNames[localOrdinal] + " carries " + localType + " locally but " + remoteType + " remotely.";
+      }
+
+      Map<String, Integer> localIDs = new HashMap<>();
+      Map<Integer, String> localClasses = new HashMap<>();
+
+      for (int i = 0; i < registeredClassNames.length; i++)
+      {
+         localIDs.put(registeredClassNames[i], registeredClassIDs[i]);
+         localClasses.put(registeredClassIDs[i], registeredClassNames[i]);
+      }
+
+      for (int i = 0; i < remote.registeredClassNames.length; i++)
+      {
+         String remoteClass = remote.registeredClassNames[i];
+         int remoteID = remote.registeredClassIDs[i];
+         Integer localID = localIDs.get(remoteClass);
+         String localClass = localClasses.get(remoteID);
+
+         if (localID != null && localID.intValue() != remoteID)
+            return "The class " + remoteClass + " is registered with the ID " + localID + " locally but " + remoteID + " remotely.";
+         if (localClass != null && !localClass.equals(remoteClass))
+            return "The ID " + remoteID + " is registered for " + localClass + " locally but " + remoteClass + " remotely.";
+      }
+
+      return null;
+   }
+
+   /**
+    * Gets the names of the topics of this handshake that are not part of the other one.
+    *
+    * @param other the other handshake.
+    * @return the names of the topics missing in {@code other}.
+    */
+   public String[] findMissingTopics(APIHandshake other)
+   {
+      List<String> missingTopics = new ArrayList<>();
+
+      for (int wireOrdinal = 0; wireOrdinal < topicIDs.length; wireOrdinal++)
+      {
+         if (other.indexOf(topicIDs[wireOrdinal]) < 0)
+            missingTopics.add(topicNames[wireOrdinal]);
+      }
+
+      return missingTopics.toArray(new String[missingTopics.size()]);
+   }
+
+   private int indexOf(int[] topicID)
+   {
+      for (int wireOrdinal = 0; wireOrdinal < topicIDs.length; wireOrdinal++)
+      {
+         if (Arrays.equals(topicIDs[wireOrdinal], topicID))
+            return wireOrdinal;
+      }
+      return -1;
+   }
+
+   /**
+    * Tests whether the remote side has a topic.
+    *
+    * @param topicID the ID of the topic.
+    * @return {@code true} if the topic is part of the API described by this handshake.
+    */
+   public boolean containsTopic(TopicID topicID)
+   {
+      return indexOf(topicID.getID()) >= 0;
+   }
+}
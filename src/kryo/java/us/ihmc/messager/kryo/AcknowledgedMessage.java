@@ -0,0 +1,47 @@
+package us.ihmc.messager.kryo;
+
+/**
+ * Network representation of a message which sender awaits the acknowledgement of, see
+ * {@link KryoMessager#submitMessageAndAwait(us.ihmc.messager.MessagerAPIFactory.Topic, Object)}.
+ * <p>
+ * Once the receiving side has notified its listeners of the message, it acknowledges it by sending
+ * back a {@link MessageAcknowledgement}.
+ * </p>
+ */
+public class AcknowledgedMessage
+{
+   /**
+    * The ID used to match the acknowledgement with the message, IDs are increasing with each message
+    * sent.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public long correlationID;
+   /**
+    * The message, either a {@link us.ihmc.messager.Message} or a {@link PrimitiveMessage}.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public Object message;
+
+   /** Empty constructor only used for serialization purposes. */
+   public AcknowledgedMessage()
+   {
+   }
+
+   /**
+    * Creates a new message.
+    * 
+    * @param correlationID the ID used to match the acknowledgement with the message.
+    * @param message       the message to send.
+    */
+   public AcknowledgedMessage(long correlationID, Object message)
+   {
+      this.correlationID = correlationID;
+      this.message = message;
+   }
+}
@@ -3,10 +3,17 @@ package us.ihmc.messager.kryo;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.function.BiConsumer;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.function.Supplier;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.KryoBufferOverflowException;
+import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.minlog.Log;
 import org.apache.commons.lang3.mutable.MutableBoolean;
 
@@ -32,23 +39,59 @@ import us.ihmc.log.LogTools;
  * Uses lamdas and callbacks pretty heavily since Kryonet Client and Server do not share any
  * interfaces.
  * </p>
+ * <p>
+ * When created with a UDP port, objects can also be sent over UDP with {@link #sendUDP(Object)},
+ * which falls back to TCP for the objects that do not fit in a single datagram.
+ * </p>
+ * <p>
+ * Each connection is identified by the ID Kryonet assigns to it, such that a server can address its
+ * clients individually with {@link #sendTCP(int, Object)} and {@link #sendUDP(int, Object)}.
+ * </p>
  */
 public class KryoAdapter
 {
    private Server server;
    private Client client;
+   private final Kryo kryo;
+   /**
+    * Mirror of {@link #kryo} only used to serialize the objects to send over UDP before handing them
+    * to Kryonet, such that it is not used concurrently with the serialization performed by Kryonet.
+    */
+   private final Kryo udpKryo = new Kryo();
+   /** The buffer the objects to send over UDP are serialized into, it overflows past the maximum size. */
+   private Output udpOutput = newUDPOutput(DEFAULT_MAX_UDP_PACKET_SIZE);
+   /** The last object serialized into {@link #udpOutput}, reused for each send. */
+   private final SerializedObject serializedObject = new SerializedObject();
 
    private Listener kryoListener = new KryoListener();
-   private Consumer receivedConsumer;
+   private BiConsumer<Integer, Object> receivedConsumer;
    private final ArrayList<Consumer> connectionStateListeners = new ArrayList<>();
+   private final ArrayList<BiConsumer<Integer, Boolean>> connectionListeners = new ArrayList<>();
 
    private final BooleanSupplier isConnectedSupplier;
+   /** Whether a connection was established since creation, even if it has been closed since. */
+   private volatile boolean hasConnected = false;
    private final RunnableThatThrows updater;
    private final RunnableThatThrows connector;
    private final RunnableThatThrows disconnector;
+   private final IntConsumer connectionDisconnector;
    private final Consumer tcpSender;
+   private final Consumer udpSender;
+   private final BiConsumer<Integer, Object> connectionTCPSender;
+   private final BiConsumer<Integer, Object> connectionUDPSender;
+   private final BooleanSupplier isUDPConnectedSupplier;
    private final Supplier<InetSocketAddress> remoteAddressSupplier;
 
+   /**
+    * Default maximum size in bytes of the objects sent over UDP, such that a datagram fits in the
+    * typical Ethernet MTU without being fragmented.
+    */
+   public static final int DEFAULT_MAX_UDP_PACKET_SIZE = 1400;
+   /** The ID {@link SerializedObject} is registered with, below the IDs used by the messagers. */
+   private static final int SERIALIZED_OBJECT_REGISTRATION_ID = 99;
+   /** The number of bytes the ID of {@link SerializedObject} takes on the wire. */
+   private static final int SERIALIZED_OBJECT_HEADER_SIZE = 1;
+
    private enum Type { Server, Client }
    private final Type type;
 
@@ -88,7 +131,19 @@ public class KryoAdapter
     */
    public static KryoAdapter createServer(int tcpPort)
    {
-      return new KryoAdapter(tcpPort);
+      return createServer(tcpPort, -1);
+   }
+
+   /**
+    * Create a Kryonet server also accepting UDP connections.
+    *
+    * @param tcpPort
+    * @param udpPort the UDP port, or {@code -1} to only use TCP.
+    * @return server
+    */
+   public static KryoAdapter createServer(int tcpPort, int udpPort)
+   {
+      return new KryoAdapter(tcpPort, udpPort);
    }
 
    /**
@@ -100,57 +155,123 @@ public class KryoAdapter
     */
    public static KryoAdapter createClient(String serverAddress, int tcpPort)
    {
-      return new KryoAdapter(serverAddress, tcpPort);
+      return createClient(serverAddress, tcpPort, -1);
+   }
+
+   /**
+    * Create a Kryonet client also connecting over UDP.
+    *
+    * @param serverAddress
+    * @param tcpPort
+    * @param udpPort the UDP port of the server, or {@code -1} to only use TCP.
+    * @return client
+    */
+   public static KryoAdapter createClient(String serverAddress, int tcpPort, int udpPort)
+   {
+      return new KryoAdapter(serverAddress, tcpPort, udpPort);
    }
 
-   private KryoAdapter(int tcpPort)
+   private KryoAdapter(int tcpPort, int udpPort)
    {
       server = new Server(Conversions.megabytesToBytes(8), Conversions.megabytesToBytes(2));
       server.addListener(kryoListener);
-      server.getKryo().setRegistrationRequired(false);
-      server.getKryo().addDefaultSerializer(Collections.unmodifiableList(Collections.emptyList()).getClass(), UnmodifiableListSerializer.class);
+      kryo = server.getKryo();
+      configureKryo();
       isConnectedSupplier = () -> server.getConnections().size() > 0;
       updater = () -> server.update(250);
-      connector = () -> server.bind(tcpPort);
+      connector = () -> server.bind(tcpPort, udpPort);
       disconnector = () -> server.close();
+      connectionDisconnector = connectionID ->
+      {
+         for (Connection connection : server.getConnections())
+         {
+            if (connection.getID() == connectionID)
+               connection.close();
+         }
+      };
       tcpSender = message -> server.sendToAllTCP(message);
+      udpSender = message ->
+      {
+         for (Connection connection : server.getConnections())
+         {
+            if (connection.getRemoteAddressUDP() != null)
+               connection.sendUDP(message);
+            else
+               connection.sendTCP(message);
+         }
+      };
+      isUDPConnectedSupplier = () -> server.getConnections().stream().anyMatch(connection -> connection.getRemoteAddressUDP() != null);
+      connectionTCPSender = (connectionID, message) -> server.sendToTCP(connectionID, message);
+      connectionUDPSender = (connectionID, message) ->
+      {
+         for (Connection connection : server.getConnections())
+         {
+            if (connection.getID() != connectionID)
+               continue;
+
+            if (connection.getRemoteAddressUDP() != null)
+               connection.sendUDP(message);
+            else
+               connection.sendTCP(message);
+         }
+      };
       remoteAddressSupplier = () -> server.getConnections().stream().findFirst().get().getRemoteAddressTCP();
       type = Type.Server;
    }
 
-   private KryoAdapter(String serverAddress, int tcpPort)
+   private KryoAdapter(String serverAddress, int tcpPort, int udpPort)
    {
       client = new Client(Conversions.megabytesToBytes(8), Conversions.megabytesToBytes(2));
       client.addListener(kryoListener);
-      client.getKryo().setRegistrationRequired(false);
-      client.getKryo().addDefaultSerializer(Collections.unmodifiableList(Collections.emptyList()).getClass(), UnmodifiableListSerializer.class);
+      kryo = client.getKryo();
+      configureKryo();
       isConnectedSupplier = () -> client.isConnected();
       updater = () -> client.update(250);
-      connector = () -> client.connect(5000, serverAddress, tcpPort);
+      connector = () -> client.connect(5000, serverAddress, tcpPort, udpPort);
       disconnector = () -> client.close();
+      connectionDisconnector = connectionID -> client.close();
       tcpSender = message -> client.sendTCP(message);
+      udpSender = message -> client.sendUDP(message);
+      isUDPConnectedSupplier = () -> client.isConnected() && client.getRemoteAddressUDP() != null;
+      // A client has a single connection, the server's.
+      connectionTCPSender = (connectionID, message) -> client.sendTCP(message);
+      connectionUDPSender = (connectionID, message) -> client.sendUDP(message);
       remoteAddressSupplier = () -> client.getRemoteAddressTCP();
       type = Type.Client;
    }
 
+   private void configureKryo()
+   {
+      for (Kryo kryo : new Kryo[] {this.kryo, udpKryo})
+      {
+         kryo.setRegistrationRequired(false);
+         kryo.addDefaultSerializer(Collections.unmodifiableList(Collections.emptyList()).getClass(), UnmodifiableListSerializer.class);
+      }
+
+      kryo.register(SerializedObject.class, new SerializedObjectSerializer(), SERIALIZED_OBJECT_REGISTRATION_ID);
+   }
+
    class KryoListener implements Listener
    {
       @Override
       public void received(Connection connection, Object object)
       {
-         receivedConsumer.accept(object);
+         receivedConsumer.accept(connection.getID(), object);
       }
 
       @Override
       public void connected(Connection connection)
       {
+         hasConnected = true;
          connectionStateListeners.forEach(connectionStateListener -> connectionStateListener.accept(true));
+         connectionListeners.forEach(connectionListener -> connectionListener.accept(connection.getID(), true));
       }
 
       @Override
       public void disconnected(Connection connection)
       {
          connectionStateListeners.forEach(connectionStateListener -> connectionStateListener.accept(false));
+         connectionListeners.forEach(connectionListener -> connectionListener.accept(connection.getID(), false));
       }
    }
 
@@ -196,7 +317,7 @@ public class KryoAdapter
 
    private void waitForConnection()
    {
-      while (!isConnectedSupplier.getAsBoolean())
+      while (!hasConnected())
       {
          LogTools.trace("Updating...");
          ExceptionTools.handle(updater, DefaultExceptionHandler.RUNTIME_EXCEPTION);
@@ -214,6 +335,19 @@ public class KryoAdapter
       ExceptionTools.handle(disconnector, DefaultExceptionHandler.RUNTIME_EXCEPTION);
    }
 
+   /**
+    * Closes a single connection, the server keeping the other ones open.
+    * <p>
+    * A client has a single connection, it is then closed whatever the connection ID.
+    * </p>
+    *
+    * @param connectionID the ID of the connection to close.
+    */
+   public void disconnect(int connectionID)
+   {
+      connectionDisconnector.accept(connectionID);
+   }
+
    /**
     * <p>
     * Update that must be called to receive any data and, for a server, to accept new connections.
@@ -245,6 +379,265 @@ public class KryoAdapter
       tcpSender.accept(object);
    }
 
+   /**
+    * Serializes and sends the object over the network using TCP to a single connection. Non-blocking.
+    * <p>
+    * A client has a single connection, the connection ID is then ignored.
+    * </p>
+    *
+    * @param connectionID the ID of the connection to send the object to.
+    * @param object       to send
+    */
+   public void sendTCP(int connectionID, Object object)
+   {
+      connectionTCPSender.accept(connectionID, object);
+   }
+
+   /**
+    * Serializes and sends the object over the network using UDP if possible, TCP otherwise.
+    * Non-blocking.
+    * <p>
+    * The object is sent over TCP when this adapter was created without UDP port, when the remote side
+    * is not connected over UDP, or when the serialized object is larger than
+    * {@link #getMaxUDPPacketSize()}. An object sent over UDP may be lost, duplicated or received out
+    * of order.
+    * </p>
+    *
+    * @param object to send
+    * @return {@code true} if the object was sent over UDP, {@code false} if it was sent over TCP.
+    */
+   public boolean sendUDP(Object object)
+   {
+      if (isUDPConnected())
+      {
+         synchronized (udpKryo)
+         {
+            if (serializeForUDP(object))
+            {
+               udpSender.accept(serializedObject);
+               return true;
+            }
+         }
+      }
+
+      tcpSender.accept(object);
+      return false;
+   }
+
+   /**
+    * Serializes and sends the object over the network using UDP if possible, TCP otherwise, to a
+    * single connection, see {@link #sendUDP(Object)}. Non-blocking.
+    * <p>
+    * A client has a single connection, the connection ID is then ignored.
+    * </p>
+    *
+    * @param connectionID the ID of the connection to send the object to.
+    * @param object       to send
+    * @return {@code true} if the object was sent over UDP, {@code false} if it was sent over TCP.
+    */
+   public boolean sendUDP(int connectionID, Object object)
+   {
+      if (isUDPConnected())
+      {
+         synchronized (udpKryo)
+         {
+            if (serializeForUDP(object))
+            {
+               connectionUDPSender.accept(connectionID, serializedObject);
+               return true;
+            }
+         }
+      }
+
+      connectionTCPSender.accept(connectionID, object);
+      return false;
+   }
+
+   /**
+    * Serializes the object once into {@link #serializedObject}, such that its size is known and its
+    * bytes are then copied by Kryonet instead of serializing the object again.
+    *
+    * @return {@code true} if the object fits in a datagram.
+    */
+   private boolean serializeForUDP(Object object)
+   {
+      udpOutput.reset();
+
+      try
+      {
+         udpKryo.writeClassAndObject(udpOutput, object);
+      }
+      catch (KryoBufferOverflowException e)
+      {
+         return false;
+      }
+
+      serializedObject.buffer = udpOutput.getBuffer();
+      serializedObject.length = udpOutput.position();
+      return true;
+   }
+
+   /**
+    * Sets the maximum size in bytes of the serialized objects sent over UDP, the larger ones are sent
+    * over TCP. It defaults to {@value #DEFAULT_MAX_UDP_PACKET_SIZE}.
+    *
+    * @param maxUDPPacketSize the maximum size in bytes of a datagram payload.
+    */
+   public void setMaxUDPPacketSize(int maxUDPPacketSize)
+   {
+      if (maxUDPPacketSize <= 0)
+         throw new IllegalArgumentException("The maximum UDP packet size has to be strictly positive, was: " + maxUDPPacketSize);
+
+      synchronized (udpKryo)
+      {
+         udpOutput = newUDPOutput(maxUDPPacketSize);
+      }
+   }
+
+   /**
+    * Gets the maximum size in bytes of the serialized objects sent over UDP.
+    *
+    * @return the maximum size in bytes of a datagram payload.
+    */
+   public int getMaxUDPPacketSize()
+   {
+      synchronized (udpKryo)
+      {
+         return udpOutput.getMaxCapacity() + SERIALIZED_OBJECT_HEADER_SIZE;
+      }
+   }
+
+   private static Output newUDPOutput(int maxUDPPacketSize)
+   {
+      // Room is left for the ID of the serialized object.
+      int capacity = Math.max(maxUDPPacketSize - SERIALIZED_OBJECT_HEADER_SIZE, 0);
+      return new Output(capacity, capacity);
+   }
+
+   /**
+    * Whether objects can currently be sent over UDP, i.e. whether this adapter was created with a UDP
+    * port and at least one remote side is connected over UDP.
+    *
+    * @return {@code true} if connected over UDP.
+    */
+   public boolean isUDPConnected()
+   {
+      return isUDPConnectedSupplier.getAsBoolean();
+   }
+
+   /**
+    * Tests whether a class is registered with Kryo.
+    *
+    * @param type the class to test.
+    * @return {@code true} if the class is registered.
+    */
+   public boolean isRegistered(Class<?> type)
+   {
+      return kryo.getClassResolver().getRegistration(type) != null;
+   }
+
+   /**
+    * Tests whether a class is registered with Kryo under the given ID.
+    *
+    * @param id the registration ID to test.
+    * @return {@code true} if a class is registered with this ID.
+    */
+   public boolean isRegistrationIDUsed(int id)
+   {
+      return kryo.getClassResolver().getRegistration(id) != null;
+   }
+
+   /**
+    * Registers a class with Kryo such that it is identified by the given ID instead of its fully
+    * qualified name when serialized.
+    * <p>
+    * The other side has to register the same class with the same ID before the first message is
+    * exchanged. A class that is already registered, for instance by Kryo itself, keeps its current
+    * registration.
+    * </p>
+    *
+    * @param type the class to register.
+    * @param id   the ID to identify the class with.
+    * @return {@code true} if the class was registered, {@code false} if it was already registered.
+    */
+   public boolean registerClass(Class<?> type, int id)
+   {
+      return registerClass(type, null, id);
+   }
+
+   /**
+    * Registers a class with Kryo along with the serializer to use for it, see
+    * {@link #registerClass(Class, int)}.
+    *
+    * @param type       the class to register.
+    * @param serializer the serializer to use for the class, or {@code null} to use Kryo's default.
+    * @param id         the ID to identify the class with.
+    * @return {@code true} if the class was registered, {@code false} if it was already registered.
+    */
+   public <T> boolean registerClass(Class<T> type, Serializer<T> serializer, int id)
+   {
+      if (isRegistered(type))
+         return false;
+
+      if (serializer == null)
+      {
+         kryo.register(type, id);
+         synchronized (udpKryo)
+         {
+            udpKryo.register(type, id);
+         }
+      }
+      else
+      {
+         kryo.register(type, serializer, id);
+         synchronized (udpKryo)
+         {
+            udpKryo.register(type, serializer, id);
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Sets whether the classes to serialize have to be registered with
+    * {@link #registerClass(Class, int)}. When not required, instances of unregistered classes are
+    * serialized along with their fully qualified class name. Not required by default.
+    *
+    * @param registrationRequired whether serializing an unregistered class is an error.
+    */
+   public void setRegistrationRequired(boolean registrationRequired)
+   {
+      kryo.setRegistrationRequired(registrationRequired);
+      synchronized (udpKryo)
+      {
+         udpKryo.setRegistrationRequired(registrationRequired);
+      }
+   }
+
+   /**
+    * Whether the classes to serialize have to be registered.
+    *
+    * @return {@code true} if serializing an unregistered class is an error.
+    */
+   public boolean isRegistrationRequired()
+   {
+      return kryo.isRegistrationRequired();
+   }
+
+   /**
+    * Tests whether a connection was established since this adapter was created.
+    * <p>
+    * Unlike {@link #isConnected()}, it remains {@code true} once the connection is closed, for
+    * instance when the remote side was found incompatible right after connecting.
+    * </p>
+    *
+    * @return whether a connection was ever established.
+    */
+   public boolean hasConnected()
+   {
+      return hasConnected;
+   }
+
    /**
     * If this adapter is connected to a server or client.
     *
@@ -261,6 +654,16 @@ public class KryoAdapter
     * @param receivedConsumer
     */
    public void setReceivedListener(Consumer receivedConsumer)
+   {
+      this.receivedConsumer = (connectionID, object) -> receivedConsumer.accept(object);
+   }
+
+   /**
+    * Subscribe to received messages along with the ID of the connection they were received from.
+    *
+    * @param receivedConsumer
+    */
+   public void setConnectionReceivedListener(BiConsumer<Integer, Object> receivedConsumer)
    {
       this.receivedConsumer = receivedConsumer;
    }
@@ -279,4 +682,50 @@ public class KryoAdapter
    {
       return connectionStateListeners.remove(connectionStateListener);
    }
+
+   /**
+    * Add a connection listener. Will callback with the ID of the connection on connected and
+    * disconnected events.
+    *
+    * @param connectionListener
+    */
+   public void addConnectionListener(BiConsumer<Integer, Boolean> connectionListener)
+   {
+      connectionListeners.add(connectionListener);
+   }
+
+   public boolean removeConnectionListener(BiConsumer<Integer, Boolean> connectionListener)
+   {
+      return connectionListeners.remove(connectionListener);
+   }
+
+   /**
+    * Object already serialized with {@link KryoAdapter#udpKryo}, the receiving side reads the original
+    * object from its bytes.
+    */
+   private static class SerializedObject
+   {
+      private byte[] buffer;
+      private int length;
+   }
+
+   /**
+    * Writes the bytes of a {@link SerializedObject} as is, such that reading them gives back the
+    * original object.
+    */
+   private static class SerializedObjectSerializer extends Serializer<Object>
+   {
+      @Override
+      public void write(Kryo kryo, Output output, Object object)
+      {
+         SerializedObject serializedObject = (SerializedObject) object;
+         output.writeBytes(serializedObject.buffer, 0, serializedObject.length);
+      }
+
+      @Override
+      public Object read(Kryo kryo, Input input, Class<? extends Object> type)
+      {
+         return kryo.readClassAndObject(input);
+      }
+   }
 }
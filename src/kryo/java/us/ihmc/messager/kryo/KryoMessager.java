@@ -3,33 +3,85 @@ package us.ihmc.messager.kryo;
 import static us.ihmc.commons.exception.DefaultExceptionHandler.RUNTIME_EXCEPTION;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
 
+import com.esotericsoftware.kryo.Serializer;
+
 import us.ihmc.commons.exception.ExceptionTools;
 import us.ihmc.commons.thread.ThreadTools;
 import us.ihmc.log.LogTools;
+import us.ihmc.messager.DeliveryMode;
 import us.ihmc.messager.Message;
 import us.ihmc.messager.Messager;
+import us.ihmc.messager.MessagerAPIFactory;
 import us.ihmc.messager.MessagerAPIFactory.MessagerAPI;
 import us.ihmc.messager.MessagerAPIFactory.Topic;
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
 import us.ihmc.messager.MessagerStateListener;
+import us.ihmc.messager.PrimitiveType;
+import us.ihmc.messager.RateLimitedTopicListener;
+import us.ihmc.messager.SubscriptionOptions;
+import us.ihmc.messager.SynchronizeHint;
+import us.ihmc.messager.TopicDispatchTable;
+import us.ihmc.messager.TopicInput;
 import us.ihmc.messager.TopicListenerBase;
+import us.ihmc.messager.TopicPublisher;
+import us.ihmc.messager.TopicValueSlot;
 
 /**
  * A {@link Messager} implementation that uses Kryonet under the hood. With Kryo there must be a
  * server and a client, so {@link KryoMessager#createServer} needs to be called on one side and
  * {@link KryoMessager#createClient} on the other. Sometimes the requested port is unavailable and
  * you will need to select another.
+ * <p>
+ * When connecting, the two sides exchange a description of their API, see {@link APIHandshake},
+ * such that they can have different APIs: the topics are then sent as compact ordinals resolved
+ * against the remote API, and the messages of the topics the remote side does not have are not sent.
+ * The connection is closed if the two APIs are incompatible, see
+ * {@link #setRequireIdenticalAPI(boolean)}. A server keeps the API of each of its clients, which can
+ * all differ, and resolves the topics of each message against the API of the client it came from.
+ * </p>
+ * <p>
+ * When created with a UDP port, the messages of the topics declared with
+ * {@link DeliveryMode#UNRELIABLE} are sent over UDP along with a sequence number, such that the
+ * receiving side discards the messages received after a more recent one of the same topic from the
+ * same connection. They are sent over TCP instead when too large for a single datagram, see
+ * {@link KryoAdapter#setMaxUDPPacketSize(int)}, or when the remote side is not connected over UDP.
+ * </p>
+ * <p>
+ * Each side advertises the topics it consumes, i.e. the topics with at least one input or listener,
+ * when connecting and then with the next update whenever a topic gains its first subscriber or loses
+ * its last one, see {@link SubscriptionUpdate}. The messages of a topic are only serialized and sent to the
+ * connections consuming it, a server tracking the subscriptions of each of its clients.
+ * </p>
  */
 public class KryoMessager implements Messager
 {
+   /** The first ID used to register classes, leaving room for the Kryo and Kryonet registrations. */
+   private static final int FIRST_REGISTRATION_ID = 100;
+   /** The first ID used to register the payload types, following the classes of this messager. */
+   private static final int FIRST_PAYLOAD_REGISTRATION_ID = 1 << 10;
+   /** The number of IDs the payload types are hashed to, such that an ID is written with 3 bytes. */
+   private static final int NUMBER_OF_PAYLOAD_REGISTRATION_IDS = 1 << 20;
+
    /** The Messager API */
    private final MessagerAPI messagerAPI;
    /** Access to Kryonet */
@@ -37,12 +89,43 @@ public class KryoMessager implements Messager
    /** Abstraction for external threads to update this how they want */
    private MessagerUpdateThread messagerUpdateThread;
 
-   private final ConcurrentHashMap<Topic<?>, List<AtomicReference<Object>>> inputVariablesMap = new ConcurrentHashMap<>();
-   private final ConcurrentHashMap<Topic<?>, List<TopicListenerBase<Object>>> topicListenersMap = new ConcurrentHashMap<>();
+   /** The inputs and listeners for each topic. */
+   private final TopicDispatchTable dispatchTable;
    private final Map<MessagerStateListener, Consumer<Boolean>> connectionStateListeners = new HashMap<>();
 
    private boolean allowSelfSubmit = true;
 
+   /** The ID to assign to the next message which acknowledgement is awaited. */
+   private long nextCorrelationID = 0L;
+   /** Lock keeping the correlation IDs sent to each connection in increasing order. */
+   private final Object correlationLock = new Object();
+
+   /** The ID to register the next class of this messager with. */
+   private int nextRegistrationID = FIRST_REGISTRATION_ID;
+   /** The ID of the classes registered by this messager, by class name. */
+   private final Map<String, Integer> registeredClassIDs = new TreeMap<>();
+   /** Serializes the topic IDs as wire ordinals, resolved against the API of each connection. */
+   private final TopicIDSerializer topicIDSerializer;
+
+   private volatile boolean requireIdenticalAPI = false;
+
+   /** Whether each topic is delivered with {@link DeliveryMode#UNRELIABLE}, indexed by ordinal. */
+   private final boolean[] unreliableTopics;
+   /** The sequence number of the last unreliable message sent for each topic, indexed by ordinal. */
+   private final AtomicIntegerArray outgoingSequences;
+   /** The number of unreliable messages discarded because received late. */
+   private final AtomicLong numberOfLateMessages = new AtomicLong(0L);
+
+   /**
+    * The state of each remote connection, by connection ID. Nothing is sent to a connection before
+    * the {@link APIHandshake}, such that the remote side can always resolve the topic ordinals.
+    */
+   private final Map<Integer, RemoteConnection> remoteConnections = new ConcurrentHashMap<>();
+   /** Lock keeping the subscription updates sent in the order of the local changes. */
+   private final Object subscriptionLock = new Object();
+   /** The ordinals of the topics which subscription changed since the last update, guarded by {@link #subscriptionLock}. */
+   private final BitSet changedSubscriptions = new BitSet();
+
    /**
     * Creates a KryoMessager server side using
     * {@link ScheduledExecutorService#scheduleAtFixedRate(Runnable, long, long, TimeUnit)} under the
@@ -74,6 +157,21 @@ public class KryoMessager implements Messager
       return new KryoMessager(messagerAPI, KryoAdapter.createServer(tcpPort), messagerUpdateThread);
    }
 
+   /**
+    * Creates a KryoMessager server also accepting UDP connections, over which the messages of the
+    * topics declared with {@link DeliveryMode#UNRELIABLE} are sent.
+    *
+    * @param messagerAPI          the Messager API
+    * @param tcpPort              to host the server on
+    * @param udpPort              to receive the unreliable messages on
+    * @param messagerUpdateThread for using your own thread scheduler or for manual calls for testing
+    * @return new Kryo Messager
+    */
+   public static KryoMessager createServer(MessagerAPI messagerAPI, int tcpPort, int udpPort, MessagerUpdateThread messagerUpdateThread)
+   {
+      return new KryoMessager(messagerAPI, KryoAdapter.createServer(tcpPort, udpPort), messagerUpdateThread);
+   }
+
    /**
     * Creates a KryoMessager client side using
     * {@link ScheduledExecutorService#scheduleAtFixedRate(Runnable, long, long, TimeUnit)} under the
@@ -107,60 +205,923 @@ public class KryoMessager implements Messager
       return new KryoMessager(messagerAPI, KryoAdapter.createClient(serverAddress, tcpPort), messagerUpdateThread);
    }
 
+   /**
+    * Creates a KryoMessager client also connecting over UDP, over which the messages of the topics
+    * declared with {@link DeliveryMode#UNRELIABLE} are sent.
+    *
+    * @param messagerAPI          the Messager API
+    * @param serverAddress        of the host to connect to, an IP address or domain
+    * @param tcpPort              port that the server is bound to
+    * @param udpPort              UDP port that the server is bound to
+    * @param messagerUpdateThread for using your own thread scheduler or for manual calls for testing
+    * @return new Kryo Messager
+    */
+   public static KryoMessager createClient(MessagerAPI messagerAPI, String serverAddress, int tcpPort, int udpPort,
+                                           MessagerUpdateThread messagerUpdateThread)
+   {
+      return new KryoMessager(messagerAPI, KryoAdapter.createClient(serverAddress, tcpPort, udpPort), messagerUpdateThread);
+   }
+
    private KryoMessager(MessagerAPI messagerAPI, KryoAdapter kryoAdapter, MessagerUpdateThread messagerUpdateThread)
    {
       this.messagerAPI = messagerAPI;
       this.kryoAdapter = kryoAdapter;
       this.messagerUpdateThread = messagerUpdateThread;
 
-      kryoAdapter.setReceivedListener(this::receiveMessage);
+      dispatchTable = new TopicDispatchTable(messagerAPI);
+      topicIDSerializer = new TopicIDSerializer(messagerAPI);
+
+      int numberOfTopics = messagerAPI.getNumberOfTopics();
+      unreliableTopics = new boolean[numberOfTopics];
+      for (int ordinal = 0; ordinal < numberOfTopics; ordinal++)
+         unreliableTopics[ordinal] = messagerAPI.getTopic(ordinal).getDeliveryMode() == DeliveryMode.UNRELIABLE;
+      outgoingSequences = new AtomicIntegerArray(numberOfTopics);
+
+      registerAPIClasses();
+      kryoAdapter.setRegistrationRequired(true);
+      kryoAdapter.setConnectionReceivedListener(this::receivePacket);
+      kryoAdapter.addConnectionListener(this::connectionChanged);
+      dispatchTable.addSubscriptionChangeListener(this::localSubscriptionChanged);
+   }
+
+   /**
+    * Registers the classes used by this messager and the payload types of the API, see
+    * {@link Topic#getPayloadType()}, such that they are identified by ID instead of by name on the
+    * wire. The ID of a payload type only depends on its name, such that the extra topics of one side do
+    * not change the IDs of the payload types shared with the other side.
+    * <p>
+    * The messages and topic IDs are written with the compact {@link MessageSerializer} and
+    * {@link TopicIDSerializer}.
+    * </p>
+    */
+   private void registerAPIClasses()
+   {
+      registerClass(Message.class, new MessageSerializer(topicIDSerializer));
+      registerClass(TopicID.class, topicIDSerializer);
+      registerMessagerClasses(int[].class,
+                              Object[].class,
+                              SynchronizeHint.class,
+                              PrimitiveMessage.class,
+                              MessageBatch.class,
+                              AcknowledgedMessage.class,
+                              MessageAcknowledgement.class,
+                              SubscriptionRequest.class,
+                              APIHandshake.class,
+                              UnreliableMessage.class,
+                              SubscriptionUpdate.class,
+                              TopicID[].class,
+                              int[][].class,
+                              String[].class,
+                              SubscriptionOptions.Sampling.class,
+                              Collections.unmodifiableList(Collections.emptyList()).getClass());
+
+      Map<String, Class<?>> payloadTypes = new TreeMap<>();
+
+      for (Topic<?> topic : messagerAPI.getAllTopics())
+      {
+         Class<?> payloadType = topic.getPayloadType();
+         if (payloadType != null)
+            payloadTypes.put(payloadType.getName(), payloadType);
+      }
+
+      for (Class<?> payloadType : payloadTypes.values())
+         registerPayloadClass(payloadType);
+   }
+
+   /**
+    * Registers additional classes to be serialized, such as the payload types of topics created
+    * without one or the types of the payloads' fields.
+    * <p>
+    * The ID of each class is derived from the hash of its name, such that the two sides can register
+    * different classes in any order. The remote side has to register the classes it exchanges with
+    * this messager before starting.
+    * </p>
+    *
+    * @param types the classes to register.
+    * @see #setRegistrationRequired(boolean)
+    */
+   public void registerClasses(Class<?>... types)
+   {
+      for (Class<?> type : types)
+         registerPayloadClass(type);
+   }
+
+   private void registerMessagerClasses(Class<?>... types)
+   {
+      for (Class<?> type : types)
+         registerClass(type, null);
+   }
+
+   private <T> void registerClass(Class<T> type, Serializer<T> serializer)
+   {
+      // The ID is consumed even when the class was already registered, such that the IDs are stable.
+      int id = nextRegistrationID++;
+      if (kryoAdapter.registerClass(type, serializer, id))
+         registeredClassIDs.put(type.getName(), id);
+   }
+
+   private void registerPayloadClass(Class<?> type)
+   {
+      if (kryoAdapter.isRegistered(type))
+         return;
+
+      // String.hashCode() is specified, the ID is the same on any JVM.
+      int hashedID = Math.floorMod(type.getName().hashCode(), NUMBER_OF_PAYLOAD_REGISTRATION_IDS);
+
+      // Probes the next IDs on collision, the handshake detects the IDs differing from the remote side.
+      while (kryoAdapter.isRegistrationIDUsed(FIRST_PAYLOAD_REGISTRATION_ID + hashedID))
+         hashedID = (hashedID + 1) % NUMBER_OF_PAYLOAD_REGISTRATION_IDS;
+
+      kryoAdapter.registerClass(type, FIRST_PAYLOAD_REGISTRATION_ID + hashedID);
+      registeredClassIDs.put(type.getName(), FIRST_PAYLOAD_REGISTRATION_ID + hashedID);
+   }
+
+   /**
+    * Sets whether the remote side has to have the exact same API as this messager.
+    * <p>
+    * When connecting, the two sides exchange a description of their API, see {@link APIHandshake}.
+    * By default, the two APIs only have to be compatible: the topics they share have to carry the
+    * same payload types and the classes they both register have to be registered with the same IDs.
+    * A side can then have extra topics, the messages of which are not sent to the other side. When
+    * the exact same API is required, any difference between the two APIs is an incompatibility.
+    * </p>
+    * <p>
+    * The connection is closed when the remote side is found incompatible.
+    * </p>
+    *
+    * @param requireIdenticalAPI whether any difference between the two APIs is an incompatibility.
+    */
+   public void setRequireIdenticalAPI(boolean requireIdenticalAPI)
+   {
+      this.requireIdenticalAPI = requireIdenticalAPI;
+   }
+
+   /**
+    * Whether the API of every remote side has been received and found compatible with the local API.
+    *
+    * @return {@code true} if connected and the handshake with each remote side is complete.
+    */
+   public boolean isHandshakeComplete()
+   {
+      if (remoteConnections.isEmpty())
+         return false;
+
+      for (RemoteConnection connection : remoteConnections.values())
+      {
+         if (!connection.isHandshakeComplete())
+            return false;
+      }
+      return true;
+   }
+
+   private void connectionChanged(int connectionID, boolean connected)
+   {
+      if (connected)
+      {
+         RemoteConnection connection = getRemoteConnection(connectionID);
+         kryoAdapter.sendTCP(connectionID, createHandshake());
+
+         synchronized (subscriptionLock)
+         {
+            kryoAdapter.sendTCP(connectionID, createSubscriptionState());
+            connection.handshakeSent = true;
+         }
+      }
+      else
+      {
+         synchronized (correlationLock)
+         {
+            RemoteConnection connection = remoteConnections.remove(connectionID);
+            if (connection != null)
+               connection.failPendingAcknowledgements("The connection was closed before the message was acknowledged.");
+         }
+      }
+   }
+
+   /**
+    * Gets the state of a connection, created by whichever of the connection notification or the first
+    * packet received comes first, the two possibly being processed by different threads.
+    */
+   private RemoteConnection getRemoteConnection(int connectionID)
+   {
+      return remoteConnections.computeIfAbsent(connectionID, id -> new RemoteConnection(id, messagerAPI.getNumberOfTopics()));
+   }
+
+   /**
+    * Creates the update describing which topics are consumed locally, sent when connecting.
+    */
+   private SubscriptionUpdate createSubscriptionState()
+   {
+      List<TopicID> subscribedTopics = new ArrayList<>();
+      List<TopicID> unsubscribedTopics = new ArrayList<>();
+
+      for (int ordinal = 0; ordinal < messagerAPI.getNumberOfTopics(); ordinal++)
+      {
+         TopicID topicID = messagerAPI.getTopic(ordinal).getUniqueID();
+
+         if (dispatchTable.hasSubscribers(ordinal))
+            subscribedTopics.add(topicID);
+         else
+            unsubscribedTopics.add(topicID);
+      }
+
+      return new SubscriptionUpdate(subscribedTopics.toArray(new TopicID[subscribedTopics.size()]),
+                                    unsubscribedTopics.toArray(new TopicID[unsubscribedTopics.size()]));
+   }
+
+   /**
+    * Called by the dispatch table, under its lock, when a topic gains its first subscriber or loses
+    * its last one. The change is only recorded, it is sent with the next update.
+    */
+   private void localSubscriptionChanged(int ordinal, boolean hasSubscribers)
+   {
+      synchronized (subscriptionLock)
+      {
+         changedSubscriptions.set(ordinal);
+      }
+   }
+
+   /**
+    * Sends the current state of the topics which subscription changed since the last update, such
+    * that a topic subscribed and unsubscribed in between is only sent once.
+    */
+   private void sendSubscriptionChanges()
+   {
+      synchronized (subscriptionLock)
+      {
+         if (changedSubscriptions.isEmpty())
+            return;
+
+         List<TopicID> subscribedTopics = new ArrayList<>();
+         List<TopicID> unsubscribedTopics = new ArrayList<>();
+
+         for (int ordinal = changedSubscriptions.nextSetBit(0); ordinal >= 0; ordinal = changedSubscriptions.nextSetBit(ordinal + 1))
+         {
+            TopicID topicID = messagerAPI.getTopic(ordinal).getUniqueID();
+
+            if (dispatchTable.hasSubscribers(ordinal))
+               subscribedTopics.add(topicID);
+            else
+               unsubscribedTopics.add(topicID);
+         }
+
+         changedSubscriptions.clear();
+         // The connections not handshaken yet are sent the full state when connecting.
+         sendTCP(new SubscriptionUpdate(subscribedTopics.toArray(new TopicID[subscribedTopics.size()]),
+                                        unsubscribedTopics.toArray(new TopicID[unsubscribedTopics.size()])));
+      }
+   }
+
+   private APIHandshake createHandshake()
+   {
+      return new APIHandshake(messagerAPI, topicIDSerializer, registeredClassIDs);
+   }
+
+   /**
+    * Sends an object to every connection the handshake has been sent to.
+    */
+   private void sendTCP(Object object)
+   {
+      for (RemoteConnection connection : remoteConnections.values())
+      {
+         if (connection.handshakeSent)
+            kryoAdapter.sendTCP(connection.id, object);
+      }
+   }
+
+   /**
+    * Sends a message to the connections consuming its topic, over UDP if the topic is delivered with
+    * {@link DeliveryMode#UNRELIABLE}, and through the throttling each connection requested if any.
+    */
+   private void send(int ordinal, Object networkMessage)
+   {
+      // Also sequenced when sent over TCP such that it does not supersede a more recent datagram.
+      if (unreliableTopics[ordinal])
+         networkMessage = new UnreliableMessage(outgoingSequences.incrementAndGet(ordinal), networkMessage);
+
+      for (RemoteConnection connection : remoteConnections.values())
+      {
+         if (!connection.consumes(ordinal))
+            continue;
+
+         RateLimitedTopicListener<Object> rateLimiter = connection.rateLimiters.get(ordinal);
+
+         if (rateLimiter == null)
+            send(connection, ordinal, networkMessage);
+         else
+            rateLimiter.receivedMessageForTopic(networkMessage);
+      }
+   }
+
+   /**
+    * Sends a message to a single connection.
+    * <p>
+    * UDP is only used once the handshake is complete, the remote side being unable to resolve the
+    * topic ordinals of a datagram that would overtake the handshake.
+    * </p>
+    */
+   private void send(RemoteConnection connection, int ordinal, Object networkMessage)
+   {
+      if (unreliableTopics[ordinal] && connection.isHandshakeComplete())
+         kryoAdapter.sendUDP(connection.id, networkMessage);
+      else
+         kryoAdapter.sendTCP(connection.id, networkMessage);
+   }
+
+   /**
+    * Tests whether the messages of a topic are to be serialized and sent, i.e. whether at least one
+    * connection has the topic and consumes it.
+    */
+   private boolean isTopicConsumed(int ordinal)
+   {
+      for (RemoteConnection connection : remoteConnections.values())
+      {
+         if (connection.consumes(ordinal))
+            return true;
+      }
+      return false;
+   }
+
+   /**
+    * Tests whether the remote side consumes a topic, i.e. has at least one input or listener for it.
+    * Until the remote side advertises its subscriptions, every topic is considered consumed.
+    *
+    * @param topic the topic to test.
+    * @return {@code true} if the messages of the topic are sent to at least one connection.
+    */
+   public boolean isTopicConsumedRemotely(Topic<?> topic)
+   {
+      return isTopicConsumed(getTopicOrdinal(topic));
+   }
+
+   /**
+    * Sets whether only the registered classes can be sent.
+    * <p>
+    * By default, the classes of the messager and the payload types of the API are registered, see
+    * {@link MessagerAPIFactory#createTypedTopicTheme(String, Class)}, and any other class has to be
+    * registered with {@link #registerClasses(Class...)}, otherwise sending it fails. This lighter
+    * encoding also saves the receiver from resolving classes by name. When registration is not
+    * required, instances of unregistered classes are sent along with their fully qualified class
+    * name.
+    * </p>
+    *
+    * @param registrationRequired whether sending an instance of an unregistered class is an error.
+    */
+   public void setRegistrationRequired(boolean registrationRequired)
+   {
+      kryoAdapter.setRegistrationRequired(registrationRequired);
    }
 
    /** {@inheritDoc} */
    @Override
    public <T> void submitMessage(Message<T> message)
    {
-      if (!messagerAPI.containsTopic(message.getTopicID()))
+      int ordinal = messagerAPI.getTopicOrdinal(message.getTopicID());
+
+      if (ordinal < 0)
          throw new RuntimeException("The message is not part of this messager's API.");
 
-      Topic<?> messageTopic = messagerAPI.findTopic(message.getTopicID());
+      submitMessage(ordinal, message);
+   }
 
+   private void submitMessage(int ordinal, Message<?> message)
+   {
       if (allowSelfSubmit)
-         receiveMessage(message);
+         receiveMessage(ordinal, message);
 
       if (!kryoAdapter.isConnected())
       {
-         LogTools.warn(1, "This messager is closed, message's topic: " + messageTopic.getName());
+         LogTools.warn(1, "This messager is closed, message's topic: " + messagerAPI.getTopic(ordinal).getName());
          return;
       }
 
-      LogTools.trace("Submit message for topic: {}", messageTopic.getName());
+      LogTools.trace("Submit message for topic: {}", messagerAPI.getTopic(ordinal).getName());
 
-      kryoAdapter.sendTCP(message);
+      sendToRemote(ordinal, toNetworkMessage(ordinal, message));
    }
 
-   @SuppressWarnings({"rawtypes", "unchecked"})
-   private void receiveMessage(Object object)
+   /**
+    * Sends a message to the remote side, unless it is dropped because the remote side does not
+    * consume the topic or requested it to be throttled.
+    */
+   private void sendToRemote(int ordinal, Object networkMessage)
    {
-      if (!(object instanceof Message))
+      if (!isTopicConsumed(ordinal))
+      {
+         LogTools.trace("The remote side does not consume the topic: {}", messagerAPI.getTopic(ordinal).getName());
+         return;
+      }
+
+      send(ordinal, networkMessage);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The message is sent with a correlation ID and the future is completed once the remote side
+    * acknowledges it after notifying its listeners. The acknowledgements of messages received during
+    * the same update of the remote side are sent back at once such that many messages can be
+    * pipelined without waiting on each other. Pending futures are completed exceptionally when this
+    * messager is closed.
+    * </p>
+    * <p>
+    * The message is never dropped, even if the remote side requested the topic to be throttled, and
+    * is always sent over TCP, even if the topic is delivered with {@link DeliveryMode#UNRELIABLE}.
+    * It is also sent when the remote side does not consume the topic, such that it can be
+    * acknowledged.
+    * </p>
+    * <p>
+    * A server sends the message to each client having the topic and the future is completed once
+    * every one of them acknowledged it. It is completed exceptionally if one of them disconnects
+    * before.
+    * </p>
+    */
+   @Override
+   public <T> CompletableFuture<Void> submitMessageAndAwait(Topic<T> topic, T messageContent)
+   {
+      int ordinal = getTopicOrdinal(topic);
+      Message<T> message = new Message<>(topic, messageContent);
+      message.setSynchronizeHint(SynchronizeHint.SYNCHRONOUS);
+
+      if (allowSelfSubmit)
+         receiveMessage(ordinal, message);
+
+      if (!kryoAdapter.isConnected())
+      {
+         LogTools.warn(1, "This messager is closed, message's topic: " + topic.getName());
+         return CompletableFuture.failedFuture(new IllegalStateException("This messager is closed, message's topic: " + topic.getName()));
+      }
+
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+      // The IDs have to be sent in increasing order for the acknowledgements to be cumulative.
+      synchronized (correlationLock)
+      {
+         long correlationID = nextCorrelationID++;
+         AcknowledgedMessage acknowledgedMessage = new AcknowledgedMessage(correlationID, toNetworkMessage(ordinal, message));
+
+         for (RemoteConnection connection : remoteConnections.values())
+         {
+            if (!connection.hasTopic(ordinal))
+               continue;
+
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            connection.pendingAcknowledgements.put(correlationID, future);
+            futures.add(future);
+            kryoAdapter.sendTCP(connection.id, acknowledgedMessage);
+         }
+      }
+
+      if (futures.isEmpty())
+         return CompletableFuture.failedFuture(new IllegalStateException("The remote side does not have the topic: " + topic.getName()));
+      else if (futures.size() == 1)
+         return futures.get(0);
+      else
+         return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The topic of each message is resolved once and the whole batch is sent as a single packet. The
+    * messages of the topics throttled by the remote side or delivered with
+    * {@link DeliveryMode#UNRELIABLE} are sent separately. A server sends each client only the
+    * messages of the topics it has and consumes.
+    * </p>
+    */
+   @Override
+   public void submitMessages(Collection<? extends Message<?>> messages)
+   {
+      int[] ordinals = new int[messages.size()];
+      int index = 0;
+
+      for (Message<?> message : messages)
+      {
+         int ordinal = messagerAPI.getTopicOrdinal(message.getTopicID());
+         if (ordinal < 0)
+            throw new RuntimeException("The message is not part of this messager's API.");
+         ordinals[index++] = ordinal;
+      }
+
+      if (allowSelfSubmit)
+      {
+         index = 0;
+         for (Message<?> message : messages)
+            receiveMessage(ordinals[index++], message);
+      }
+
+      if (!kryoAdapter.isConnected())
+      {
+         LogTools.warn(1, "This messager is closed, dropping a batch of " + ordinals.length + " messages.");
+         return;
+      }
+
+      Object[] networkMessages = new Object[ordinals.length];
+      int[] networkOrdinals = new int[ordinals.length];
+      int numberOfNetworkMessages = 0;
+      index = 0;
+
+      for (Message<?> message : messages)
+      {
+         int ordinal = ordinals[index++];
+         if (!isTopicConsumed(ordinal))
+            continue;
+
+         Object networkMessage = toNetworkMessage(ordinal, message);
+
+         if (unreliableTopics[ordinal])
+            send(ordinal, networkMessage);
+         else
+         {
+            networkOrdinals[numberOfNetworkMessages] = ordinal;
+            networkMessages[numberOfNetworkMessages++] = networkMessage;
+         }
+      }
+
+      if (numberOfNetworkMessages == 0)
          return;
 
-      Message message = (Message) object;
+      LogTools.trace("Submit batch of {} messages", numberOfNetworkMessages);
+
+      for (RemoteConnection connection : remoteConnections.values())
+      {
+         Object[] connectionMessages = new Object[numberOfNetworkMessages];
+         int numberOfConnectionMessages = 0;
+
+         for (int i = 0; i < numberOfNetworkMessages; i++)
+         {
+            int ordinal = networkOrdinals[i];
+            if (!connection.consumes(ordinal))
+               continue;
+
+            RateLimitedTopicListener<Object> rateLimiter = connection.rateLimiters.get(ordinal);
+
+            if (rateLimiter == null)
+               connectionMessages[numberOfConnectionMessages++] = networkMessages[i];
+            else
+               rateLimiter.receivedMessageForTopic(networkMessages[i]);
+         }
+
+         if (numberOfConnectionMessages > 0)
+            kryoAdapter.sendTCP(connection.id, new MessageBatch(Arrays.copyOf(connectionMessages, numberOfConnectionMessages)));
+      }
+   }
 
-      if (!messagerAPI.containsTopic(message.getTopicID()))
+   private Object toNetworkMessage(int ordinal, Message<?> message)
+   {
+      PrimitiveType primitiveType = messagerAPI.getTopic(ordinal).getPrimitiveType();
+
+      if (primitiveType != null && message.getMessageContent() != null)
+         return new PrimitiveMessage(message.getTopicID(), primitiveType.toBits(message.getMessageContent()), message.getSynchronizeHint());
+      else
+         return message;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void submitDouble(Topic<Double> topic, double messageContent)
+   {
+      submitPrimitive(topic, PrimitiveType.DOUBLE, Double.doubleToRawLongBits(messageContent));
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void submitLong(Topic<Long> topic, long messageContent)
+   {
+      submitPrimitive(topic, PrimitiveType.LONG, messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void submitInteger(Topic<Integer> topic, int messageContent)
+   {
+      submitPrimitive(topic, PrimitiveType.INTEGER, messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void submitBoolean(Topic<Boolean> topic, boolean messageContent)
+   {
+      submitPrimitive(topic, PrimitiveType.BOOLEAN, messageContent ? 1L : 0L);
+   }
+
+   @SuppressWarnings("unchecked")
+   private void submitPrimitive(Topic<?> topic, PrimitiveType primitiveType, long bits)
+   {
+      if (topic.getPrimitiveType() != primitiveType)
+      { // Not a primitive topic, falling back to the regular path.
+         submitMessage((Topic<Object>) topic, primitiveType.toBoxed(bits));
+         return;
+      }
+
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+
+      if (ordinal < 0)
          throw new RuntimeException("The message is not part of this messager's API.");
 
-      Topic messageTopic = messagerAPI.findTopic(message.getTopicID());
+      if (allowSelfSubmit)
+         receivePrimitive(ordinal, bits, SynchronizeHint.NONE);
+
+      if (!kryoAdapter.isConnected())
+      {
+         LogTools.warn(1, "This messager is closed, message's topic: " + topic.getName());
+         return;
+      }
+
+      LogTools.trace("Submit message for topic: {}", topic.getName());
+
+      sendToRemote(ordinal, new PrimitiveMessage(topic.getUniqueID(), bits, SynchronizeHint.NONE));
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public <T> TopicPublisher<T> createPublisher(Topic<T> topic)
+   {
+      int ordinal = getTopicOrdinal(topic);
+
+      return new TopicPublisher<T>()
+      {
+         @Override
+         public Topic<T> getTopic()
+         {
+            return topic;
+         }
+
+         @Override
+         public void publish(T messageContent, SynchronizeHint hint)
+         {
+            Message<T> message = new Message<>(topic, messageContent);
+            message.setSynchronizeHint(hint);
+            submitMessage(ordinal, message);
+         }
+      };
+   }
+
+   private void receivePacket(int connectionID, Object object)
+   {
+      RemoteConnection connection = getRemoteConnection(connectionID);
+
+      if (object instanceof SubscriptionUpdate)
+         receiveSubscriptionUpdate(connection, (SubscriptionUpdate) object);
+      else
+         receiveMessage(connection, object);
+   }
+
+   private void receiveSubscriptionUpdate(RemoteConnection connection, SubscriptionUpdate update)
+   {
+      boolean[] subscriptions = connection.subscriptions.clone();
+      setSubscriptions(connection, subscriptions, update.subscribedTopics, true);
+      setSubscriptions(connection, subscriptions, update.unsubscribedTopics, false);
+      connection.subscriptions = subscriptions;
+   }
+
+   private void setSubscriptions(RemoteConnection connection, boolean[] subscriptions, TopicID[] topicIDs, boolean subscribed)
+   {
+      for (TopicID topicID : topicIDs)
+      {
+         int ordinal = resolveOrdinal(connection, topicID);
+         if (ordinal >= 0) // The topics missing locally are ignored.
+            subscriptions[ordinal] = subscribed;
+      }
+   }
+
+   /**
+    * Gets the local ordinal of a topic ID received from a connection, see
+    * {@link TopicIDSerializer#resolveOrdinal(TopicID, int[])}.
+    */
+   private int resolveOrdinal(RemoteConnection connection, TopicID topicID)
+   {
+      return topicIDSerializer.resolveOrdinal(topicID, connection.remoteToLocalOrdinals);
+   }
+
+   private void receiveMessage(RemoteConnection connection, Object object)
+   {
+      if (object instanceof AcknowledgedMessage)
+      {
+         AcknowledgedMessage acknowledgedMessage = (AcknowledgedMessage) object;
+         receiveMessage(connection, acknowledgedMessage.message);
+         connection.lastReceivedCorrelationID = acknowledgedMessage.correlationID;
+         return;
+      }
+
+      if (object instanceof UnreliableMessage)
+      {
+         receiveUnreliableMessage(connection, (UnreliableMessage) object);
+         return;
+      }
+
+      if (object instanceof MessageAcknowledgement)
+      {
+         receiveAcknowledgement(connection, (MessageAcknowledgement) object);
+         return;
+      }
+
+      if (object instanceof APIHandshake)
+      {
+         receiveHandshake(connection, (APIHandshake) object);
+         return;
+      }
+
+      if (object instanceof SubscriptionRequest)
+      {
+         receiveSubscriptionRequest(connection, (SubscriptionRequest) object);
+         return;
+      }
+
+      if (object instanceof MessageBatch)
+      {
+         for (Object message : ((MessageBatch) object).messages)
+            receiveMessage(connection, message);
+         return;
+      }
+
+      if (object instanceof PrimitiveMessage)
+      {
+         receivePrimitiveMessage(connection, (PrimitiveMessage) object);
+         return;
+      }
+
+      if (!(object instanceof Message))
+         return;
+
+      Message<?> message = (Message<?>) object;
+      int ordinal = resolveOrdinal(connection, message.getTopicID());
+
+      if (ordinal < 0)
+      {
+         LogTools.warn("Dropping a message for a topic that is not part of this messager's API: " + message.getTopicID());
+         return;
+      }
+
+      LogTools.trace("Packet received from network with message name: {}", messagerAPI.getTopic(ordinal).getName());
+
+      message.topicID = messagerAPI.getTopic(ordinal).getUniqueID();
+      receiveMessage(ordinal, message);
+   }
+
+   private void receiveUnreliableMessage(RemoteConnection connection, UnreliableMessage unreliableMessage)
+   {
+      TopicID topicID;
+
+      if (unreliableMessage.message instanceof PrimitiveMessage)
+         topicID = ((PrimitiveMessage) unreliableMessage.message).topicID;
+      else if (unreliableMessage.message instanceof Message)
+         topicID = ((Message<?>) unreliableMessage.message).getTopicID();
+      else
+         return;
+
+      int ordinal = resolveOrdinal(connection, topicID);
+
+      if (ordinal >= 0)
+      {
+         if (unreliableMessage.isLate(connection.incomingSequences[ordinal]))
+         {
+            numberOfLateMessages.incrementAndGet();
+            LogTools.trace("Discarding a late message for topic: {}", messagerAPI.getTopic(ordinal).getName());
+            return;
+         }
+
+         connection.incomingSequences[ordinal] = unreliableMessage.sequence;
+      }
+
+      receiveMessage(connection, unreliableMessage.message);
+   }
+
+   /**
+    * Gets the number of messages of the topics delivered with {@link DeliveryMode#UNRELIABLE} that
+    * were discarded because received after a more recent message of the same topic.
+    *
+    * @return the number of late messages discarded.
+    */
+   public long getNumberOfLateMessages()
+   {
+      return numberOfLateMessages.get();
+   }
+
+   private void receivePrimitiveMessage(RemoteConnection connection, PrimitiveMessage message)
+   {
+      int ordinal = resolveOrdinal(connection, message.topicID);
+
+      if (ordinal < 0)
+      {
+         LogTools.warn("Dropping a message for a topic that is not part of this messager's API: " + message.topicID);
+         return;
+      }
+
+      LogTools.trace("Packet received from network with message name: {}", messagerAPI.getTopic(ordinal).getName());
+
+      receivePrimitive(ordinal, message.bits, message.synchronizeHint);
+   }
+
+   private void receiveSubscriptionRequest(RemoteConnection connection, SubscriptionRequest request)
+   {
+      int ordinal = resolveOrdinal(connection, request.topicID);
+
+      if (ordinal < 0)
+         return; // The messages of this topic are not sent anyway.
+
+      SubscriptionOptions options = request.toOptions();
+      LogTools.debug("Remote subscription options for topic: {}, {}", messagerAPI.getTopic(ordinal).getName(), options);
+
+      if (options == null)
+         connection.rateLimiters.set(ordinal, null);
+      else
+         connection.rateLimiters.set(ordinal, new RateLimitedTopicListener<>(message -> send(connection, ordinal, message), options));
+   }
+
+   private void receiveHandshake(RemoteConnection connection, APIHandshake remoteHandshake)
+   {
+      APIHandshake localHandshake = createHandshake();
+      String incompatibility = localHandshake.findIncompatibility(remoteHandshake);
+      String[] missingRemotely = localHandshake.findMissingTopics(remoteHandshake);
+      String[] missingLocally = remoteHandshake.findMissingTopics(localHandshake);
+
+      if (incompatibility == null && requireIdenticalAPI && localHandshake.fingerprint != remoteHandshake.fingerprint)
+      {
+         incompatibility = "The remote API differs, topics missing remotely: " + Arrays.toString(missingRemotely) + ", topics missing locally: "
+               + Arrays.toString(missingLocally);
+      }
+
+      if (incompatibility != null)
+      {
+         LogTools.error("Incompatible remote messager, disconnecting. " + incompatibility);
+         kryoAdapter.disconnect(connection.id);
+         return;
+      }
+
+      if (localHandshake.fingerprint != remoteHandshake.fingerprint)
+      {
+         LogTools.warn("The remote API differs, topics missing remotely: {}, topics missing locally: {}",
+                       Arrays.toString(missingRemotely),
+                       Arrays.toString(missingLocally));
+      }
+
+      boolean[] remoteTopics = new boolean[messagerAPI.getNumberOfTopics()];
+      for (int ordinal = 0; ordinal < remoteTopics.length; ordinal++)
+         remoteTopics[ordinal] = remoteHandshake.containsTopic(messagerAPI.getTopic(ordinal).getUniqueID());
+
+      // The table is published before the topics that isHandshakeComplete() checks.
+      connection.remoteToLocalOrdinals = topicIDSerializer.createRemoteToLocalOrdinals(remoteHandshake.topicIDs);
+      connection.remoteTopics = remoteTopics;
+   }
+
+   private void receiveAcknowledgement(RemoteConnection connection, MessageAcknowledgement acknowledgement)
+   {
+      ConcurrentNavigableMap<Long, CompletableFuture<Void>> acknowledged = connection.pendingAcknowledgements.headMap(acknowledgement.lastCorrelationID,
+                                                                                                                      true);
+
+      for (CompletableFuture<Void> future : acknowledged.values())
+         future.complete(null);
+      acknowledged.clear();
+   }
+
+   /**
+    * Updates Kryonet, notifies the batch listeners, sends the subscription changes and the messages
+    * held back for the remote side, and then acknowledges at once all the
+    * {@link AcknowledgedMessage}s received from each connection during the update.
+    */
+   private void update()
+   {
+      kryoAdapter.update();
+      flushBatchTopicListeners();
+      sendSubscriptionChanges();
+
+      for (RemoteConnection connection : remoteConnections.values())
+      {
+         for (int ordinal = 0; ordinal < connection.rateLimiters.length(); ordinal++)
+         {
+            RateLimitedTopicListener<Object> rateLimiter = connection.rateLimiters.get(ordinal);
+            if (rateLimiter != null)
+               rateLimiter.deliverPending();
+         }
+      }
+
+      for (RemoteConnection connection : remoteConnections.values())
+      {
+         long lastReceivedCorrelationID = connection.lastReceivedCorrelationID;
+
+         if (lastReceivedCorrelationID > connection.lastAcknowledgedCorrelationID)
+         {
+            kryoAdapter.sendTCP(connection.id, new MessageAcknowledgement(lastReceivedCorrelationID));
+            connection.lastAcknowledgedCorrelationID = lastReceivedCorrelationID;
+         }
+      }
+   }
 
-      LogTools.trace("Packet received from network with message name: {}", messageTopic.getName());
+   @SuppressWarnings("unchecked")
+   private void receiveMessage(int ordinal, Message<?> message)
+   {
+      dispatchTable.dispatch(ordinal, (Message<Object>) message);
+   }
 
-      List<AtomicReference<Object>> inputVariablesForTopic = inputVariablesMap.get(messageTopic);
-      if (inputVariablesForTopic != null)
-         inputVariablesForTopic.forEach(variable -> variable.set(message.getMessageContent()));
+   private void receivePrimitive(int ordinal, long bits, SynchronizeHint hint)
+   {
+      dispatchTable.dispatchPrimitive(ordinal, bits, hint);
+   }
 
-      List<TopicListenerBase<Object>> topicListeners = topicListenersMap.get(messageTopic);
-      if (topicListeners != null)
-         topicListeners.forEach(listener -> listener.receivedMessageForTopic(message));
+   private int getTopicOrdinal(Topic<?> topic)
+   {
+      return dispatchTable.getTopicOrdinal(topic);
    }
 
    /** {@inheritDoc} */
@@ -172,44 +1133,94 @@ public class KryoMessager implements Messager
       return boundVariable;
    }
 
+   /** {@inheritDoc} */
+   @Override
+   public <T> TopicInput<T> createTopicInput(Topic<T> topic, T initialValue)
+   {
+      int ordinal = getTopicOrdinal(topic);
+      TopicValueSlot<T> slot = dispatchTable.acquireValueSlot(ordinal);
+      return new TopicInput<>(slot, initialValue, () -> dispatchTable.releaseValueSlot(ordinal, slot));
+   }
+
    /** {@inheritDoc} */
    @SuppressWarnings("unchecked")
    @Override
    public <T> void attachInput(Topic<T> topic, AtomicReference<T> input)
    {
-      List<AtomicReference<Object>> boundVariablesForTopic = inputVariablesMap.computeIfAbsent(topic, k -> new ArrayList<>());
-      boundVariablesForTopic.add((AtomicReference<Object>) input);
+      dispatchTable.addInput(getTopicOrdinal(topic), (AtomicReference<Object>) input);
    }
 
    /** {@inheritDoc} */
    @Override
    public <T> boolean removeInput(Topic<T> topic, AtomicReference<T> input)
    {
-      List<AtomicReference<Object>> boundVariablesForTopic = inputVariablesMap.get(topic);
-      if (boundVariablesForTopic == null)
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
          return false;
       else
-         return boundVariablesForTopic.remove(input);
+         return dispatchTable.removeInput(ordinal, input);
    }
 
    /** {@inheritDoc} */
-   @SuppressWarnings("unchecked")
    @Override
    public <T> void addTopicListenerBase(Topic<T> topic, TopicListenerBase<T> listener)
    {
-      List<TopicListenerBase<Object>> topicListeners = topicListenersMap.computeIfAbsent(topic, k -> new ArrayList<>());
-      topicListeners.add((TopicListenerBase<Object>) listener);
+      dispatchTable.addListener(getTopicOrdinal(topic), listener);
    }
 
    /** {@inheritDoc} */
    @Override
    public <T> boolean removeTopicListener(Topic<T> topic, TopicListenerBase<T> listener)
    {
-      List<TopicListenerBase<Object>> topicListeners = topicListenersMap.get(topic);
-      if (topicListeners == null)
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
          return false;
       else
-         return topicListeners.remove(listener);
+         return dispatchTable.removeListener(ordinal, listener);
+   }
+
+   /**
+    * Requests the remote side to throttle the messages of a topic it sends to this messager.
+    * <p>
+    * The remote side then discards the extra messages before sending them, which saves bandwidth
+    * when the local listeners of the topic need a lower rate than the one it is published at. This
+    * affects all the listeners of the topic, use
+    * {@link #addTopicListener(Topic, us.ihmc.messager.TopicListener, SubscriptionOptions)} to throttle
+    * a single listener. Messages sent with {@link #submitMessageAndAwait(Topic, Object)} are never
+    * dropped.
+    * </p>
+    * <p>
+    * A server throttles the messages it sends to each client as requested by that client only. The
+    * request is discarded when either side is closed.
+    * </p>
+    *
+    * @param topic   the topic to throttle.
+    * @param options the options the remote side is to apply, {@code null} to cancel a previous
+    *                request.
+    */
+   public <T> void requestRemoteSubscriptionOptions(Topic<T> topic, SubscriptionOptions options)
+   {
+      getTopicOrdinal(topic);
+
+      if (!kryoAdapter.isConnected())
+      {
+         LogTools.warn(1, "This messager is closed, cannot send the subscription options for the topic: " + topic.getName());
+         return;
+      }
+
+      sendTCP(new SubscriptionRequest(topic.getUniqueID(), options));
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * This method is called after each update of this messager.
+    * </p>
+    */
+   @Override
+   public void flushBatchTopicListeners()
+   {
+      dispatchTable.flushBatchListeners();
    }
 
    /**
@@ -231,13 +1242,14 @@ public class KryoMessager implements Messager
       kryoAdapter.connect();
 
       LogTools.debug("Waiting for KryoNet to connect");
-      while (!isMessagerOpen()) // this is necessary before starting the messager update thread
+      // The connection may be closed right away when the remote side is incompatible.
+      while (!kryoAdapter.hasConnected()) // this is necessary before starting the messager update thread
       { // otherwise connection times out because multiple threads are calling
          Thread.yield(); // kryo.update()
       }
 
       LogTools.debug("Starting KryoNet update thread");
-      messagerUpdateThread.start(kryoAdapter::update);
+      messagerUpdateThread.start(this::update);
    }
 
    /**
@@ -255,6 +1267,18 @@ public class KryoMessager implements Messager
    {
       kryoAdapter.disconnect();
       messagerUpdateThread.stop();
+
+      for (RemoteConnection connection : remoteConnections.values())
+      {
+         for (int ordinal = 0; ordinal < connection.rateLimiters.length(); ordinal++)
+            connection.rateLimiters.set(ordinal, null);
+      }
+
+      synchronized (correlationLock)
+      {
+         for (RemoteConnection connection : remoteConnections.values())
+            connection.failPendingAcknowledgements("The messager was closed before the message was acknowledged.");
+      }
    }
 
    /** {@inheritDoc} */
@@ -301,4 +1325,86 @@ public class KryoMessager implements Messager
    {
       return messagerAPI;
    }
+
+   /**
+    * Gathers the state kept for a single remote connection, a client having a single one, the
+    * server's.
+    */
+   private static class RemoteConnection
+   {
+      private final int id;
+      /**
+       * Whether the {@link APIHandshake} and the subscription state have been sent, nothing else being
+       * sent to the connection before.
+       */
+      private volatile boolean handshakeSent = false;
+      /**
+       * The local ordinal of each remote topic, -1 if unknown, indexed by remote wire ordinal.
+       * {@code null} until the remote API is known, the remote side being assumed to share the same
+       * API.
+       */
+      private volatile int[] remoteToLocalOrdinals = null;
+      /** Whether the remote side has each topic, indexed by local ordinal, {@code null} until known. */
+      private volatile boolean[] remoteTopics = null;
+      /**
+       * Whether the remote side consumes each topic, indexed by local ordinal. The array is replaced on
+       * update. A connection consumes every topic until it advertises its subscriptions.
+       */
+      private volatile boolean[] subscriptions;
+      /** The futures of the messages sent and awaiting acknowledgement, by correlation ID. */
+      private final ConcurrentNavigableMap<Long, CompletableFuture<Void>> pendingAcknowledgements = new ConcurrentSkipListMap<>();
+      /** The correlation ID of the last message received that was processed, -1 if none. */
+      private volatile long lastReceivedCorrelationID = -1L;
+      /**
+       * The last correlation ID sent back in a {@link MessageAcknowledgement}, -1 if none. Only
+       * accessed from the update thread.
+       */
+      private long lastAcknowledgedCorrelationID = -1L;
+      /**
+       * The sequence number of the most recent unreliable message received for each topic, indexed by
+       * local ordinal. Only accessed from the update thread.
+       */
+      private final int[] incomingSequences;
+      /**
+       * The throttling of the messages sent, as requested by the remote side, indexed by local ordinal.
+       * An element is {@code null} when the messages of the topic are sent as is.
+       */
+      private final AtomicReferenceArray<RateLimitedTopicListener<Object>> rateLimiters;
+
+      private RemoteConnection(int id, int numberOfTopics)
+      {
+         this.id = id;
+         incomingSequences = new int[numberOfTopics];
+         rateLimiters = new AtomicReferenceArray<>(numberOfTopics);
+         subscriptions = new boolean[numberOfTopics];
+         Arrays.fill(subscriptions, true);
+      }
+
+      private boolean isHandshakeComplete()
+      {
+         return remoteTopics != null;
+      }
+
+      /**
+       * Tests whether the messages of a topic can be sent to the connection, i.e. the handshake has
+       * been sent and the remote side is not known to not have the topic.
+       */
+      private boolean hasTopic(int ordinal)
+      {
+         boolean[] remoteTopics = this.remoteTopics;
+         return handshakeSent && (remoteTopics == null || remoteTopics[ordinal]);
+      }
+
+      private boolean consumes(int ordinal)
+      {
+         return hasTopic(ordinal) && subscriptions[ordinal];
+      }
+
+      private void failPendingAcknowledgements(String reason)
+      {
+         for (CompletableFuture<Void> future : pendingAcknowledgements.values())
+            future.completeExceptionally(new IllegalStateException(reason));
+         pendingAcknowledgements.clear();
+      }
+   }
 }
@@ -0,0 +1,36 @@
+package us.ihmc.messager.kryo;
+
+/**
+ * Network acknowledgement of {@link AcknowledgedMessage}s.
+ * <p>
+ * The messages are received and processed in the order they were sent, such that a single
+ * acknowledgement is cumulative: it covers every message up to and including the given correlation
+ * ID. The messages received during a single update are acknowledged all at once.
+ * </p>
+ */
+public class MessageAcknowledgement
+{
+   /**
+    * The correlation ID of the last message that was processed.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public long lastCorrelationID;
+
+   /** Empty constructor only used for serialization purposes. */
+   public MessageAcknowledgement()
+   {
+   }
+
+   /**
+    * Creates a new acknowledgement.
+    * 
+    * @param lastCorrelationID the correlation ID of the last message that was processed.
+    */
+   public MessageAcknowledgement(long lastCorrelationID)
+   {
+      this.lastCorrelationID = lastCorrelationID;
+   }
+}
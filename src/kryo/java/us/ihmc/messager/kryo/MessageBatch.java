@@ -0,0 +1,35 @@
+package us.ihmc.messager.kryo;
+
+/**
+ * Network representation of multiple messages sent at once.
+ * <p>
+ * The messages are either {@link us.ihmc.messager.Message}s or {@link PrimitiveMessage}s and are
+ * to be received in order.
+ * </p>
+ */
+public class MessageBatch
+{
+   /**
+    * The messages of this batch.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public Object[] messages;
+
+   /** Empty constructor only used for serialization purposes. */
+   public MessageBatch()
+   {
+   }
+
+   /**
+    * Creates a new batch.
+    * 
+    * @param messages the messages of this batch.
+    */
+   public MessageBatch(Object[] messages)
+   {
+      this.messages = messages;
+   }
+}
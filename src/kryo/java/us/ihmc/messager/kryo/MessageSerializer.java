@@ -0,0 +1,74 @@
+package us.ihmc.messager.kryo;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import us.ihmc.messager.Message;
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
+import us.ihmc.messager.SynchronizeHint;
+
+/**
+ * Compact serializer for {@link Message}.
+ * <p>
+ * A message is written as:
+ * <ul>
+ * <li>the topic ID, see {@link TopicIDSerializer}, i.e. a variable-length wire ordinal which takes
+ * a single byte for APIs of up to 127 topics,
+ * <li>a flags byte, which lowest two bits hold the synchronize hint,
+ * <li>the message content along with its class.
+ * </ul>
+ * Compared to the generic field serializer, this saves the full path of the topic ID and the
+ * per-field overhead.
+ * </p>
+ */
+@SuppressWarnings("rawtypes")
+public class MessageSerializer extends Serializer<Message>
+{
+   /** The bits of the flags holding the synchronize hint, 0 for {@code null}. */
+   private static final int SYNCHRONIZE_HINT_MASK = 0b11;
+   private static final SynchronizeHint[] SYNCHRONIZE_HINTS = SynchronizeHint.values();
+
+   private final TopicIDSerializer topicIDSerializer;
+
+   /**
+    * Creates a new serializer.
+    *
+    * @param topicIDSerializer the serializer used for the topic IDs of the messages.
+    */
+   public MessageSerializer(TopicIDSerializer topicIDSerializer)
+   {
+      this.topicIDSerializer = topicIDSerializer;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void write(Kryo kryo, Output output, Message message)
+   {
+      topicIDSerializer.write(kryo, output, message.topicID);
+
+      int flags = 0;
+      if (message.synchronizeHint != null)
+         flags |= message.synchronizeHint.ordinal() + 1;
+      output.writeByte(flags);
+
+      kryo.writeClassAndObject(output, message.messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @SuppressWarnings("unchecked")
+   @Override
+   public Message read(Kryo kryo, Input input, Class<? extends Message> type)
+   {
+      Message<Object> message = new Message<>();
+      message.topicID = topicIDSerializer.read(kryo, input, TopicID.class);
+
+      int flags = input.readByte();
+      int hint = flags & SYNCHRONIZE_HINT_MASK;
+      message.synchronizeHint = hint == 0 ? null : SYNCHRONIZE_HINTS[hint - 1];
+
+      message.messageContent = kryo.readClassAndObject(input);
+      return message;
+   }
+}
@@ -0,0 +1,59 @@
+package us.ihmc.messager.kryo;
+
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
+import us.ihmc.messager.PrimitiveType;
+import us.ihmc.messager.SynchronizeHint;
+
+/**
+ * Network representation of data sent to a primitive topic.
+ * <p>
+ * Instead of serializing the boxed value as a generic object, the value is sent as its raw bits,
+ * see {@link PrimitiveType}.
+ * </p>
+ */
+public class PrimitiveMessage
+{
+   /**
+    * The ID of the topic the data is for.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public TopicID topicID;
+   /**
+    * The data as raw bits.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public long bits;
+   /**
+    * The hint the data was submitted with, see {@link us.ihmc.messager.Message#getSynchronizeHint()}.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public SynchronizeHint synchronizeHint;
+
+   /** Empty constructor only used for serialization purposes. */
+   public PrimitiveMessage()
+   {
+   }
+
+   /**
+    * Creates a new message.
+    * 
+    * @param topicID the ID of the topic the data is for.
+    * @param bits    the data as raw bits.
+    * @param hint    the hint the data was submitted with.
+    */
+   public PrimitiveMessage(TopicID topicID, long bits, SynchronizeHint hint)
+   {
+      this.topicID = topicID;
+      this.bits = bits;
+      synchronizeHint = hint;
+   }
+}
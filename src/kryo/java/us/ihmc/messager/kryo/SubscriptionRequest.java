@@ -0,0 +1,78 @@
+package us.ihmc.messager.kryo;
+
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
+import us.ihmc.messager.SubscriptionOptions;
+import us.ihmc.messager.SubscriptionOptions.Sampling;
+
+/**
+ * Network request asking the remote side to throttle the messages of a topic it sends, see
+ * {@link KryoMessager#requestRemoteSubscriptionOptions(us.ihmc.messager.MessagerAPIFactory.Topic, SubscriptionOptions)}.
+ */
+public class SubscriptionRequest
+{
+   /**
+    * The ID of the topic to throttle.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public TopicID topicID;
+   /**
+    * The sampling strategy, {@code null} to cancel a previous request.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public Sampling sampling;
+   /**
+    * The maximum rate in Hertz, see {@link SubscriptionOptions#getMaxRate()}.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public double maxRate;
+   /**
+    * The decimation, see {@link SubscriptionOptions#getDecimation()}.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public int decimation;
+
+   /** Empty constructor only used for serialization purposes. */
+   public SubscriptionRequest()
+   {
+   }
+
+   /**
+    * Creates a new request.
+    * 
+    * @param topicID the ID of the topic to throttle.
+    * @param options the options to apply, {@code null} to cancel a previous request.
+    */
+   public SubscriptionRequest(TopicID topicID, SubscriptionOptions options)
+   {
+      this.topicID = topicID;
+
+      if (options != null)
+      {
+         sampling = options.getSampling();
+         maxRate = options.getMaxRate();
+         decimation = options.getDecimation();
+      }
+   }
+
+   /**
+    * Gets the options requested.
+    * 
+    * @return the options, or {@code null} if this request cancels a previous one.
+    */
+   public SubscriptionOptions toOptions()
+   {
+      return sampling == null ? null : SubscriptionOptions.create(sampling, maxRate, decimation);
+   }
+}
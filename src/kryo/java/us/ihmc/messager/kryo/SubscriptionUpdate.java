@@ -0,0 +1,48 @@
+package us.ihmc.messager.kryo;
+
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
+
+/**
+ * Network representation of a change of the topics consumed by a {@link KryoMessager}, i.e. the
+ * topics with at least one local input or listener.
+ * <p>
+ * The full state is sent once when connecting, the changes are then sent as they happen. The
+ * remote side only sends the messages of the topics that are consumed.
+ * </p>
+ */
+public class SubscriptionUpdate
+{
+   /**
+    * The topics that are now consumed.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public TopicID[] subscribedTopics;
+   /**
+    * The topics that are no longer consumed.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public TopicID[] unsubscribedTopics;
+
+   /** Empty constructor only used for serialization purposes. */
+   public SubscriptionUpdate()
+   {
+   }
+
+   /**
+    * Creates a new update.
+    * 
+    * @param subscribedTopics   the topics that are now consumed.
+    * @param unsubscribedTopics the topics that are no longer consumed.
+    */
+   public SubscriptionUpdate(TopicID[] subscribedTopics, TopicID[] unsubscribedTopics)
+   {
+      this.subscribedTopics = subscribedTopics;
+      this.unsubscribedTopics = unsubscribedTopics;
+   }
+}
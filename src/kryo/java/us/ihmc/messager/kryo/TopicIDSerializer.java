@@ -0,0 +1,201 @@
+package us.ihmc.messager.kryo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import us.ihmc.messager.MessagerAPIFactory.MessagerAPI;
+import us.ihmc.messager.MessagerAPIFactory.Topic;
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
+
+/**
+ * Serializes a {@link TopicID} as a single variable-length integer, the wire ordinal of the topic,
+ * instead of its full path of category and theme IDs.
+ * <p>
+ * The local ordinals of a {@link MessagerAPI} depend on the order in which the sub-APIs were
+ * included, such that they can differ from one side to the other. The wire ordinals are instead
+ * derived from the topic IDs only: the topics are sorted by ID, such that two sides sharing the same
+ * topics agree on the wire ordinals. IDs of topics that are not part of the API are serialized with
+ * their full path.
+ * </p>
+ * <p>
+ * A wire ordinal read is only meaningful along with the API of the side that wrote it, which a
+ * server with several clients can only know from the connection the message came from. The topic
+ * IDs are then read unresolved and resolved by the receiver against the table of that connection,
+ * see {@link #createRemoteToLocalOrdinals(int[][])} and {@link #resolveOrdinal(TopicID, int[])},
+ * such that the two sides do not need to share the same API.
+ * </p>
+ */
+public class TopicIDSerializer extends Serializer<TopicID>
+{
+   private final MessagerAPI messagerAPI;
+   /** The wire ordinal of each topic, indexed by local ordinal. */
+   private final int[] localToWireOrdinals;
+   /** The local ordinal of each topic, indexed by wire ordinal. */
+   private final int[] wireToLocalOrdinals;
+
+   /**
+    * Creates a new serializer for the topics of the given API.
+    *
+    * @param messagerAPI the API the topics belong to.
+    */
+   public TopicIDSerializer(MessagerAPI messagerAPI)
+   {
+      this.messagerAPI = messagerAPI;
+
+      int numberOfTopics = messagerAPI.getNumberOfTopics();
+      Integer[] sortedOrdinals = new Integer[numberOfTopics];
+      for (int ordinal = 0; ordinal < numberOfTopics; ordinal++)
+         sortedOrdinals[ordinal] = ordinal;
+      Arrays.sort(sortedOrdinals, Comparator.comparing(ordinal -> messagerAPI.getTopic(ordinal).getUniqueID().getID(), Arrays::compare));
+
+      localToWireOrdinals = new int[numberOfTopics];
+      wireToLocalOrdinals = new int[numberOfTopics];
+
+      for (int wireOrdinal = 0; wireOrdinal < numberOfTopics; wireOrdinal++)
+      {
+         wireToLocalOrdinals[wireOrdinal] = sortedOrdinals[wireOrdinal];
+         localToWireOrdinals[sortedOrdinals[wireOrdinal]] = wireOrdinal;
+      }
+
+      setImmutable(true);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void write(Kryo kryo, Output output, TopicID topicID)
+   {
+      int ordinal = messagerAPI.getTopicOrdinal(topicID);
+
+      if (ordinal >= 0)
+      { // Zero is reserved for the IDs written with their full path.
+         output.writeVarInt(localToWireOrdinals[ordinal] + 1, true);
+      }
+      else
+      {
+         int[] id = topicID.getID();
+         output.writeVarInt(0, true);
+         output.writeVarInt(id.length, true);
+         output.writeInts(id, 0, id.length);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The IDs written as wire ordinals are returned unresolved, see
+    * {@link #resolveOrdinal(TopicID, int[])}.
+    * </p>
+    */
+   @Override
+   public TopicID read(Kryo kryo, Input input, Class<? extends TopicID> type)
+   {
+      int wireOrdinal = input.readVarInt(true) - 1;
+
+      if (wireOrdinal >= 0)
+      {
+         return new WireTopicID(wireOrdinal);
+      }
+      else
+      {
+         int length = input.readVarInt(true);
+         return new TopicID(input.readInts(length));
+      }
+   }
+
+   /**
+    * Creates the table resolving the ordinals sent by a remote side.
+    *
+    * @param remoteTopicIDs the IDs of the remote topics indexed by remote wire ordinal.
+    * @return the local ordinal of each remote topic, -1 if unknown, indexed by remote wire ordinal.
+    */
+   public int[] createRemoteToLocalOrdinals(int[][] remoteTopicIDs)
+   {
+      int[] remoteToLocalOrdinals = new int[remoteTopicIDs.length];
+      for (int wireOrdinal = 0; wireOrdinal < remoteTopicIDs.length; wireOrdinal++)
+         remoteToLocalOrdinals[wireOrdinal] = messagerAPI.getTopicOrdinal(new TopicID(remoteTopicIDs[wireOrdinal]));
+      return remoteToLocalOrdinals;
+   }
+
+   /**
+    * Gets the local ordinal of a topic ID read from a remote side.
+    *
+    * @param topicID               the topic ID as read by this serializer.
+    * @param remoteToLocalOrdinals the table of the remote side that wrote the ID, see
+    *                              {@link #createRemoteToLocalOrdinals(int[][])}, or {@code null} to
+    *                              assume that the remote side shares the same API.
+    * @return the ordinal of the topic in the API, -1 if the topic is not part of it.
+    */
+   public int resolveOrdinal(TopicID topicID, int[] remoteToLocalOrdinals)
+   {
+      if (!(topicID instanceof WireTopicID))
+         return messagerAPI.getTopicOrdinal(topicID);
+
+      int wireOrdinal = ((WireTopicID) topicID).wireOrdinal;
+      int[] localOrdinals = remoteToLocalOrdinals == null ? wireToLocalOrdinals : remoteToLocalOrdinals;
+      return wireOrdinal < localOrdinals.length ? localOrdinals[wireOrdinal] : -1;
+   }
+
+   /**
+    * Gets the IDs of the local topics in wire order, to be announced to the remote side.
+    *
+    * @return the topic IDs indexed by wire ordinal.
+    */
+   public int[][] getTopicIDsInWireOrder()
+   {
+      int[][] topicIDs = new int[wireToLocalOrdinals.length][];
+      for (int wireOrdinal = 0; wireOrdinal < topicIDs.length; wireOrdinal++)
+         topicIDs[wireOrdinal] = messagerAPI.getTopic(wireToLocalOrdinals[wireOrdinal]).getUniqueID().getID();
+      return topicIDs;
+   }
+
+   /**
+    * Gets the local ordinal of a topic from its wire ordinal.
+    *
+    * @param wireOrdinal the ordinal of the topic on the wire.
+    * @return the ordinal of the topic in the API.
+    */
+   public int getLocalOrdinal(int wireOrdinal)
+   {
+      return wireToLocalOrdinals[wireOrdinal];
+   }
+
+   /**
+    * Gets the ordinal used on the wire for a topic.
+    *
+    * @param localOrdinal the ordinal of the topic in the API, see
+    *                     {@link MessagerAPI#getTopicOrdinal(Topic)}.
+    * @return the wire ordinal of the topic.
+    */
+   public int getWireOrdinal(int localOrdinal)
+   {
+      return localToWireOrdinals[localOrdinal];
+   }
+
+   /**
+    * A topic ID read as a wire ordinal, which has yet to be resolved against the API of the side
+    * that wrote it.
+    */
+   private static class WireTopicID extends TopicID
+   {
+      private static final int[] NO_ID = new int[0];
+
+      private final int wireOrdinal;
+
+      private WireTopicID(int wireOrdinal)
+      {
+         super(NO_ID);
+         this.wireOrdinal = wireOrdinal;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "TopicID at wire ordinal " + wireOrdinal;
+      }
+   }
+}
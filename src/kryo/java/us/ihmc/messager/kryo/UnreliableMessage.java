@@ -0,0 +1,66 @@
+package us.ihmc.messager.kryo;
+
+/**
+ * Network representation of a message of a topic delivered with
+ * {@link us.ihmc.messager.DeliveryMode#UNRELIABLE}, usually sent over UDP.
+ * <p>
+ * The sequence number is incremented for each message of the topic such that the receiving side
+ * can discard the messages received late, i.e. after a more recent message of the same topic.
+ * </p>
+ */
+public class UnreliableMessage
+{
+   /** The number of messages a datagram can be overtaken by and still be discarded as late. */
+   public static final int MAX_REORDERING = 1024;
+
+   /**
+    * The sequence number of the message within its topic, wrapping around on overflow.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public int sequence;
+   /**
+    * The message, either a {@link us.ihmc.messager.Message} or a {@link PrimitiveMessage}.
+    * <p>
+    * This field is public and non-final only for serialization purposes, it is not meant to be
+    * accessed directly.
+    * </p>
+    */
+   public Object message;
+
+   /** Empty constructor only used for serialization purposes. */
+   public UnreliableMessage()
+   {
+   }
+
+   /**
+    * Creates a new message.
+    * 
+    * @param sequence the sequence number of the message within its topic.
+    * @param message  the message to send.
+    */
+   public UnreliableMessage(int sequence, Object message)
+   {
+      this.sequence = sequence;
+      this.message = message;
+   }
+
+   /**
+    * Tests whether this message was received late, i.e. sent before the message with the given
+    * sequence number, accounting for the wrap around.
+    * <p>
+    * A message that appears to be more than {@link #MAX_REORDERING} messages older is assumed to come
+    * from a sender that restarted its sequence, and is not considered late.
+    * </p>
+    * 
+    * @param lastSequence the sequence number of the most recent message received so far.
+    * @return {@code true} if this message is to be discarded.
+    */
+   public boolean isLate(int lastSequence)
+   {
+      int age = lastSequence - sequence;
+      return age >= 0 && age <= MAX_REORDERING;
+   }
+}
@@ -0,0 +1,30 @@
+package us.ihmc.messager;
+
+import java.util.List;
+
+/**
+ * Implement this interface to create a listener to be notified at once of all the data a messager
+ * received for a given topic since the last notification.
+ * <p>
+ * This is meant for listeners such as loggers for which being notified of each message individually
+ * costs more than processing the data itself.
+ * </p>
+ *
+ * @author Sylvain Bertrand
+ * @param <T> the data type.
+ * @see Messager#addBatchTopicListener(MessagerAPIFactory.Topic, BatchTopicListener, int, long)
+ */
+public interface BatchTopicListener<T>
+{
+   /**
+    * The messager received data for the topic.
+    * <p>
+    * The list is a read-only view that is reused for the next notifications, it is only valid until
+    * this method returns and must not be kept.
+    * </p>
+    *
+    * @param messageContents the data received since the last notification, in the order it was
+    *                        received. Never empty.
+    */
+   void receivedBatchForTopic(List<T> messageContents);
+}
@@ -0,0 +1,140 @@
+package us.ihmc.messager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Listener that accumulates the data it receives and forwards it at once to a
+ * {@link BatchTopicListener}.
+ * <p>
+ * The batch is delivered when either:
+ * <ul>
+ * <li>the number of messages accumulated reaches the maximum batch size,
+ * <li>a message is received after the maximum delay has elapsed since the last delivery,
+ * <li>{@link #flush()} is called, which messagers do at their drain points, see
+ * {@link Messager#flushBatchTopicListeners()}.
+ * </ul>
+ * The batch is delivered on the thread triggering the delivery. Two buffers are used alternatively
+ * such that messages can be accumulated while the previous batch is delivered, and both buffers are
+ * reused such that no allocation is needed once they have grown to the largest batch.
+ * </p>
+ * <p>
+ * This listener can be removed from a messager with
+ * {@link Messager#removeTopicListener(MessagerAPIFactory.Topic, TopicListenerBase)}.
+ * </p>
+ *
+ * @author Sylvain Bertrand
+ * @param <T> the data type.
+ * @see Messager#addBatchTopicListener(MessagerAPIFactory.Topic, BatchTopicListener, int, long)
+ */
+public class BatchingTopicListener<T> implements TopicListener<T>
+{
+   private final BatchTopicListener<T> listener;
+   private final int maxBatchSize;
+   private final long maxDelayNanos;
+
+   /** The buffer the messages are accumulated into. */
+   private ArrayList<T> accumulatingBuffer = new ArrayList<>();
+   private List<T> accumulatingView = Collections.unmodifiableList(accumulatingBuffer);
+   /** The buffer being delivered. */
+   private ArrayList<T> deliveringBuffer = new ArrayList<>();
+   private List<T> deliveringView = Collections.unmodifiableList(deliveringBuffer);
+   private long lastDeliveryTime = System.nanoTime();
+   /** Ensures that a single batch is delivered at a time. */
+   private final Object deliveryLock = new Object();
+
+   /**
+    * Creates a new listener.
+    *
+    * @param listener       the listener to forward the batches to.
+    * @param maxBatchSize   the number of messages triggering the delivery of the batch, zero or a
+    *                       negative value for no limit.
+    * @param maxDelayMillis the time in milliseconds after which a message triggers the delivery of
+    *                       the batch, zero or a negative value for no limit.
+    */
+   public BatchingTopicListener(BatchTopicListener<T> listener, int maxBatchSize, long maxDelayMillis)
+   {
+      if (listener == null)
+         throw new IllegalArgumentException("The listener cannot be null.");
+
+      this.listener = listener;
+      this.maxBatchSize = maxBatchSize;
+      maxDelayNanos = maxDelayMillis > 0 ? maxDelayMillis * 1000000L : -1L;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void receivedMessageForTopic(T messageContent)
+   {
+      boolean deliver;
+
+      synchronized (this)
+      {
+         accumulatingBuffer.add(messageContent);
+         deliver = maxBatchSize > 0 && accumulatingBuffer.size() >= maxBatchSize;
+         deliver |= maxDelayNanos > 0 && System.nanoTime() - lastDeliveryTime >= maxDelayNanos;
+      }
+
+      if (deliver)
+         flush();
+   }
+
+   /**
+    * Delivers the messages accumulated so far, if any.
+    */
+   public void flush()
+   {
+      synchronized (deliveryLock)
+      {
+         synchronized (this)
+         {
+            if (accumulatingBuffer.isEmpty())
+               return;
+
+            ArrayList<T> buffer = accumulatingBuffer;
+            accumulatingBuffer = deliveringBuffer;
+            deliveringBuffer = buffer;
+            List<T> view = accumulatingView;
+            accumulatingView = deliveringView;
+            deliveringView = view;
+            lastDeliveryTime = System.nanoTime();
+         }
+
+         try
+         {
+            listener.receivedBatchForTopic(deliveringView);
+         }
+         finally
+         {
+            deliveringBuffer.clear();
+         }
+      }
+   }
+
+   /**
+    * Gets the number of messages accumulated and waiting to be delivered.
+    *
+    * @return the number of pending messages.
+    */
+   public synchronized int getNumberOfPendingMessages()
+   {
+      return accumulatingBuffer.size();
+   }
+
+   /**
+    * Gets the listener the batches are forwarded to.
+    *
+    * @return the wrapped listener.
+    */
+   public BatchTopicListener<T> getListener()
+   {
+      return listener;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "BatchingTopicListener[" + listener + "]";
+   }
+}
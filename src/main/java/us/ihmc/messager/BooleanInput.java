@@ -0,0 +1,68 @@
+package us.ihmc.messager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Variable holding a {@code boolean} which is automatically updated when the messager receives data
+ * destined to the topic it is registered to.
+ * <p>
+ * The value is stored as raw bits in an {@link AtomicLong} such that updating it never boxes.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @see Messager#createBooleanInput(MessagerAPIFactory.Topic, boolean)
+ */
+public class BooleanInput implements BooleanTopicListener
+{
+   private final AtomicLong bits = new AtomicLong();
+
+   /**
+    * Creates a new input.
+    * 
+    * @param initialValue the initial value of this input.
+    */
+   public BooleanInput(boolean initialValue)
+   {
+      set(initialValue);
+   }
+
+   /**
+    * Gets the latest value received.
+    * 
+    * @return the current value.
+    */
+   public boolean get()
+   {
+      return bits.get() != 0L;
+   }
+
+   /**
+    * Sets the value of this input.
+    * 
+    * @param value the new value.
+    */
+   public void set(boolean value)
+   {
+      bits.set(value ? 1L : 0L);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void receivedBoolean(boolean messageContent)
+   {
+      set(messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void receivedPrimitiveBits(long bits)
+   {
+      this.bits.set(bits);
+   }
+
+   @Override
+   public String toString()
+   {
+      return String.valueOf(get());
+   }
+}
@@ -0,0 +1,42 @@
+package us.ihmc.messager;
+
+/**
+ * Implement this interface to create a listener to be notified when a messager receives a
+ * {@code boolean} for a given topic.
+ * <p>
+ * When the topic was created from {@link MessagerAPIFactory#createBooleanTopicTheme(String)}, the value
+ * is delivered without boxing.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ */
+public interface BooleanTopicListener extends PrimitiveTopicListener<Boolean>
+{
+   /**
+    * The messager just received data for the topic.
+    * 
+    * @param messageContent the data.
+    */
+   void receivedBoolean(boolean messageContent);
+
+   /** {@inheritDoc} */
+   @Override
+   default void receivedMessageForTopic(Boolean messageContent)
+   {
+      receivedBoolean(messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   default void receivedPrimitiveBits(long bits)
+   {
+      receivedBoolean(bits != 0L);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   default PrimitiveType getPrimitiveType()
+   {
+      return PrimitiveType.BOOLEAN;
+   }
+}
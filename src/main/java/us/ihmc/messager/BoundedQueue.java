@@ -0,0 +1,253 @@
+package us.ihmc.messager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Array-based queue with a fixed capacity and a configurable policy for when it is full.
+ * <p>
+ * This is meant to be used for delivering messages asynchronously, such that a slow consumer cannot
+ * cause the memory to grow indefinitely. The elements are stored in a preallocated array, offering
+ * and polling do not allocate.
+ * </p>
+ * <p>
+ * This queue is thread-safe, any number of threads may offer and poll concurrently.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @param <T> the type of the elements.
+ */
+public class BoundedQueue<T>
+{
+   /**
+    * Indicates what to do when offering an element to a full queue.
+    */
+   public enum OverflowPolicy
+   {
+      /** The offering thread waits until an element is polled. */
+      BLOCK,
+      /** The oldest element is dropped to make room for the new one. */
+      DROP_OLDEST,
+      /** The new element is dropped. */
+      DROP_NEWEST,
+      /** The new element replaces the newest element of the queue. */
+      CONFLATE
+   }
+
+   private final Object[] elements;
+   private final OverflowPolicy overflowPolicy;
+
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition notFull = lock.newCondition();
+   /** Index of the oldest element. */
+   private int head = 0;
+   private volatile int size = 0;
+   private volatile int peakSize = 0;
+   private final AtomicLong numberOfDroppedElements = new AtomicLong(0L);
+
+   /**
+    * Creates a new queue.
+    * 
+    * @param capacity       the maximum number of elements, at least 1.
+    * @param overflowPolicy the policy to apply when the queue is full.
+    */
+   public BoundedQueue(int capacity, OverflowPolicy overflowPolicy)
+   {
+      if (capacity < 1)
+         throw new IllegalArgumentException("The capacity has to be at least 1, was: " + capacity);
+      if (overflowPolicy == null)
+         throw new IllegalArgumentException("The overflow policy cannot be null.");
+
+      elements = new Object[capacity];
+      this.overflowPolicy = overflowPolicy;
+   }
+
+   /**
+    * Adds an element at the end of this queue, applying the overflow policy if it is full.
+    * <p>
+    * With {@link OverflowPolicy#BLOCK}, this method waits until there is room for the new element. If
+    * the waiting thread is interrupted, the element is dropped and the interrupt flag is restored.
+    * </p>
+    * 
+    * @param element the element to add, not {@code null}.
+    * @return {@code true} if the element was added, {@code false} if it was dropped.
+    */
+   public boolean offer(T element)
+   {
+      lock.lock();
+
+      try
+      {
+         if (size == elements.length)
+         {
+            switch (overflowPolicy)
+            {
+               case BLOCK:
+                  while (size == elements.length)
+                  {
+                     try
+                     {
+                        notFull.await();
+                     }
+                     catch (InterruptedException e)
+                     {
+                        Thread.currentThread().interrupt();
+                        numberOfDroppedElements.incrementAndGet();
+                        return false;
+                     }
+                  }
+                  break;
+               case DROP_OLDEST:
+                  elements[head] = null;
+                  head = increment(head);
+                  size--;
+                  numberOfDroppedElements.incrementAndGet();
+                  break;
+               case DROP_NEWEST:
+                  numberOfDroppedElements.incrementAndGet();
+                  return false;
+               case CONFLATE:
+                  elements[index(size - 1)] = element;
+                  numberOfDroppedElements.incrementAndGet();
+                  return true;
+               default:
+                  throw new IllegalStateException("Unexpected policy: " + overflowPolicy);
+            }
+         }
+
+         elements[index(size)] = element;
+         size++;
+         if (size > peakSize)
+            peakSize = size;
+         return true;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Retrieves and removes the oldest element of this queue.
+    * 
+    * @return the oldest element, or {@code null} if this queue is empty.
+    */
+   @SuppressWarnings("unchecked")
+   public T poll()
+   {
+      if (size == 0)
+         return null;
+
+      lock.lock();
+
+      try
+      {
+         if (size == 0)
+            return null;
+
+         T element = (T) elements[head];
+         elements[head] = null;
+         head = increment(head);
+         size--;
+         notFull.signal();
+         return element;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Removes all the elements of this queue.
+    */
+   public void clear()
+   {
+      lock.lock();
+
+      try
+      {
+         for (int i = 0; i < size; i++)
+            elements[index(i)] = null;
+         head = 0;
+         size = 0;
+         notFull.signalAll();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   private int index(int offset)
+   {
+      int index = head + offset;
+      return index < elements.length ? index : index - elements.length;
+   }
+
+   private int increment(int index)
+   {
+      return ++index == elements.length ? 0 : index;
+   }
+
+   /**
+    * Tests whether this queue is empty.
+    * 
+    * @return {@code true} if there is no element in this queue.
+    */
+   public boolean isEmpty()
+   {
+      return size == 0;
+   }
+
+   /**
+    * Gets the number of elements currently in this queue.
+    * 
+    * @return the occupancy of this queue.
+    */
+   public int size()
+   {
+      return size;
+   }
+
+   /**
+    * Gets the highest number of elements this queue has held at once.
+    * 
+    * @return the peak occupancy of this queue.
+    */
+   public int getPeakSize()
+   {
+      return peakSize;
+   }
+
+   /**
+    * Gets the maximum number of elements this queue can hold.
+    * 
+    * @return the capacity of this queue.
+    */
+   public int getCapacity()
+   {
+      return elements.length;
+   }
+
+   /**
+    * Gets the policy applied when this queue is full.
+    * 
+    * @return the overflow policy.
+    */
+   public OverflowPolicy getOverflowPolicy()
+   {
+      return overflowPolicy;
+   }
+
+   /**
+    * Gets the number of elements that were dropped or replaced because this queue was full.
+    * 
+    * @return the number of dropped elements.
+    */
+   public long getNumberOfDroppedElements()
+   {
+      return numberOfDroppedElements.get();
+   }
+}
@@ -0,0 +1,74 @@
+package us.ihmc.messager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds at most one pending value which is overwritten by newer values until consumed.
+ * <p>
+ * This is meant for topics for which only the latest value matters: when the consumer cannot keep
+ * up, the intermediate values are dropped instead of being queued and the consumer always gets the
+ * freshest value. The number of values that were overwritten before being consumed is counted.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @param <T> the type of the values.
+ */
+public class ConflatingSlot<T>
+{
+   private final AtomicReference<T> pendingValue = new AtomicReference<>(null);
+   private final AtomicLong numberOfConflatedValues = new AtomicLong(0L);
+
+   /**
+    * Creates a new empty slot.
+    */
+   public ConflatingSlot()
+   {
+   }
+
+   /**
+    * Sets the pending value, replacing the previous one if it has not been consumed yet.
+    * 
+    * @param value the new value, not {@code null}.
+    * @return {@code true} if the slot was empty, i.e. the consumer may have to be notified,
+    *         {@code false} if a pending value was replaced.
+    */
+   public boolean offer(T value)
+   {
+      if (pendingValue.getAndSet(value) == null)
+         return true;
+
+      numberOfConflatedValues.incrementAndGet();
+      return false;
+   }
+
+   /**
+    * Retrieves and removes the pending value.
+    * 
+    * @return the pending value, or {@code null} if the slot is empty.
+    */
+   public T poll()
+   {
+      return pendingValue.getAndSet(null);
+   }
+
+   /**
+    * Tests whether there is a value waiting to be consumed.
+    * 
+    * @return {@code true} if the slot is empty.
+    */
+   public boolean isEmpty()
+   {
+      return pendingValue.get() == null;
+   }
+
+   /**
+    * Gets the number of values that were replaced before being consumed since this slot was created.
+    * 
+    * @return the number of conflated values.
+    */
+   public long getNumberOfConflatedValues()
+   {
+      return numberOfConflatedValues.get();
+   }
+}
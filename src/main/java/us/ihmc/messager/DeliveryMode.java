@@ -0,0 +1,19 @@
+package us.ihmc.messager;
+
+/**
+ * Enum used to declare how reliably the messages of a topic have to be delivered by messagers
+ * communicating over a network. Messagers using shared memory always deliver the messages.
+ *
+ * @see MessagerAPIFactory#createTypedTopicTheme(String, Class, DeliveryMode)
+ */
+public enum DeliveryMode
+{
+   /** Every message is delivered, in order. This is the default. */
+   RELIABLE,
+   /**
+    * Messages may be lost, and the late ones are discarded, in exchange for a lower latency. This is
+    * meant for high-rate topics, such as robot states, for which a new message quickly supersedes
+    * the previous one.
+    */
+   UNRELIABLE
+}
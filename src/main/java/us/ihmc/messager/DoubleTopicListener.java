@@ -0,0 +1,42 @@
+package us.ihmc.messager;
+
+/**
+ * Implement this interface to create a listener to be notified when a messager receives a
+ * {@code double} for a given topic.
+ * <p>
+ * When the topic was created from {@link MessagerAPIFactory#createDoubleTopicTheme(String)}, the value
+ * is delivered without boxing.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ */
+public interface DoubleTopicListener extends PrimitiveTopicListener<Double>
+{
+   /**
+    * The messager just received data for the topic.
+    * 
+    * @param messageContent the data.
+    */
+   void receivedDouble(double messageContent);
+
+   /** {@inheritDoc} */
+   @Override
+   default void receivedMessageForTopic(Double messageContent)
+   {
+      receivedDouble(messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   default void receivedPrimitiveBits(long bits)
+   {
+      receivedDouble(Double.longBitsToDouble(bits));
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   default PrimitiveType getPrimitiveType()
+   {
+      return PrimitiveType.DOUBLE;
+   }
+}
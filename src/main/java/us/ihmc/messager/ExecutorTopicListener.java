@@ -0,0 +1,130 @@
+package us.ihmc.messager;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Listener that forwards the messages it receives to another listener on a given executor.
+ * <p>
+ * The messages are queued and delivered one at a time in the order they were received, see
+ * {@link SequentialExecutor}. This allows a listener to always be notified on a specific thread, for
+ * instance a planning or rendering thread, without blocking the thread delivering the message.
+ * </p>
+ * <p>
+ * This listener matches the listener it wraps, see {@link #matches(TopicListenerBase)}, such that it
+ * can be removed from a messager using the original listener.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @param <T> the data type.
+ * @see Messager#addTopicListenerBase(MessagerAPIFactory.Topic, TopicListenerBase, Executor)
+ */
+public class ExecutorTopicListener<T> implements TopicListenerBase<T>
+{
+   private final TopicListenerBase<T> listener;
+   private final SequentialExecutor executor;
+
+   /**
+    * Creates a new listener.
+    * 
+    * @param listener the listener to notify on the executor.
+    * @param executor the executor on which the listener is to be notified.
+    */
+   public ExecutorTopicListener(TopicListenerBase<T> listener, Executor executor)
+   {
+      if (listener == null || executor == null)
+         throw new IllegalArgumentException("The listener and the executor cannot be null.");
+
+      this.listener = listener;
+      this.executor = executor instanceof SequentialExecutor sequentialExecutor ? sequentialExecutor : new SequentialExecutor(executor);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void receivedMessageForTopic(Message<T> message)
+   {
+      // The message may be recycled by the messager once this method returns.
+      Message<T> copy = new Message<>(message);
+      executor.execute(() -> listener.receivedMessageForTopic(copy));
+   }
+
+   /**
+    * Gets the listener notified by this listener.
+    * 
+    * @return the wrapped listener.
+    */
+   public TopicListenerBase<T> getListener()
+   {
+      return listener;
+   }
+
+   /**
+    * Gets the executor on which the listener is notified.
+    * 
+    * @return the executor.
+    */
+   public Executor getExecutor()
+   {
+      return executor.getExecutor();
+   }
+
+   /**
+    * Gets the number of messages waiting to be delivered to the listener.
+    * 
+    * @return the number of pending messages.
+    */
+   public int getNumberOfPendingMessages()
+   {
+      return executor.getNumberOfPendingTasks();
+   }
+
+   /**
+    * Tests whether the given listener is to be removed along with this listener, i.e. whether it is
+    * either equal to this listener or to the listener it wraps.
+    * 
+    * @param listener the listener to be removed.
+    * @return {@code true} if this listener is to be removed.
+    */
+   public boolean matches(TopicListenerBase<?> listener)
+   {
+      return equals(listener) || this.listener.equals(listener);
+   }
+
+   /**
+    * Tests whether the given listener is to be removed along with a registered listener, unwrapping
+    * the {@link ExecutorTopicListener}s, see {@link #matches(TopicListenerBase)}.
+    * 
+    * @param registeredListener the listener registered with the messager.
+    * @param listener           the listener to be removed.
+    * @return {@code true} if the registered listener is to be removed.
+    */
+   public static boolean matches(TopicListenerBase<?> registeredListener, TopicListenerBase<?> listener)
+   {
+      if (registeredListener instanceof ExecutorTopicListener<?> executorListener)
+         return executorListener.matches(listener);
+      else
+         return registeredListener.equals(listener);
+   }
+
+   @Override
+   public boolean equals(Object object)
+   {
+      if (object == this)
+         return true;
+      else if (object instanceof ExecutorTopicListener<?> other)
+         return listener.equals(other.listener);
+      else
+         return false;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      return listener.hashCode();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ExecutorTopicListener[" + listener + "]";
+   }
+}
@@ -0,0 +1,68 @@
+package us.ihmc.messager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Variable holding a {@code int} which is automatically updated when the messager receives data
+ * destined to the topic it is registered to.
+ * <p>
+ * The value is stored as raw bits in an {@link AtomicLong} such that updating it never boxes.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @see Messager#createIntegerInput(MessagerAPIFactory.Topic, int)
+ */
+public class IntegerInput implements IntegerTopicListener
+{
+   private final AtomicLong bits = new AtomicLong();
+
+   /**
+    * Creates a new input.
+    * 
+    * @param initialValue the initial value of this input.
+    */
+   public IntegerInput(int initialValue)
+   {
+      set(initialValue);
+   }
+
+   /**
+    * Gets the latest value received.
+    * 
+    * @return the current value.
+    */
+   public int get()
+   {
+      return (int) bits.get();
+   }
+
+   /**
+    * Sets the value of this input.
+    * 
+    * @param value the new value.
+    */
+   public void set(int value)
+   {
+      bits.set(value);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void receivedInteger(int messageContent)
+   {
+      set(messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void receivedPrimitiveBits(long bits)
+   {
+      this.bits.set(bits);
+   }
+
+   @Override
+   public String toString()
+   {
+      return String.valueOf(get());
+   }
+}
@@ -0,0 +1,42 @@
+package us.ihmc.messager;
+
+/**
+ * Implement this interface to create a listener to be notified when a messager receives a
+ * {@code int} for a given topic.
+ * <p>
+ * When the topic was created from {@link MessagerAPIFactory#createIntegerTopicTheme(String)}, the value
+ * is delivered without boxing.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ */
+public interface IntegerTopicListener extends PrimitiveTopicListener<Integer>
+{
+   /**
+    * The messager just received data for the topic.
+    * 
+    * @param messageContent the data.
+    */
+   void receivedInteger(int messageContent);
+
+   /** {@inheritDoc} */
+   @Override
+   default void receivedMessageForTopic(Integer messageContent)
+   {
+      receivedInteger(messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   default void receivedPrimitiveBits(long bits)
+   {
+      receivedInteger((int) bits);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   default PrimitiveType getPrimitiveType()
+   {
+      return PrimitiveType.INTEGER;
+   }
+}
@@ -0,0 +1,68 @@
+package us.ihmc.messager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Variable holding a {@code long} which is automatically updated when the messager receives data
+ * destined to the topic it is registered to.
+ * <p>
+ * The value is stored as raw bits in an {@link AtomicLong} such that updating it never boxes.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @see Messager#createLongInput(MessagerAPIFactory.Topic, long)
+ */
+public class LongInput implements LongTopicListener
+{
+   private final AtomicLong bits = new AtomicLong();
+
+   /**
+    * Creates a new input.
+    * 
+    * @param initialValue the initial value of this input.
+    */
+   public LongInput(long initialValue)
+   {
+      set(initialValue);
+   }
+
+   /**
+    * Gets the latest value received.
+    * 
+    * @return the current value.
+    */
+   public long get()
+   {
+      return bits.get();
+   }
+
+   /**
+    * Sets the value of this input.
+    * 
+    * @param value the new value.
+    */
+   public void set(long value)
+   {
+      bits.set(value);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void receivedLong(long messageContent)
+   {
+      set(messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void receivedPrimitiveBits(long bits)
+   {
+      this.bits.set(bits);
+   }
+
+   @Override
+   public String toString()
+   {
+      return String.valueOf(get());
+   }
+}
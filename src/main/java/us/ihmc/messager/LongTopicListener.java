@@ -0,0 +1,42 @@
+package us.ihmc.messager;
+
+/**
+ * Implement this interface to create a listener to be notified when a messager receives a
+ * {@code long} for a given topic.
+ * <p>
+ * When the topic was created from {@link MessagerAPIFactory#createLongTopicTheme(String)}, the value
+ * is delivered without boxing.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ */
+public interface LongTopicListener extends PrimitiveTopicListener<Long>
+{
+   /**
+    * The messager just received data for the topic.
+    * 
+    * @param messageContent the data.
+    */
+   void receivedLong(long messageContent);
+
+   /** {@inheritDoc} */
+   @Override
+   default void receivedMessageForTopic(Long messageContent)
+   {
+      receivedLong(messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   default void receivedPrimitiveBits(long bits)
+   {
+      receivedLong(bits);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   default PrimitiveType getPrimitiveType()
+   {
+      return PrimitiveType.LONG;
+   }
+}
@@ -1,5 +1,8 @@
 package us.ihmc.messager;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -63,6 +66,145 @@ public interface Messager
     */
    <T> void submitMessage(Message<T> message);
 
+   /**
+    * Sends data for a given topic and provides a future that completes once the data has been
+    * processed by the listeners.
+    * <p>
+    * Unlike {@link SynchronizeHint#SYNCHRONOUS} which is only a hint, the returned future is only
+    * completed once the listeners, including the remote ones when the messager communicates over
+    * network, have been notified. This allows to pipeline multiple commands and wait for all of them
+    * at once. The default implementation delivers the message with
+    * {@link SynchronizeHint#SYNCHRONOUS} and returns a completed future.
+    * </p>
+    *
+    * @param topic          the topic of the data.
+    * @param messageContent the data.
+    * @return the future completed when the message has been processed, or completed exceptionally if
+    *         the message could not be delivered.
+    */
+   default <T> CompletableFuture<Void> submitMessageAndAwait(MessagerAPIFactory.Topic<T> topic, T messageContent)
+   {
+      submitMessage(topic, messageContent, SynchronizeHint.SYNCHRONOUS);
+      return CompletableFuture.completedFuture(null);
+   }
+
+   /**
+    * Sends multiple messages at once.
+    * <p>
+    * The messages are dispatched in the iteration order of the collection. Implementations may
+    * process the batch more efficiently than submitting each message individually, for instance by
+    * sending the whole batch as a single packet over network.
+    * </p>
+    *
+    * @param messages the messages to send.
+    * @throws RuntimeException if one of the messages is not part of this messager's API, in which
+    *                          case none of the messages is sent.
+    */
+   default void submitMessages(Collection<? extends Message<?>> messages)
+   {
+      for (Message<?> message : messages)
+      {
+         if (!getMessagerAPI().containsTopic(message.getTopicID()))
+            throw new RuntimeException("The message is not part of this messager's API.");
+      }
+
+      for (Message<?> message : messages)
+         submitMessage(message);
+   }
+
+   /**
+    * Sends a {@code double} for a given topic.
+    * <p>
+    * When the topic was created from {@link MessagerAPIFactory#createDoubleTopicTheme(String)}, the
+    * implementation may deliver the value to {@link DoubleTopicListener}s without boxing it.
+    * </p>
+    *
+    * @param topic          the topic of the data.
+    * @param messageContent the data.
+    */
+   default void submitDouble(MessagerAPIFactory.Topic<Double> topic, double messageContent)
+   {
+      submitMessage(topic, messageContent);
+   }
+
+   /**
+    * Sends a {@code long} for a given topic.
+    * <p>
+    * When the topic was created from {@link MessagerAPIFactory#createLongTopicTheme(String)}, the
+    * implementation may deliver the value to {@link LongTopicListener}s without boxing it.
+    * </p>
+    *
+    * @param topic          the topic of the data.
+    * @param messageContent the data.
+    */
+   default void submitLong(MessagerAPIFactory.Topic<Long> topic, long messageContent)
+   {
+      submitMessage(topic, messageContent);
+   }
+
+   /**
+    * Sends an {@code int} for a given topic.
+    * <p>
+    * When the topic was created from {@link MessagerAPIFactory#createIntegerTopicTheme(String)}, the
+    * implementation may deliver the value to {@link IntegerTopicListener}s without boxing it.
+    * </p>
+    *
+    * @param topic          the topic of the data.
+    * @param messageContent the data.
+    */
+   default void submitInteger(MessagerAPIFactory.Topic<Integer> topic, int messageContent)
+   {
+      submitMessage(topic, messageContent);
+   }
+
+   /**
+    * Sends a {@code boolean} for a given topic.
+    * <p>
+    * When the topic was created from {@link MessagerAPIFactory#createBooleanTopicTheme(String)}, the
+    * implementation may deliver the value to {@link BooleanTopicListener}s without boxing it.
+    * </p>
+    *
+    * @param topic          the topic of the data.
+    * @param messageContent the data.
+    */
+   default void submitBoolean(MessagerAPIFactory.Topic<Boolean> topic, boolean messageContent)
+   {
+      submitMessage(topic, messageContent);
+   }
+
+   /**
+    * Creates a publisher for sending data to the given topic.
+    * <p>
+    * The topic is validated once when creating the publisher. Implementations may also resolve and
+    * cache the internal state associated to the topic such that publishing is cheaper than calling
+    * {@link #submitMessage(MessagerAPIFactory.Topic, Object)}.
+    * </p>
+    *
+    * @param topic the topic to publish to.
+    * @return the new publisher.
+    * @throws RuntimeException if the topic is not part of this messager's API.
+    */
+   default <T> TopicPublisher<T> createPublisher(MessagerAPIFactory.Topic<T> topic)
+   {
+      if (!getMessagerAPI().containsTopic(topic))
+         throw new RuntimeException("The topic is not part of this messager's API: " + topic.getName());
+
+      return new TopicPublisher<T>()
+      {
+         @Override
+         public MessagerAPIFactory.Topic<T> getTopic()
+         {
+            return topic;
+         }
+
+         @Override
+         public void publish(T messageContent, SynchronizeHint hint)
+         {
+            submitMessage(topic, messageContent, hint);
+         }
+      };
+   }
+
    /**
     * Creates a variable which is to be automatically updated when this messager receives data destined
     * to the given topic.
@@ -94,6 +236,139 @@ public interface Messager
       return createInput(topic, null);
    }
 
+   /**
+    * Creates a versioned variable which is to be automatically updated when this messager receives
+    * data destined to the given topic.
+    * <p>
+    * Unlike {@link #createInput(MessagerAPIFactory.Topic, Object)}, the implementation may have all
+    * the inputs of a topic read from a single shared slot such that receiving a message costs a single
+    * write however many inputs there are. The version of the input allows to cheaply detect whether
+    * new data has been received.
+    * </p>
+    *
+    * @param topic        the topic to listen to.
+    * @param initialValue the value of the input until data is received.
+    * @return a variable that is updated automatically when receiving new data.
+    */
+   default <T> TopicInput<T> createTopicInput(MessagerAPIFactory.Topic<T> topic, T initialValue)
+   {
+      TopicValueSlot<T> slot = new TopicValueSlot<>();
+      TopicListener<T> listener = slot::set;
+      addTopicListener(topic, listener);
+      return new TopicInput<>(slot, initialValue, () -> removeTopicListener(topic, listener));
+   }
+
+   /**
+    * Creates a versioned variable which is to be automatically updated when this messager receives
+    * data destined to the given topic.
+    *
+    * @param topic the topic to listen to.
+    * @return a variable that is updated automatically when receiving new data.
+    * @see #createTopicInput(MessagerAPIFactory.Topic, Object)
+    */
+   default <T> TopicInput<T> createTopicInput(MessagerAPIFactory.Topic<T> topic)
+   {
+      return createTopicInput(topic, null);
+   }
+
+   /**
+    * Creates a variable which is to be automatically updated when this messager receives data destined
+    * to the given topic, and which is meant to be polled from a fixed-rate loop.
+    * <p>
+    * The input tells new values from stale repeats and can drain all the values received since the
+    * last poll into a buffer supplied by the caller, see {@link PollingInput}. The input is also a
+    * listener, it can be removed with
+    * {@link #removeTopicListener(MessagerAPIFactory.Topic, TopicListenerBase)}.
+    * </p>
+    *
+    * @param topic        the topic to listen to.
+    * @param initialValue the value of the input until data is received.
+    * @param capacity     the maximum number of values that can be drained at once.
+    * @return a variable that is updated automatically when receiving new data.
+    */
+   default <T> PollingInput<T> createPollingInput(MessagerAPIFactory.Topic<T> topic, T initialValue, int capacity)
+   {
+      PollingInput<T> input = new PollingInput<>(initialValue, capacity);
+      addTopicListener(topic, input);
+      return input;
+   }
+
+   /**
+    * Creates a {@code double} variable which is to be automatically updated when this messager
+    * receives data destined to the given topic.
+    * <p>
+    * The input is also a listener, it can be removed with
+    * {@link #removeTopicListener(MessagerAPIFactory.Topic, TopicListenerBase)}.
+    * </p>
+    *
+    * @param topic        the topic to listen to.
+    * @param initialValue the initial value of the newly created variable.
+    * @return a variable that is updated automatically when receiving new data.
+    */
+   default DoubleInput createDoubleInput(MessagerAPIFactory.Topic<Double> topic, double initialValue)
+   {
+      DoubleInput input = new DoubleInput(initialValue);
+      addTopicListener(topic, input);
+      return input;
+   }
+
+   /**
+    * Creates a {@code long} variable which is to be automatically updated when this messager
+    * receives data destined to the given topic.
+    * <p>
+    * The input is also a listener, it can be removed with
+    * {@link #removeTopicListener(MessagerAPIFactory.Topic, TopicListenerBase)}.
+    * </p>
+    *
+    * @param topic        the topic to listen to.
+    * @param initialValue the initial value of the newly created variable.
+    * @return a variable that is updated automatically when receiving new data.
+    */
+   default LongInput createLongInput(MessagerAPIFactory.Topic<Long> topic, long initialValue)
+   {
+      LongInput input = new LongInput(initialValue);
+      addTopicListener(topic, input);
+      return input;
+   }
+
+   /**
+    * Creates an {@code int} variable which is to be automatically updated when this messager
+    * receives data destined to the given topic.
+    * <p>
+    * The input is also a listener, it can be removed with
+    * {@link #removeTopicListener(MessagerAPIFactory.Topic, TopicListenerBase)}.
+    * </p>
+    *
+    * @param topic        the topic to listen to.
+    * @param initialValue the initial value of the newly created variable.
+    * @return a variable that is updated automatically when receiving new data.
+    */
+   default IntegerInput createIntegerInput(MessagerAPIFactory.Topic<Integer> topic, int initialValue)
+   {
+      IntegerInput input = new IntegerInput(initialValue);
+      addTopicListener(topic, input);
+      return input;
+   }
+
+   /**
+    * Creates a {@code boolean} variable which is to be automatically updated when this messager
+    * receives data destined to the given topic.
+    * <p>
+    * The input is also a listener, it can be removed with
+    * {@link #removeTopicListener(MessagerAPIFactory.Topic, TopicListenerBase)}.
+    * </p>
+    *
+    * @param topic        the topic to listen to.
+    * @param initialValue the initial value of the newly created variable.
+    * @return a variable that is updated automatically when receiving new data.
+    */
+   default BooleanInput createBooleanInput(MessagerAPIFactory.Topic<Boolean> topic, boolean initialValue)
+   {
+      BooleanInput input = new BooleanInput(initialValue);
+      addTopicListener(topic, input);
+      return input;
+   }
+
    /**
     * Removes an input that was previously created by this messager.
     *
@@ -104,6 +379,24 @@ public interface Messager
     */
    <T> boolean removeInput(MessagerAPIFactory.Topic<T> topic, AtomicReference<T> input);
 
+   /**
+    * Removes an input that was previously created with
+    * {@link #createTopicInput(MessagerAPIFactory.Topic, Object)}.
+    * <p>
+    * The input is no longer updated. Once all the inputs of a topic have been removed, the topic no
+    * longer counts as subscribed to.
+    * </p>
+    *
+    * @param topic the topic the input is listening to.
+    * @param input the input to be removed from this messager.
+    * @return {@code true} if the input was removed by this operation, {@code false} if it had already
+    *         been removed.
+    */
+   default <T> boolean removeTopicInput(MessagerAPIFactory.Topic<T> topic, TopicInput<T> input)
+   {
+      return input.release();
+   }
+
    /**
     * Registers a listener to be notified when new data is received for the given topic.
     * 
@@ -128,6 +421,142 @@ public interface Messager
       addTopicListenerBase(topic, (TopicListenerBase<T>) listener);
    }
 
+   /**
+    * Registers a listener to be notified on the given executor when new data is received for the
+    * given topic.
+    * <p>
+    * The messages are queued for the listener and delivered on the executor one at a time and in the
+    * order they were received. The listener can be removed with
+    * {@link #removeTopicListener(MessagerAPIFactory.Topic, TopicListenerBase)}.
+    * </p>
+    *
+    * @param topic    the topic to listen to.
+    * @param listener the listener to be registered.
+    * @param executor the executor on which the listener is to be notified.
+    * @see ExecutorTopicListener
+    */
+   default <T> void addTopicListenerBase(MessagerAPIFactory.Topic<T> topic, TopicListenerBase<T> listener, Executor executor)
+   {
+      addTopicListenerBase(topic, new ExecutorTopicListener<>(listener, executor));
+   }
+
+   /**
+    * Registers a listener to be notified on the given executor when new data is received for the
+    * given topic.
+    * <p>
+    * The messages are queued for the listener and delivered on the executor one at a time and in the
+    * order they were received. The listener can be removed with
+    * {@link #removeTopicListener(MessagerAPIFactory.Topic, TopicListenerBase)}.
+    * </p>
+    *
+    * @param topic    the topic to listen to.
+    * @param listener the listener to be registered.
+    * @param executor the executor on which the listener is to be notified.
+    * @see ExecutorTopicListener
+    */
+   default <T> void addTopicListener(MessagerAPIFactory.Topic<T> topic, TopicListener<T> listener, Executor executor)
+   {
+      addTopicListenerBase(topic, (TopicListenerBase<T>) listener, executor);
+   }
+
+   /**
+    * Registers a listener that is to be notified on its own virtual thread, meant for listeners that
+    * perform blocking operations.
+    * <p>
+    * The messages are queued for the listener and delivered one at a time and in order, such that a
+    * blocking listener does not stall the thread delivering the messages, e.g. a control loop or the
+    * network update thread. Virtual threads require Java 21, on older versions the listener is
+    * notified on a shared pool of platform threads instead, see {@link VirtualThreads}.
+    * </p>
+    *
+    * @param topic    the topic to listen to.
+    * @param listener the listener to be registered.
+    */
+   default <T> void addVirtualThreadTopicListener(MessagerAPIFactory.Topic<T> topic, TopicListener<T> listener)
+   {
+      addTopicListener(topic, listener, VirtualThreads.getSharedExecutor());
+   }
+
+   /**
+    * Registers a listener that is to be notified of only some of the data received for the given
+    * topic, for instance at most 10 times per second.
+    * <p>
+    * The extra messages are discarded before notifying the listener according to the given options,
+    * see {@link RateLimitedTopicListener}.
+    * </p>
+    *
+    * @param topic    the topic to listen to.
+    * @param listener the listener to be registered.
+    * @param options  the options used to select the messages to notify the listener of.
+    * @return the listener registered to this messager, it can be used to remove the listener.
+    */
+   default <T> RateLimitedTopicListener<T> addTopicListener(MessagerAPIFactory.Topic<T> topic, TopicListener<T> listener, SubscriptionOptions options)
+   {
+      RateLimitedTopicListener<T> rateLimitedListener = new RateLimitedTopicListener<>(listener, options);
+      addTopicListener(topic, rateLimitedListener);
+      return rateLimitedListener;
+   }
+
+   /**
+    * Registers a listener to be notified at once of all the data received for the given topic since
+    * its last notification.
+    * <p>
+    * The listener is notified when the number of pending messages reaches {@code maxBatchSize}, when
+    * a message is received after {@code maxDelayMillis} have elapsed since the last notification, or
+    * when {@link #flushBatchTopicListeners()} is called, see {@link BatchingTopicListener}.
+    * </p>
+    *
+    * @param topic          the topic to listen to.
+    * @param listener       the listener to notify.
+    * @param maxBatchSize   the number of messages triggering the notification, zero or a negative
+    *                       value for no limit.
+    * @param maxDelayMillis the time in milliseconds after which a message triggers the notification,
+    *                       zero or a negative value for no limit.
+    * @return the listener registered to this messager, it can be used to remove the listener or to
+    *         flush it individually.
+    */
+   default <T> BatchingTopicListener<T> addBatchTopicListener(MessagerAPIFactory.Topic<T> topic, BatchTopicListener<T> listener, int maxBatchSize,
+                                                              long maxDelayMillis)
+   {
+      BatchingTopicListener<T> batchingListener = new BatchingTopicListener<>(listener, maxBatchSize, maxDelayMillis);
+      addTopicListener(topic, batchingListener);
+      return batchingListener;
+   }
+
+   /**
+    * Registers a listener to be notified at once of all the data received for the given topic, only
+    * when {@link #flushBatchTopicListeners()} is called.
+    *
+    * @param topic    the topic to listen to.
+    * @param listener the listener to notify.
+    * @return the listener registered to this messager, it can be used to remove the listener or to
+    *         flush it individually.
+    * @see #addBatchTopicListener(MessagerAPIFactory.Topic, BatchTopicListener, int, long)
+    */
+   default <T> BatchingTopicListener<T> addBatchTopicListener(MessagerAPIFactory.Topic<T> topic, BatchTopicListener<T> listener)
+   {
+      return addBatchTopicListener(topic, listener, -1, -1L);
+   }
+
+   /**
+    * Notifies all the batch listeners of this messager of the data they accumulated.
+    * <p>
+    * This also delivers the messages held back by the rate-limited listeners whose period has
+    * elapsed, see {@link RateLimitedTopicListener#deliverPending()}.
+    * </p>
+    * <p>
+    * Implementations call this method at their natural drain points, if any, for instance after each
+    * network update or at each JavaFX pulse. The default implementation does nothing, the
+    * {@link BatchingTopicListener}s and {@link RateLimitedTopicListener}s have to be flushed
+    * individually.
+    * </p>
+    *
+    * @see #addBatchTopicListener(MessagerAPIFactory.Topic, BatchTopicListener, int, long)
+    */
+   default void flushBatchTopicListeners()
+   {
+   }
+
    /**
     * Removes a listener that was previously registered to this messager.
     *
@@ -2,6 +2,8 @@ package us.ihmc.messager;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -80,11 +82,21 @@ public class MessagerAPIFactory
    /**
     * Gets the generated API and closes this factory, i.e. no additional topic can be created after
     * calling this method.
+    * <p>
+    * Closing the factory also seals the API: every topic is given a dense ordinal such that the
+    * messagers can resolve a topic with a single array access instead of walking the category tree.
+    * </p>
     * 
     * @return the generated API.
     */
    public MessagerAPI getAPIAndCloseFactory()
    {
+      if (!isFactoryClosed && api != null)
+      {
+         api.roots.get(0).sealRoot();
+         api.seal();
+      }
+
       isFactoryClosed = true;
       categoryThemeIDSet = null;
       topicThemeIDSet = null;
@@ -138,7 +150,111 @@ public class MessagerAPIFactory
     */
    public <T> TypedTopicTheme<T> createTypedTopicTheme(String name)
    {
-      TypedTopicTheme<T> newTheme = new TypedTopicTheme<T>(name);
+      return createTypedTopicTheme(name, null, null, DeliveryMode.RELIABLE);
+   }
+
+   /**
+    * Creates a topic theme with a type associated with it and known at runtime.
+    * <p>
+    * The type of the payload is used by the messagers serializing data, for instance to register the
+    * type for serialization ahead of time such that it does not have to be identified by name in
+    * each message.
+    * </p>
+    * 
+    * @param name        the name of the topic theme.
+    * @param payloadType the type of the data carried by the topics of this theme.
+    * @return the topic theme.
+    * @see Category#topic(TypedTopicTheme)
+    * @see Topic#getPayloadType()
+    */
+   public <T> TypedTopicTheme<T> createTypedTopicTheme(String name, Class<T> payloadType)
+   {
+      return createTypedTopicTheme(name, payloadType, DeliveryMode.RELIABLE);
+   }
+
+   /**
+    * Creates a topic theme with a type associated with it and known at runtime, and which messages
+    * are to be delivered with the given reliability by the messagers communicating over a network.
+    * 
+    * @param name         the name of the topic theme.
+    * @param payloadType  the type of the data carried by the topics of this theme.
+    * @param deliveryMode how reliably the messages of the topics of this theme are to be delivered.
+    * @return the topic theme.
+    * @see Category#topic(TypedTopicTheme)
+    * @see Topic#getDeliveryMode()
+    */
+   public <T> TypedTopicTheme<T> createTypedTopicTheme(String name, Class<T> payloadType, DeliveryMode deliveryMode)
+   {
+      if (payloadType == null)
+         throw new IllegalArgumentException("The payload type cannot be null.");
+      if (deliveryMode == null)
+         throw new IllegalArgumentException("The delivery mode cannot be null.");
+      return createTypedTopicTheme(name, payloadType, null, deliveryMode);
+   }
+
+   /**
+    * Creates a topic theme for topics carrying a single {@code double}.
+    * <p>
+    * Messagers can publish and deliver data for such topics without boxing, see
+    * {@link Messager#submitDouble(Topic, double)} and {@link DoubleTopicListener}.
+    * </p>
+    * 
+    * @param name the name of the topic theme.
+    * @return the topic theme.
+    */
+   public TypedTopicTheme<Double> createDoubleTopicTheme(String name)
+   {
+      return createTypedTopicTheme(name, Double.class, PrimitiveType.DOUBLE, DeliveryMode.RELIABLE);
+   }
+
+   /**
+    * Creates a topic theme for topics carrying a single {@code long}.
+    * <p>
+    * Messagers can publish and deliver data for such topics without boxing, see
+    * {@link Messager#submitLong(Topic, long)} and {@link LongTopicListener}.
+    * </p>
+    * 
+    * @param name the name of the topic theme.
+    * @return the topic theme.
+    */
+   public TypedTopicTheme<Long> createLongTopicTheme(String name)
+   {
+      return createTypedTopicTheme(name, Long.class, PrimitiveType.LONG, DeliveryMode.RELIABLE);
+   }
+
+   /**
+    * Creates a topic theme for topics carrying a single {@code int}.
+    * <p>
+    * Messagers can publish and deliver data for such topics without boxing, see
+    * {@link Messager#submitInteger(Topic, int)} and {@link IntegerTopicListener}.
+    * </p>
+    * 
+    * @param name the name of the topic theme.
+    * @return the topic theme.
+    */
+   public TypedTopicTheme<Integer> createIntegerTopicTheme(String name)
+   {
+      return createTypedTopicTheme(name, Integer.class, PrimitiveType.INTEGER, DeliveryMode.RELIABLE);
+   }
+
+   /**
+    * Creates a topic theme for topics carrying a single {@code boolean}.
+    * <p>
+    * Messagers can publish and deliver data for such topics without boxing, see
+    * {@link Messager#submitBoolean(Topic, boolean)} and {@link BooleanTopicListener}.
+    * </p>
+    * 
+    * @param name the name of the topic theme.
+    * @return the topic theme.
+    */
+   public TypedTopicTheme<Boolean> createBooleanTopicTheme(String name)
+   {
+      return createTypedTopicTheme(name, Boolean.class, PrimitiveType.BOOLEAN, DeliveryMode.RELIABLE);
+   }
+
+   private <T> TypedTopicTheme<T> createTypedTopicTheme(String name, Class<T> payloadType, PrimitiveType primitiveType, DeliveryMode deliveryMode)
+   {
+      TypedTopicTheme<T> newTheme = new TypedTopicTheme<T>(name, payloadType, primitiveType, deliveryMode);
       TopicTheme oldTheme = topicThemeIDSet.put(newTheme.getID(), newTheme);
       if (oldTheme != null && !oldTheme.equals(newTheme))
          throw new RuntimeException("Duplicate topic theme id.");
@@ -155,6 +271,15 @@ public class MessagerAPIFactory
       /** The root category of this API to which all sub-categories and topics are attached. */
       private final List<Category> roots = new ArrayList<>();
 
+      /** The roots as an array, indexed the same way as {@link #rootOffsets}. */
+      private Category[] rootArray;
+      /** For each root, the ordinal of its first topic in this API. */
+      private int[] rootOffsets;
+      /** All the topics of this API indexed by their ordinal. */
+      private Topic<?>[] topics;
+      /** Used to resolve topic IDs that do not originate from a local topic, e.g. received over network. */
+      private Map<TopicID, Topic<?>> topicIDToTopicMap;
+
       private MessagerAPI(Category root)
       {
          this.roots.add(root);
@@ -170,6 +295,97 @@ public class MessagerAPIFactory
          roots.add(newRoot);
       }
 
+      /**
+       * Builds the flat topic table of this API, the roots are expected to be sealed already.
+       */
+      private void seal()
+      {
+         rootArray = roots.toArray(new Category[roots.size()]);
+         rootOffsets = new int[rootArray.length];
+         List<Topic<?>> topicList = new ArrayList<>();
+
+         for (int rootIndex = 0; rootIndex < rootArray.length; rootIndex++)
+         {
+            rootOffsets[rootIndex] = topicList.size();
+            Collections.addAll(topicList, rootArray[rootIndex].sealedTopics);
+         }
+
+         topics = topicList.toArray(new Topic<?>[topicList.size()]);
+         topicIDToTopicMap = new HashMap<>();
+         for (Topic<?> topic : topics)
+            topicIDToTopicMap.put(topic.getUniqueID(), topic);
+      }
+
+      /**
+       * Gets the number of topics declared by this API.
+       * <p>
+       * The ordinal of any topic of this API is in [0, {@code getNumberOfTopics()}[.
+       * </p>
+       * 
+       * @return the number of topics.
+       */
+      public int getNumberOfTopics()
+      {
+         return topics.length;
+      }
+
+      /**
+       * Gets the topic with the given ordinal in this API.
+       * 
+       * @param ordinal the ordinal of the topic to retrieve.
+       * @return the topic.
+       * @see #getTopicOrdinal(Topic)
+       */
+      @SuppressWarnings("unchecked")
+      public <T> Topic<T> getTopic(int ordinal)
+      {
+         return (Topic<T>) topics[ordinal];
+      }
+
+      /**
+       * Gets the ordinal of the given topic in this API.
+       * <p>
+       * The ordinal is dense and can be used by messagers to store any per-topic state in arrays.
+       * </p>
+       * 
+       * @param topic the query.
+       * @return the ordinal of the topic, or {@code -1} if the topic is not part of this API.
+       */
+      public int getTopicOrdinal(Topic<?> topic)
+      {
+         Category topicRoot = topic.root;
+
+         for (int rootIndex = 0; rootIndex < rootArray.length; rootIndex++)
+         {
+            if (rootArray[rootIndex] == topicRoot)
+               return rootOffsets[rootIndex] + topic.localOrdinal;
+         }
+
+         // The topic may be an equivalent copy declared by a different factory.
+         Topic<?> localTopic = topicIDToTopicMap.get(topic.getUniqueID());
+         return localTopic == null ? -1 : getTopicOrdinal(localTopic);
+      }
+
+      /**
+       * Gets the ordinal of the topic with the given ID in this API.
+       * 
+       * @param topicID the query.
+       * @return the ordinal of the topic, or {@code -1} if the topic is not part of this API.
+       */
+      public int getTopicOrdinal(TopicID topicID)
+      {
+         Topic<?> topic = topicID.topic;
+
+         if (topic == null)
+         { // The ID was not created locally, e.g. deserialized.
+            topic = topicIDToTopicMap.get(topicID);
+            if (topic == null)
+               return -1;
+         }
+
+         return getTopicOrdinal(topic);
+      }
+
       /**
        * Retrieves the corresponding topic to the given ID.
        * 
@@ -178,10 +394,14 @@ public class MessagerAPIFactory
        */
       public <T> Topic<T> findTopic(TopicID topicID)
       {
-         for (Category root : roots)
+         int ordinal = getTopicOrdinal(topicID);
+         if (ordinal >= 0)
+            return getTopic(ordinal);
+
+         for (Category root : rootArray)
          {
             if (topicID.getShortIDAtDepth(0) == root.getShortID())
-               return root.findTopic(topicID);
+               return null;
          }
          throw new RuntimeException("The topic id does not belong to this API.");
       }
@@ -194,7 +414,7 @@ public class MessagerAPIFactory
        */
       public <T> boolean containsTopic(Topic<T> topic)
       {
-         return containsTopic(topic.getUniqueID());
+         return getTopicOrdinal(topic) >= 0;
       }
 
       /**
@@ -205,25 +425,20 @@ public class MessagerAPIFactory
        */
       public boolean containsTopic(TopicID topicID)
       {
-         for (Category root : roots)
-         {
-            if (topicID.getShortIDAtDepth(0) == root.getShortID())
-               return root.findTopic(topicID) != null;
-         }
-         return false;
+         return getTopicOrdinal(topicID) >= 0;
       }
 
       /**
        * Collects and returns all the topics declared by this API.
+       * <p>
+       * The topics are ordered by ordinal.
+       * </p>
        * 
        * @return all the topics of this API.
        */
       public List<Topic<?>> getAllTopics()
       {
-         List<Topic<?>> topics = new ArrayList<>();
-         for (Category root : roots)
-            topics.addAll(root.getAllTopics());
-         return topics;
+         return new ArrayList<>(Arrays.asList(topics));
       }
 
       @Override
@@ -368,23 +583,72 @@ public class MessagerAPIFactory
     */
    public class TypedTopicTheme<T> extends TopicTheme
    {
+      /** The type of the data carried by the topics of this theme, {@code null} if unknown. */
+      private final Class<T> payloadType;
+      /** The primitive carried by the topics of this theme, {@code null} if not a primitive theme. */
+      private final PrimitiveType primitiveType;
+      /** How reliably the messages of the topics of this theme are to be delivered. */
+      private final DeliveryMode deliveryMode;
+
       /**
        * Creates a new typed topic theme with the given name.
        * 
-       * @param name the name of the new topic theme.
+       * @param name          the name of the new topic theme.
+       * @param payloadType   the type of the data carried by the topics, or {@code null}.
+       * @param primitiveType the primitive carried by the topics, or {@code null}.
+       * @param deliveryMode  how reliably the messages of the topics are to be delivered.
        */
-      private TypedTopicTheme(String name)
+      private TypedTopicTheme(String name, Class<T> payloadType, PrimitiveType primitiveType, DeliveryMode deliveryMode)
       {
          super(name);
+         this.payloadType = payloadType;
+         this.primitiveType = primitiveType;
+         this.deliveryMode = deliveryMode;
+      }
+
+      /**
+       * Gets how reliably the messages of the topics of this theme are to be delivered.
+       * 
+       * @return the delivery mode.
+       */
+      public DeliveryMode getDeliveryMode()
+      {
+         return deliveryMode;
+      }
+
+      /**
+       * Gets the type of the data carried by topics of this theme.
+       * 
+       * @return the payload type, or {@code null} if it was not provided when creating this theme.
+       */
+      public Class<T> getPayloadType()
+      {
+         return payloadType;
+      }
+
+      /**
+       * Gets the primitive type carried by topics of this theme.
+       * 
+       * @return the primitive type, or {@code null} if this theme is not a primitive theme.
+       */
+      public PrimitiveType getPrimitiveType()
+      {
+         return primitiveType;
       }
 
       @Override
       public boolean equals(Object obj)
       {
          if (obj instanceof TypedTopicTheme)
-            return super.equals((TopicTheme) obj);
+         {
+            TypedTopicTheme<?> other = (TypedTopicTheme<?>) obj;
+            return super.equals((TopicTheme) obj) && payloadType == other.payloadType && primitiveType == other.primitiveType
+                  && deliveryMode == other.deliveryMode;
+         }
          else
+         {
             return false;
+         }
       }
    }
 
@@ -403,12 +667,53 @@ public class MessagerAPIFactory
       private final TIntObjectMap<Category> childrenCategories = new TIntObjectHashMap<>();
       /** The map from ID to each child topic. */
       private final TIntObjectMap<Topic<?>> childrenTopics = new TIntObjectHashMap<>();
+      /** The root of the tree this category belongs to. */
+      private final Category root;
+      /** The distance from this category to the root. */
+      private final int depth;
+      /** The full name of this category. */
+      private final String name;
+      /** For a root category only: all the topics of the tree sorted by name, set when sealing. */
+      private Topic<?>[] sealedTopics;
 
       private Category(Category parentCategory, CategoryTheme categoryTheme)
       {
          this.parent = parentCategory;
          this.theme = categoryTheme;
          assertFactoryIsOpen();
+
+         if (parent == null)
+         {
+            root = this;
+            depth = 0;
+            name = categoryTheme.getName();
+         }
+         else
+         {
+            root = parent.root;
+            depth = parent.depth + 1;
+            name = parent.name + "/" + categoryTheme.getName();
+         }
+      }
+
+      /**
+       * Assigns to each topic of this tree its ordinal local to this root.
+       * <p>
+       * Topics are ordered by name such that the same tree declared in different processes results in
+       * the same ordinals.
+       * </p>
+       */
+      private void sealRoot()
+      {
+         if (sealedTopics != null)
+            return;
+
+         List<Topic<?>> allTopics = getAllTopics();
+         allTopics.sort(Comparator.comparing(Topic::getName));
+         sealedTopics = allTopics.toArray(new Topic<?>[allTopics.size()]);
+
+         for (int i = 0; i < sealedTopics.length; i++)
+            sealedTopics[i].localOrdinal = i;
       }
 
       /**
@@ -541,15 +846,12 @@ public class MessagerAPIFactory
        */
       private int getDepth()
       {
-         if (parent == null)
-            return 0;
-         else
-            return parent.getDepth() + 1;
+         return depth;
       }
 
       private void fillChildUniqueID(int[] topicUniqueIDToFill)
       {
-         topicUniqueIDToFill[getDepth()] = theme.getID();
+         topicUniqueIDToFill[depth] = theme.getID();
          if (parent != null)
             parent.fillChildUniqueID(topicUniqueIDToFill);
       }
@@ -566,7 +868,7 @@ public class MessagerAPIFactory
        */
       private TopicID getUniqueID()
       {
-         int idLength = getDepth() + 1;
+         int idLength = depth + 1;
          int[] uniqueID = new int[idLength];
          uniqueID[idLength - 1] = theme.getID();
          if (parent != null)
@@ -581,10 +883,7 @@ public class MessagerAPIFactory
        */
       public String getName()
       {
-         if (parent == null)
-            return getSimpleName();
-         else
-            return parent.getName() + "/" + getSimpleName();
+         return name;
       }
 
       /**
@@ -632,6 +931,24 @@ public class MessagerAPIFactory
       private final TopicTheme theme;
       /** The category to which this category belongs. */
       private final Category category;
+      /** The root of the tree this topic belongs to. */
+      private final Category root;
+      /** The distance from this topic to the root. */
+      private final int depth;
+      /** The cached ID of this topic. */
+      private final TopicID uniqueID;
+      /** The cached hash code of this topic, the one of its ID. */
+      private final int hashCode;
+      /** The cached full name of this topic. */
+      private final String name;
+      /** The type of the data this topic carries, {@code null} if unknown. */
+      private final Class<T> payloadType;
+      /** The primitive this topic carries, {@code null} if not a primitive topic. */
+      private final PrimitiveType primitiveType;
+      /** How reliably the messages of this topic are to be delivered. */
+      private final DeliveryMode deliveryMode;
+      /** The ordinal of this topic within its root, assigned when the API is sealed. */
+      private int localOrdinal = -1;
 
       private Topic(Category topicCategory, TopicTheme topicTheme)
       {
@@ -640,25 +957,82 @@ public class MessagerAPIFactory
 
          this.category = topicCategory;
          this.theme = topicTheme;
+
+         root = category.root;
+         depth = category.getDepth() + 1;
+         name = category.getName() + "/" + topicTheme.getName();
+
+         int[] id = new int[depth + 1];
+         id[depth] = theme.getID();
+         category.fillChildUniqueID(id);
+         uniqueID = new TopicID(id);
+         uniqueID.topic = this;
+         hashCode = uniqueID.hashCode();
+
+         if (topicTheme instanceof TypedTopicTheme)
+         {
+            @SuppressWarnings("unchecked")
+            TypedTopicTheme<T> typedTheme = (TypedTopicTheme<T>) topicTheme;
+            payloadType = typedTheme.getPayloadType();
+            primitiveType = typedTheme.getPrimitiveType();
+            deliveryMode = typedTheme.getDeliveryMode();
+         }
+         else
+         {
+            payloadType = null;
+            primitiveType = null;
+            deliveryMode = DeliveryMode.RELIABLE;
+         }
       }
 
-      private int getDepth()
+      /**
+       * Gets how reliably the messages of this topic are to be delivered by the messagers
+       * communicating over a network.
+       * 
+       * @return the delivery mode, {@link DeliveryMode#RELIABLE} unless specified otherwise when
+       *         creating the theme of this topic.
+       * @see MessagerAPIFactory#createTypedTopicTheme(String, Class, DeliveryMode)
+       */
+      public DeliveryMode getDeliveryMode()
+      {
+         return deliveryMode;
+      }
+
+      /**
+       * Gets the type of the data this topic carries.
+       * 
+       * @return the payload type, or {@code null} if this topic was not created from a theme with a
+       *         payload type.
+       * @see MessagerAPIFactory#createTypedTopicTheme(String, Class)
+       */
+      public Class<T> getPayloadType()
       {
-         return category.getDepth() + 1;
+         return payloadType;
       }
 
       /**
-       * Creates and returns the ID corresponding to this topic.
+       * Gets the primitive this topic carries.
+       * 
+       * @return the primitive type, or {@code null} if this topic was not created from a primitive
+       *         theme.
+       * @see MessagerAPIFactory#createDoubleTopicTheme(String)
+       */
+      public PrimitiveType getPrimitiveType()
+      {
+         return primitiveType;
+      }
+
+      /**
+       * Returns the ID corresponding to this topic.
+       * <p>
+       * The ID is created once with the topic, it should not be modified.
+       * </p>
        * 
        * @return this topic's unique ID.
        */
       public TopicID getUniqueID()
       {
-         int idLength = getDepth() + 1;
-         int[] uniqueID = new int[idLength];
-         uniqueID[idLength - 1] = theme.getID();
-         category.fillChildUniqueID(uniqueID);
-         return new TopicID(uniqueID);
+         return uniqueID;
       }
 
       /**
@@ -668,7 +1042,7 @@ public class MessagerAPIFactory
        */
       public String getName()
       {
-         return category.getName() + "/" + getSimpleName();
+         return name;
       }
 
       /**
@@ -693,11 +1067,19 @@ public class MessagerAPIFactory
 
       public boolean equals(Topic<T> other)
       {
+         if (other == this)
+            return true;
          if (!theme.equals(other.theme))
             return false;
          return category.equals(other.category);
       }
 
+      @Override
+      public int hashCode()
+      {
+         return hashCode;
+      }
+
       @Override
       public String toString()
       {
@@ -717,28 +1099,32 @@ public class MessagerAPIFactory
     */
    public static class TopicID
    {
+      /** The ID of a topic. */
+      private final int[] id;
+      /** The hash code of this ID, computed once as IDs are used as map keys. */
+      private final int hashCode;
+      /** The topic this ID was created for, only available when the ID was created locally. */
+      transient Topic<?> topic;
+
       /**
-       * The ID of a topic.
-       * <p>
-       * This field is public and non-final only for serialization purposes, it is not meant to be
-       * accessed directly.
-       * </p>
+       * Creates a new topic ID.
+       * 
+       * @param id the id of a topic, copied.
        */
-      public int[] id;
-
-      /** Empty constructor only used for serialization purposes. */
-      public TopicID()
+      public TopicID(int[] id)
       {
+         this.id = id.clone();
+         hashCode = Arrays.hashCode(this.id);
       }
 
       /**
-       * Creates a new topic ID.
+       * Gets the path of category and theme IDs identifying the topic.
        * 
-       * @param id the id of a topic.
+       * @return a copy of this ID.
        */
-      public TopicID(int[] id)
+      public int[] getID()
       {
-         this.id = id;
+         return id.clone();
       }
 
       private int getTopicDepth()
@@ -762,7 +1148,13 @@ public class MessagerAPIFactory
 
       public boolean equals(TopicID other)
       {
-         return Arrays.equals(id, other.id);
+         return hashCode == other.hashCode && Arrays.equals(id, other.id);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return hashCode;
       }
 
       @Override
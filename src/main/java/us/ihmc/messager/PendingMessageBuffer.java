@@ -0,0 +1,168 @@
+package us.ihmc.messager;
+
+import java.util.Arrays;
+
+/**
+ * FIFO buffer of messages waiting to be delivered, which topics have already been resolved.
+ * <p>
+ * The buffer is circular and backed by preallocated arrays such that adding and removing messages
+ * does not allocate, unless more messages are pending than the capacity in which case the buffer
+ * doubles its size. Values of primitive topics are stored as raw bits without being boxed.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Sylvain Bertrand
+ */
+public class PendingMessageBuffer
+{
+   /** The ordinal of the topic of each pending message. */
+   private int[] ordinals;
+   /** The pending messages, {@code null} for primitive values. */
+   private Message<Object>[] messages;
+   /** The value as raw bits of the pending primitive values. */
+   private long[] primitiveBits;
+   /** Index of the oldest pending message. */
+   private int head = 0;
+   private int size = 0;
+
+   /**
+    * Creates a new empty buffer.
+    *
+    * @param initialCapacity the number of pending messages the buffer can hold before growing.
+    * @throws IllegalArgumentException if {@code initialCapacity} is not strictly positive.
+    */
+   @SuppressWarnings("unchecked")
+   public PendingMessageBuffer(int initialCapacity)
+   {
+      if (initialCapacity < 1)
+         throw new IllegalArgumentException("The initial capacity has to be strictly positive, was: " + initialCapacity);
+
+      ordinals = new int[initialCapacity];
+      messages = (Message<Object>[]) new Message<?>[initialCapacity];
+      primitiveBits = new long[initialCapacity];
+   }
+
+   /**
+    * Adds a message at the end of the buffer.
+    *
+    * @param ordinal the ordinal of the message's topic.
+    * @param message the message.
+    */
+   public void addMessage(int ordinal, Message<Object> message)
+   {
+      add(ordinal, message, 0L);
+   }
+
+   /**
+    * Adds a value for a primitive topic at the end of the buffer.
+    *
+    * @param ordinal the ordinal of the topic.
+    * @param bits    the value as raw bits, see {@link PrimitiveType}.
+    */
+   public void addPrimitive(int ordinal, long bits)
+   {
+      add(ordinal, null, bits);
+   }
+
+   private void add(int ordinal, Message<Object> message, long bits)
+   {
+      if (size == ordinals.length)
+         grow();
+
+      int tail = (head + size) % ordinals.length;
+      ordinals[tail] = ordinal;
+      messages[tail] = message;
+      primitiveBits[tail] = bits;
+      size++;
+   }
+
+   /**
+    * Gets the ordinal of the topic of the oldest pending message.
+    *
+    * @return the topic ordinal.
+    */
+   public int peekOrdinal()
+   {
+      return ordinals[head];
+   }
+
+   /**
+    * Gets the oldest pending message.
+    *
+    * @return the message, or {@code null} if it is a primitive value, see
+    *         {@link #peekPrimitiveBits()}.
+    */
+   public Message<Object> peekMessage()
+   {
+      return messages[head];
+   }
+
+   /**
+    * Gets the oldest pending primitive value.
+    *
+    * @return the value as raw bits, only relevant when {@link #peekMessage()} returns {@code null}.
+    */
+   public long peekPrimitiveBits()
+   {
+      return primitiveBits[head];
+   }
+
+   /**
+    * Removes the oldest pending message.
+    */
+   public void remove()
+   {
+      messages[head] = null;
+      head = (head + 1) % ordinals.length;
+      size--;
+   }
+
+   /**
+    * Removes all the pending messages.
+    */
+   public void clear()
+   {
+      Arrays.fill(messages, null);
+      head = 0;
+      size = 0;
+   }
+
+   /**
+    * Tests whether there is no pending message.
+    *
+    * @return {@code true} if the buffer is empty.
+    */
+   public boolean isEmpty()
+   {
+      return size == 0;
+   }
+
+   /**
+    * Gets the number of pending messages.
+    *
+    * @return the number of messages in the buffer.
+    */
+   public int size()
+   {
+      return size;
+   }
+
+   private void grow()
+   {
+      int capacity = ordinals.length;
+      // Unwrapping the buffer such that the oldest message is at index 0.
+      ordinals = unwrap(ordinals, new int[2 * capacity], capacity);
+      messages = unwrap(messages, Arrays.copyOf(messages, 2 * capacity), capacity);
+      primitiveBits = unwrap(primitiveBits, new long[2 * capacity], capacity);
+      head = 0;
+   }
+
+   private <A> A unwrap(A source, A destination, int capacity)
+   {
+      System.arraycopy(source, head, destination, 0, capacity - head);
+      System.arraycopy(source, 0, destination, capacity - head, head);
+      return destination;
+   }
+}
@@ -0,0 +1,228 @@
+package us.ihmc.messager;
+
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * Variable which is automatically updated when the messager receives data destined to the topic it
+ * is registered to, designed to be polled from a fixed-rate loop.
+ * <p>
+ * Each update is assigned a sequence number such that the poller can tell new values from stale
+ * repeats without comparing them. The most recent updates are kept in a pre-allocated ring such that
+ * all the values received since the last poll can be drained into a buffer supplied by the caller.
+ * Polling and draining do not allocate.
+ * </p>
+ * <p>
+ * The input can be updated from any thread but is meant to be polled from a single thread.
+ * </p>
+ * <p>
+ * Typical use:
+ *
+ * <pre>
+ * PollingInput&lt;Pose&gt; input = messager.createPollingInput(PoseTopic, null, 16);
+ * Pose[] poses = new Pose[16];
+ * ...
+ * // In the control loop:
+ * input.pollIfNew(this::recomputeTrajectory);
+ * int numberOfPoses = input.drainTo(poses);
+ * </pre>
+ * </p>
+ *
+ * @author Sylvain Bertrand
+ * @param <T> the data type.
+ * @see Messager#createPollingInput(MessagerAPIFactory.Topic, Object, int)
+ */
+public class PollingInput<T> implements TopicListener<T>
+{
+   private final Object[] ring;
+   private final int mask;
+   private final int capacity;
+   private final T initialValue;
+   /** The number of updates received so far. */
+   private volatile long sequence = 0L;
+   /** The sequence at the last poll, only accessed by the polling thread. */
+   private long polledSequence = 0L;
+   private long numberOfMissedUpdates = 0L;
+
+   /**
+    * Creates a new input.
+    *
+    * @param initialValue the value of this input until data is received.
+    * @param capacity     the maximum number of updates that can be drained at once.
+    * @throws IllegalArgumentException if {@code capacity} is not strictly positive.
+    */
+   public PollingInput(T initialValue, int capacity)
+   {
+      if (capacity < 1)
+         throw new IllegalArgumentException("The capacity has to be strictly positive, was: " + capacity);
+
+      // One extra element such that the slot being overwritten is never part of the drained values.
+      ring = new Object[Integer.highestOneBit(capacity) << 1];
+      mask = ring.length - 1;
+      this.capacity = capacity;
+      this.initialValue = initialValue;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public synchronized void receivedMessageForTopic(T messageContent)
+   {
+      long nextSequence = sequence;
+      ring[(int) (nextSequence & mask)] = messageContent;
+      sequence = nextSequence + 1L;
+   }
+
+   /**
+    * Gets the number of updates received so far.
+    *
+    * @return the sequence of the latest value.
+    */
+   public long sequence()
+   {
+      return sequence;
+   }
+
+   /**
+    * Tests whether this input has been updated since the last poll.
+    *
+    * @return {@code true} if there is a new value to poll.
+    */
+   public boolean hasNew()
+   {
+      return sequence != polledSequence;
+   }
+
+   /**
+    * Gets the latest value received, or the initial value if nothing has been received yet.
+    * <p>
+    * This does not mark the value as polled.
+    * </p>
+    *
+    * @return the current value.
+    */
+   public T get()
+   {
+      while (true)
+      {
+         long currentSequence = sequence;
+         if (currentSequence == 0L)
+            return initialValue;
+         T value = valueAt(currentSequence - 1L);
+         if (isReadable(currentSequence - 1L))
+            return value;
+      }
+   }
+
+   /**
+    * Passes the latest value to the consumer if it has been updated since the last poll.
+    * <p>
+    * Intermediate values received since the last poll are skipped, use {@link #drainTo(Object[])}
+    * to process all of them.
+    * </p>
+    *
+    * @param consumer the consumer to pass the new value to.
+    * @return {@code true} if there was a new value.
+    */
+   public boolean pollIfNew(Consumer<? super T> consumer)
+   {
+      while (true)
+      {
+         long currentSequence = sequence;
+         if (currentSequence == polledSequence)
+            return false;
+
+         T value = valueAt(currentSequence - 1L);
+
+         if (isReadable(currentSequence - 1L))
+         {
+            polledSequence = currentSequence;
+            consumer.accept(value);
+            return true;
+         }
+      }
+   }
+
+   /**
+    * Copies all the values received since the last poll into the given buffer, oldest first, and
+    * marks them as polled.
+    * <p>
+    * When more values have been received than the capacity of this input or the length of the
+    * buffer, the oldest ones are skipped and accounted in {@link #getNumberOfMissedUpdates()}.
+    * </p>
+    *
+    * @param destination the buffer to copy the values into.
+    * @return the number of values copied into the buffer.
+    */
+   public int drainTo(T[] destination)
+   {
+      long endSequence = sequence;
+      long startSequence = Math.max(polledSequence, endSequence - Math.min(destination.length, capacity));
+      int count = 0;
+
+      for (long s = startSequence; s < endSequence; s++)
+         destination[count++] = valueAt(s);
+
+      // Values overwritten by a concurrent update while copying are dropped.
+      int overwritten = 0;
+      while (overwritten < count && !isReadable(startSequence + overwritten))
+         overwritten++;
+
+      if (overwritten > 0)
+      {
+         System.arraycopy(destination, overwritten, destination, 0, count - overwritten);
+         for (int i = count - overwritten; i < count; i++)
+            destination[i] = null;
+         count -= overwritten;
+         startSequence += overwritten;
+      }
+
+      numberOfMissedUpdates += startSequence - polledSequence;
+      polledSequence = endSequence;
+      return count;
+   }
+
+   /**
+    * Gets the number of values that were skipped by {@link #drainTo(Object[])} because they were
+    * overwritten before being drained.
+    *
+    * @return the number of missed updates.
+    */
+   public long getNumberOfMissedUpdates()
+   {
+      return numberOfMissedUpdates;
+   }
+
+   /**
+    * Gets the maximum number of values that can be drained at once.
+    *
+    * @return the capacity of this input.
+    */
+   public int getCapacity()
+   {
+      return capacity;
+   }
+
+   @SuppressWarnings("unchecked")
+   private T valueAt(long s)
+   {
+      return (T) ring[(int) (s & mask)];
+   }
+
+   /**
+    * Tests, after having read it, whether the value of the given sequence was still intact. The value
+    * is being overwritten as soon as the writer starts writing the sequence {@code s + ring.length},
+    * that is when the sequence is {@code s + ring.length}.
+    */
+   private boolean isReadable(long s)
+   {
+      // Prevents the read of the value from being reordered after the read of the sequence.
+      VarHandle.loadLoadFence();
+      return sequence - s < ring.length;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PollingInput[sequence: " + sequence + ", value: " + get() + "]";
+   }
+}
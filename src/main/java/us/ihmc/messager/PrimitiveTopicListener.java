@@ -0,0 +1,37 @@
+package us.ihmc.messager;
+
+/**
+ * Base interface for listeners specialized for topics carrying a single primitive value.
+ * <p>
+ * A primitive listener is also a regular {@link TopicListener} and can be registered with
+ * {@link Messager#addTopicListener(MessagerAPIFactory.Topic, TopicListener)}. When the topic was
+ * created from a primitive theme, e.g. {@link MessagerAPIFactory#createDoubleTopicTheme(String)},
+ * messagers that support it will notify the listener without boxing the value.
+ * </p>
+ * <p>
+ * Implement one of the sub-interfaces instead of this interface directly.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @param <T> the boxed data type.
+ * @see DoubleTopicListener
+ * @see LongTopicListener
+ * @see IntegerTopicListener
+ * @see BooleanTopicListener
+ */
+public interface PrimitiveTopicListener<T> extends TopicListener<T>
+{
+   /**
+    * Gets the type of primitive this listener expects.
+    * 
+    * @return the primitive type.
+    */
+   PrimitiveType getPrimitiveType();
+
+   /**
+    * The messager just received data for the topic.
+    * 
+    * @param bits the data as raw bits, see {@link PrimitiveType}.
+    */
+   void receivedPrimitiveBits(long bits);
+}
@@ -0,0 +1,92 @@
+package us.ihmc.messager;
+
+/**
+ * Enum used to identify topics carrying a single primitive value.
+ * <p>
+ * Such topics can be created with {@link MessagerAPIFactory#createDoubleTopicTheme(String)} and the
+ * likes. When publishing or receiving data for these topics, messagers can avoid boxing the value by
+ * handling it as raw bits stored in a {@code long}.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ */
+public enum PrimitiveType
+{
+   /** The topic carries a {@code double}, the raw bits are {@link Double#doubleToRawLongBits(double)}. */
+   DOUBLE
+   {
+      @Override
+      public long toBits(Object boxedValue)
+      {
+         return Double.doubleToRawLongBits((Double) boxedValue);
+      }
+
+      @Override
+      public Object toBoxed(long bits)
+      {
+         return Double.longBitsToDouble(bits);
+      }
+   },
+   /** The topic carries a {@code long}, the raw bits are the value itself. */
+   LONG
+   {
+      @Override
+      public long toBits(Object boxedValue)
+      {
+         return (Long) boxedValue;
+      }
+
+      @Override
+      public Object toBoxed(long bits)
+      {
+         return bits;
+      }
+   },
+   /** The topic carries an {@code int}, the raw bits are the value itself. */
+   INTEGER
+   {
+      @Override
+      public long toBits(Object boxedValue)
+      {
+         return (Integer) boxedValue;
+      }
+
+      @Override
+      public Object toBoxed(long bits)
+      {
+         return (int) bits;
+      }
+   },
+   /** The topic carries a {@code boolean}, the raw bits are {@code 1} for {@code true}, {@code 0} otherwise. */
+   BOOLEAN
+   {
+      @Override
+      public long toBits(Object boxedValue)
+      {
+         return ((Boolean) boxedValue) ? 1L : 0L;
+      }
+
+      @Override
+      public Object toBoxed(long bits)
+      {
+         return bits != 0L;
+      }
+   };
+
+   /**
+    * Converts a boxed value to its raw bits.
+    * 
+    * @param boxedValue the value to convert, not {@code null}.
+    * @return the raw bits.
+    */
+   public abstract long toBits(Object boxedValue);
+
+   /**
+    * Converts raw bits back to a boxed value. This is used to notify the listeners that are not
+    * primitive specialized.
+    * 
+    * @param bits the raw bits.
+    * @return the boxed value.
+    */
+   public abstract Object toBoxed(long bits);
+}
@@ -0,0 +1,182 @@
+package us.ihmc.messager;
+
+import us.ihmc.messager.SubscriptionOptions.Sampling;
+
+/**
+ * Listener that forwards to another listener only the messages selected according to
+ * {@link SubscriptionOptions}.
+ * <p>
+ * With {@link Sampling#LATEST_AT_TICK}, the latest message received before the end of the period is
+ * held back until either another message is received after the end of the period, in which case the
+ * new message supersedes it, or {@link #deliverPending()} is called after the end of the period,
+ * which messagers do at their drain points, see {@link Messager#flushBatchTopicListeners()}.
+ * </p>
+ * <p>
+ * The messages are forwarded on the thread triggering the delivery. This listener can be removed
+ * from a messager with
+ * {@link Messager#removeTopicListener(MessagerAPIFactory.Topic, TopicListenerBase)}.
+ * </p>
+ *
+ * @author Sylvain Bertrand
+ * @param <T> the data type.
+ * @see Messager#addTopicListener(MessagerAPIFactory.Topic, TopicListener, SubscriptionOptions)
+ */
+public class RateLimitedTopicListener<T> implements TopicListener<T>
+{
+   private final TopicListener<T> listener;
+   private final SubscriptionOptions options;
+   private final Sampling sampling;
+   private final long periodNanos;
+   private final int decimation;
+
+   /** Time of the last delivery, only relevant once {@link #hasDelivered} is {@code true}. */
+   private long lastDeliveryTime;
+   private boolean hasDelivered = false;
+   /** The number of messages received so far, used for {@link Sampling#EVERY_NTH}. */
+   private long numberOfReceivedMessages = 0L;
+   /** The message held back with {@link Sampling#LATEST_AT_TICK}. */
+   private T pendingMessage = null;
+   private boolean hasPendingMessage = false;
+   private long numberOfDroppedMessages = 0L;
+
+   /**
+    * Creates a new listener.
+    *
+    * @param listener the listener to forward the selected messages to.
+    * @param options  the options used to select the messages to forward.
+    */
+   public RateLimitedTopicListener(TopicListener<T> listener, SubscriptionOptions options)
+   {
+      if (listener == null)
+         throw new IllegalArgumentException("The listener cannot be null.");
+      if (options == null)
+         throw new IllegalArgumentException("The options cannot be null.");
+
+      this.listener = listener;
+      this.options = options;
+      sampling = options.getSampling();
+      periodNanos = options.getPeriodNanos();
+      decimation = options.getDecimation();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void receivedMessageForTopic(T messageContent)
+   {
+      synchronized (this)
+      {
+         if (sampling == Sampling.EVERY_NTH)
+         {
+            if (numberOfReceivedMessages++ % decimation != 0)
+            {
+               numberOfDroppedMessages++;
+               return;
+            }
+         }
+         else if (!startDelivery(System.nanoTime()))
+         {
+            if (sampling == Sampling.LATEST_AT_TICK)
+            { // Held back, superseding the previous pending message if any.
+               if (hasPendingMessage)
+                  numberOfDroppedMessages++;
+               pendingMessage = messageContent;
+               hasPendingMessage = true;
+            }
+            else
+            {
+               numberOfDroppedMessages++;
+            }
+            return;
+         }
+         else if (hasPendingMessage)
+         { // Superseded by the new message.
+            numberOfDroppedMessages++;
+            pendingMessage = null;
+            hasPendingMessage = false;
+         }
+      }
+
+      listener.receivedMessageForTopic(messageContent);
+   }
+
+   /**
+    * Delivers the message held back with {@link Sampling#LATEST_AT_TICK}, if any and if the period
+    * has elapsed since the last delivery.
+    *
+    * @return {@code true} if a message was delivered.
+    */
+   public boolean deliverPending()
+   {
+      T messageContent;
+
+      synchronized (this)
+      {
+         if (!hasPendingMessage || !startDelivery(System.nanoTime()))
+            return false;
+
+         messageContent = pendingMessage;
+         pendingMessage = null;
+         hasPendingMessage = false;
+      }
+
+      listener.receivedMessageForTopic(messageContent);
+      return true;
+   }
+
+   private boolean startDelivery(long now)
+   {
+      if (hasDelivered && now - lastDeliveryTime < periodNanos)
+         return false;
+
+      hasDelivered = true;
+      lastDeliveryTime = now;
+      return true;
+   }
+
+   /**
+    * Tests whether a message is being held back until the end of the current period.
+    *
+    * @return {@code true} if there is a pending message.
+    */
+   public synchronized boolean hasPendingMessage()
+   {
+      return hasPendingMessage;
+   }
+
+   /**
+    * Gets the number of messages that were received but not forwarded to the listener, not counting
+    * the message currently held back.
+    *
+    * @return the number of dropped messages.
+    */
+   public synchronized long getNumberOfDroppedMessages()
+   {
+      return numberOfDroppedMessages;
+   }
+
+   /**
+    * Gets the options used to select the messages to forward.
+    *
+    * @return the subscription options.
+    */
+   public SubscriptionOptions getOptions()
+   {
+      return options;
+   }
+
+   /**
+    * Gets the listener the selected messages are forwarded to.
+    *
+    * @return the wrapped listener.
+    */
+   public TopicListener<T> getListener()
+   {
+      return listener;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "RateLimitedTopicListener[" + options + ", " + listener + "]";
+   }
+}
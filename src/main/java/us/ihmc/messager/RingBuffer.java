@@ -0,0 +1,321 @@
+package us.ihmc.messager;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Preallocated ring buffer where producers claim sequences and consumers each track their own
+ * cursor, in the spirit of the LMAX Disruptor.
+ * <p>
+ * Typical use for a producer is:
+ * 
+ * <pre>
+ * long sequence = ringBuffer.next();
+ * ringBuffer.get(sequence).set(...);
+ * ringBuffer.publish(sequence);
+ * </pre>
+ * 
+ * Each consumer registers a gating sequence via {@link #addGatingSequence(AtomicLong)} which it
+ * updates once it is done with the entries, this prevents the producers from overwriting entries
+ * that have not been consumed yet.
+ * </p>
+ * <p>
+ * Once created, claiming, publishing and consuming do not allocate.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @param <E> the type of the entries.
+ */
+public class RingBuffer<E>
+{
+   /**
+    * Indicates the threads that can claim sequences.
+    */
+   public enum ProducerType
+   {
+      /** Only one thread at a time publishes, claiming does not require any atomic operation. */
+      SINGLE,
+      /** Multiple threads may publish concurrently. */
+      MULTI
+   }
+
+   private static final AtomicLong[] NO_SEQUENCES = new AtomicLong[0];
+
+   private final Object[] entries;
+   private final int bufferSize;
+   private final int indexMask;
+   private final int indexShift;
+   private final ProducerType producerType;
+   private final RingBufferWaitStrategy waitStrategy;
+
+   /** For single producer: the last published sequence. For multi producer: the last claimed sequence. */
+   private final AtomicLong cursor = new AtomicLong(-1L);
+   /** Multi producer only: for each slot, the lap of the last published sequence. */
+   private final AtomicIntegerArray availableBuffer;
+   /** Multi producer only: cache of the minimum gating sequence. */
+   private final AtomicLong gatingSequenceCache = new AtomicLong(-1L);
+
+   /** Single producer only: the last claimed sequence. */
+   private long nextValue = -1L;
+   /** Single producer only: cache of the minimum gating sequence. */
+   private long cachedValue = -1L;
+
+   private volatile AtomicLong[] gatingSequences = NO_SEQUENCES;
+
+   /**
+    * Creates a new ring buffer.
+    * 
+    * @param bufferSize   the number of entries, has to be a power of 2.
+    * @param entryFactory used to preallocate the entries.
+    * @param producerType whether one or more threads can publish.
+    * @param waitStrategy the strategy used by producers waiting for space and consumers waiting for
+    *                     entries.
+    */
+   public RingBuffer(int bufferSize, Supplier<E> entryFactory, ProducerType producerType, RingBufferWaitStrategy waitStrategy)
+   {
+      if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1)
+         throw new IllegalArgumentException("The buffer size has to be a power of 2, was: " + bufferSize);
+
+      this.bufferSize = bufferSize;
+      this.producerType = producerType;
+      this.waitStrategy = waitStrategy;
+      indexMask = bufferSize - 1;
+      indexShift = Integer.numberOfTrailingZeros(bufferSize);
+
+      entries = new Object[bufferSize];
+      for (int i = 0; i < bufferSize; i++)
+         entries[i] = entryFactory.get();
+
+      if (producerType == ProducerType.MULTI)
+      {
+         availableBuffer = new AtomicIntegerArray(bufferSize);
+         for (int i = 0; i < bufferSize; i++)
+            availableBuffer.set(i, -1);
+      }
+      else
+      {
+         availableBuffer = null;
+      }
+   }
+
+   /**
+    * Gets the entry for the given sequence.
+    * 
+    * @param sequence the sequence of the entry.
+    * @return the entry.
+    */
+   @SuppressWarnings("unchecked")
+   public E get(long sequence)
+   {
+      return (E) entries[(int) sequence & indexMask];
+   }
+
+   /**
+    * Claims the next sequence, waiting for the consumers if the buffer is full.
+    * <p>
+    * The claimed sequence has to be published via {@link #publish(long)} once the entry is filled.
+    * </p>
+    * 
+    * @return the claimed sequence.
+    */
+   public long next()
+   {
+      if (producerType == ProducerType.SINGLE)
+         return nextSingleProducer();
+      else
+         return nextMultiProducer();
+   }
+
+   private long nextSingleProducer()
+   {
+      long nextSequence = nextValue + 1L;
+      long wrapPoint = nextSequence - bufferSize;
+
+      if (wrapPoint > cachedValue || cachedValue > nextValue)
+      {
+         long minSequence;
+         int counter = 0;
+         while (wrapPoint > (minSequence = getMinimumGatingSequence(nextValue)))
+            waitStrategy.idle(counter++);
+         cachedValue = minSequence;
+      }
+
+      nextValue = nextSequence;
+      return nextSequence;
+   }
+
+   private long nextMultiProducer()
+   {
+      int counter = 0;
+
+      while (true)
+      {
+         long current = cursor.get();
+         long nextSequence = current + 1L;
+         long wrapPoint = nextSequence - bufferSize;
+         long cachedGatingSequence = gatingSequenceCache.get();
+
+         if (wrapPoint > cachedGatingSequence || cachedGatingSequence > current)
+         {
+            long gatingSequence = getMinimumGatingSequence(current);
+
+            if (wrapPoint > gatingSequence)
+            {
+               waitStrategy.idle(counter++);
+               continue;
+            }
+
+            gatingSequenceCache.set(gatingSequence);
+         }
+         else if (cursor.compareAndSet(current, nextSequence))
+         {
+            return nextSequence;
+         }
+      }
+   }
+
+   /**
+    * Makes the entry at the given sequence available to the consumers.
+    * 
+    * @param sequence the sequence previously claimed with {@link #next()}.
+    */
+   public void publish(long sequence)
+   {
+      if (producerType == ProducerType.SINGLE)
+         cursor.set(sequence);
+      else
+         availableBuffer.set((int) sequence & indexMask, (int) (sequence >>> indexShift));
+   }
+
+   /**
+    * Tests whether the entry at the given sequence has been published.
+    * 
+    * @param sequence the query.
+    * @return {@code true} if the entry can be consumed.
+    */
+   public boolean isAvailable(long sequence)
+   {
+      if (producerType == ProducerType.SINGLE)
+         return sequence <= cursor.get();
+      else
+         return availableBuffer.get((int) sequence & indexMask) == (int) (sequence >>> indexShift);
+   }
+
+   /**
+    * Gets the highest sequence that can be safely consumed by a consumer.
+    * 
+    * @param lowerBound        the next sequence the consumer is interested in.
+    * @param availableSequence the current value of the cursor.
+    * @return the highest sequence that has been published, or {@code lowerBound - 1} if none.
+    */
+   public long getHighestPublishedSequence(long lowerBound, long availableSequence)
+   {
+      if (producerType == ProducerType.SINGLE)
+         return availableSequence;
+
+      for (long sequence = lowerBound; sequence <= availableSequence; sequence++)
+      {
+         if (!isAvailable(sequence))
+            return sequence - 1L;
+      }
+      return availableSequence;
+   }
+
+   /**
+    * Waits for the entry at the given sequence to be published.
+    * 
+    * @param sequence the sequence to wait for.
+    * @param running  the wait is aborted when this flag becomes {@code false}.
+    * @return the highest sequence that can be consumed, greater or equal to {@code sequence} unless
+    *         the wait was aborted.
+    */
+   public long waitFor(long sequence, AtomicBoolean running)
+   {
+      int counter = 0;
+
+      while (running.get())
+      {
+         long availableSequence = cursor.get();
+
+         if (availableSequence >= sequence)
+         {
+            long highestSequence = getHighestPublishedSequence(sequence, availableSequence);
+            if (highestSequence >= sequence)
+               return highestSequence;
+         }
+
+         waitStrategy.idle(counter++);
+      }
+
+      return sequence - 1L;
+   }
+
+   /**
+    * Gets the current value of the cursor.
+    * 
+    * @return the cursor value.
+    */
+   public long getCursor()
+   {
+      return cursor.get();
+   }
+
+   /**
+    * Gets the number of entries in this ring buffer.
+    * 
+    * @return the buffer size.
+    */
+   public int getBufferSize()
+   {
+      return bufferSize;
+   }
+
+   /**
+    * Registers the sequence of a consumer, the producers will not overwrite entries beyond it.
+    * 
+    * @param sequence the sequence of the last entry consumed by the consumer.
+    */
+   public synchronized void addGatingSequence(AtomicLong sequence)
+   {
+      AtomicLong[] newSequences = Arrays.copyOf(gatingSequences, gatingSequences.length + 1);
+      newSequences[newSequences.length - 1] = sequence;
+      gatingSequences = newSequences;
+   }
+
+   /**
+    * Removes the sequence of a consumer.
+    * 
+    * @param sequence the sequence to remove.
+    * @return whether the sequence was registered.
+    */
+   public synchronized boolean removeGatingSequence(AtomicLong sequence)
+   {
+      AtomicLong[] currentSequences = gatingSequences;
+
+      for (int i = 0; i < currentSequences.length; i++)
+      {
+         if (currentSequences[i] == sequence)
+         {
+            AtomicLong[] newSequences = new AtomicLong[currentSequences.length - 1];
+            System.arraycopy(currentSequences, 0, newSequences, 0, i);
+            System.arraycopy(currentSequences, i + 1, newSequences, i, newSequences.length - i);
+            gatingSequences = newSequences;
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private long getMinimumGatingSequence(long defaultValue)
+   {
+      AtomicLong[] sequences = gatingSequences;
+      long minimum = defaultValue;
+
+      for (int i = 0; i < sequences.length; i++)
+         minimum = Math.min(minimum, sequences[i].get());
+      return minimum;
+   }
+}
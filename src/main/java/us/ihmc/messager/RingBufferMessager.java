@@ -0,0 +1,448 @@
+package us.ihmc.messager;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import us.ihmc.log.LogTools;
+import us.ihmc.messager.MessagerAPIFactory.MessagerAPI;
+import us.ihmc.messager.MessagerAPIFactory.Topic;
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
+import us.ihmc.messager.RingBuffer.ProducerType;
+
+/**
+ * Implementation of {@code Messager} using shared memory where messages are delivered through a
+ * preallocated {@link RingBuffer} per topic.
+ * <p>
+ * Each listener is a consumer of the ring buffer of its topic: it runs on its own thread and tracks
+ * its own cursor, such that the thread submitting a message only has to claim a slot, copy the
+ * message into it, and publish the slot. The slot is published before the inputs, i.e.
+ * {@code AtomicReference}s, and the other listeners are notified, the latter being delivered as with
+ * {@link SharedMemoryMessager}. Publishing with a publisher created by this messager does not
+ * allocate once the messager is running when the topic only has ring buffer listeners.
+ * </p>
+ * <p>
+ * Notes:
+ * <ul>
+ * <li>the message received by a listener is owned by the ring buffer and is recycled once all the
+ * listeners have consumed it, a listener must not keep a reference to it, see
+ * {@link TopicListenerBase#receivedMessageForTopic(Message)}.
+ * <li>the synchronize hint of the messages is ignored, listeners are always notified asynchronously
+ * in the submission order.
+ * <li>when the ring buffer of a topic is full, the submitting thread waits for the slowest listener.
+ * <li>with {@link ProducerType#SINGLE}, only one thread at a time may submit messages to a given
+ * topic.
+ * </ul>
+ * </p>
+ *
+ * @author Sylvain Bertrand
+ */
+public class RingBufferMessager extends SharedMemoryMessager
+{
+   private final RingBufferTopic[] ringBufferTopics;
+   private final ThreadFactory threadFactory;
+
+   /**
+    * Creates a new messager using multi-producer ring buffers of 1024 entries and the
+    * {@link RingBufferWaitStrategy#PARK} wait strategy.
+    *
+    * @param messagerAPI the API to use with this messager.
+    */
+   public RingBufferMessager(MessagerAPI messagerAPI)
+   {
+      this(messagerAPI, 1024, ProducerType.MULTI, RingBufferWaitStrategy.PARK);
+   }
+
+   /**
+    * Creates a new messager.
+    *
+    * @param messagerAPI  the API to use with this messager.
+    * @param bufferSize   the number of entries in each topic's ring buffer, has to be a power of 2.
+    * @param producerType whether messages for a given topic are submitted from a single thread or
+    *                     multiple threads.
+    * @param waitStrategy how the listener threads wait for new messages and how the submitting
+    *                     threads wait when a ring buffer is full.
+    */
+   public RingBufferMessager(MessagerAPI messagerAPI, int bufferSize, ProducerType producerType, RingBufferWaitStrategy waitStrategy)
+   {
+      this(messagerAPI, bufferSize, producerType, waitStrategy, newDefaultThreadFactory());
+   }
+
+   /**
+    * Creates a new messager.
+    *
+    * @param messagerAPI   the API to use with this messager.
+    * @param bufferSize    the number of entries in each topic's ring buffer, has to be a power of 2.
+    * @param producerType  whether messages for a given topic are submitted from a single thread or
+    *                      multiple threads.
+    * @param waitStrategy  how the listener threads wait for new messages and how the submitting
+    *                      threads wait when a ring buffer is full.
+    * @param threadFactory the factory used to create the thread of each listener.
+    */
+   public RingBufferMessager(MessagerAPI messagerAPI, int bufferSize, ProducerType producerType, RingBufferWaitStrategy waitStrategy,
+                             ThreadFactory threadFactory)
+   {
+      super(messagerAPI);
+      this.threadFactory = threadFactory;
+
+      ringBufferTopics = new RingBufferTopic[messagerAPI.getNumberOfTopics()];
+      for (int i = 0; i < ringBufferTopics.length; i++)
+         ringBufferTopics[i] = new RingBufferTopic(messagerAPI.getTopic(i), bufferSize, producerType, waitStrategy);
+   }
+
+   private static ThreadFactory newDefaultThreadFactory()
+   {
+      AtomicInteger threadIndex = new AtomicInteger(0);
+      return runnable ->
+      {
+         Thread thread = new Thread(runnable, RingBufferMessager.class.getSimpleName() + "-" + threadIndex.getAndIncrement());
+         thread.setDaemon(true);
+         return thread;
+      };
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   protected void submitMessage(int ordinal, Message<Object> message)
+   {
+      if (isConnected.get())
+         ringBufferTopics[ordinal].publish(message.messageContent, message.synchronizeHint);
+
+      super.submitMessage(ordinal, message);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   protected void submitPrimitive(int ordinal, long bits)
+   {
+      super.submitPrimitive(ordinal, bits);
+
+      if (isConnected.get())
+         ringBufferTopics[ordinal].publishPrimitive(bits);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public <T> TopicPublisher<T> createPublisher(Topic<T> topic)
+   {
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
+         throw new RuntimeException("The topic is not part of this messager's API: " + topic.getName());
+      return new RingBufferTopicPublisher<>(topic, ordinal);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The listener is notified on its own thread with a message that is recycled once it returns, it
+    * must copy the message to keep it.
+    * </p>
+    */
+   @SuppressWarnings("unchecked")
+   @Override
+   public <T> void addTopicListenerBase(Topic<T> topic, TopicListenerBase<T> listener)
+   {
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
+         throw new RuntimeException("The topic is not part of this messager's API: " + topic.getName());
+
+      RingBufferConsumer consumer = ringBufferTopics[ordinal].addConsumer((TopicListenerBase<Object>) listener);
+      if (isConnected.get())
+         consumer.start(threadFactory);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public <T> boolean removeTopicListener(Topic<T> topic, TopicListenerBase<T> listener)
+   {
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
+         return false;
+      return ringBufferTopics[ordinal].removeConsumer(listener);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The listeners of this messager are consumers of the ring buffers, the batching and rate-limited
+    * ones are flushed along with the listeners registered to the dispatch table.
+    * </p>
+    */
+   @Override
+   public void flushBatchTopicListeners()
+   {
+      super.flushBatchTopicListeners();
+
+      for (RingBufferTopic ringBufferTopic : ringBufferTopics)
+      {
+         for (RingBufferConsumer consumer : ringBufferTopic.consumers)
+         {
+            if (consumer.listener instanceof BatchingTopicListener<?> batchingListener)
+               batchingListener.flush();
+            else if (consumer.listener instanceof RateLimitedTopicListener<?> rateLimitedListener)
+               rateLimitedListener.deliverPending();
+         }
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void startMessager()
+   {
+      for (RingBufferTopic ringBufferTopic : ringBufferTopics)
+      {
+         for (RingBufferConsumer consumer : ringBufferTopic.consumers)
+            consumer.start(threadFactory);
+      }
+      super.startMessager();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void closeMessager()
+   {
+      super.closeMessager();
+      for (RingBufferTopic ringBufferTopic : ringBufferTopics)
+         ringBufferTopic.clear();
+   }
+
+   /**
+    * Publisher which topic is resolved once at construction and that writes directly in the ring
+    * buffer when the topic only has ring buffer listeners.
+    */
+   private class RingBufferTopicPublisher<T> extends SharedMemoryTopicPublisher<T>
+   {
+      private final int ordinal;
+      private final RingBufferTopic ringBufferTopic;
+
+      private RingBufferTopicPublisher(Topic<T> topic, int ordinal)
+      {
+         super(topic, ordinal);
+         this.ordinal = ordinal;
+         ringBufferTopic = ringBufferTopics[ordinal];
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public void publish(T messageContent, SynchronizeHint hint)
+      {
+         // The inputs and the other listeners are notified as for any submitted message.
+         if (!isConnected.get() || dispatchTable.hasSubscribers(ordinal))
+            super.publish(messageContent, hint);
+         else
+            ringBufferTopic.publish(messageContent, hint == null ? SynchronizeHint.NONE : hint);
+      }
+   }
+
+   /**
+    * Slot of a ring buffer.
+    */
+   private static class RingBufferEntry
+   {
+      private final Message<Object> message = new Message<>();
+      /** Raw bits of the value for primitive topics, see {@link PrimitiveType}. */
+      private long bits;
+      /** Whether {@link #bits} holds the current value. */
+      private boolean hasBits;
+
+      private void set(TopicID topicID, Object messageContent, SynchronizeHint hint, PrimitiveType primitiveType)
+      {
+         message.topicID = topicID;
+         message.messageContent = messageContent;
+         message.synchronizeHint = hint;
+         hasBits = primitiveType != null && messageContent != null;
+         if (hasBits)
+            bits = primitiveType.toBits(messageContent);
+      }
+
+      private void setPrimitive(TopicID topicID, long bits, Object boxedValue)
+      {
+         message.topicID = topicID;
+         message.messageContent = boxedValue;
+         message.synchronizeHint = SynchronizeHint.NONE;
+         this.bits = bits;
+         hasBits = true;
+      }
+   }
+
+   /**
+    * Gathers the ring buffer and the consumers associated with a single topic.
+    */
+   private static class RingBufferTopic
+   {
+      private static final RingBufferConsumer[] NO_CONSUMERS = new RingBufferConsumer[0];
+
+      private final Topic<Object> topic;
+      private final TopicID topicID;
+      private final PrimitiveType primitiveType;
+      private final RingBuffer<RingBufferEntry> ringBuffer;
+      private volatile RingBufferConsumer[] consumers = NO_CONSUMERS;
+      /** Whether at least one consumer needs primitive values to be boxed. */
+      private volatile boolean hasNonPrimitiveConsumers = false;
+
+      @SuppressWarnings("unchecked")
+      private RingBufferTopic(Topic<?> topic, int bufferSize, ProducerType producerType, RingBufferWaitStrategy waitStrategy)
+      {
+         this.topic = (Topic<Object>) topic;
+         topicID = topic.getUniqueID();
+         primitiveType = topic.getPrimitiveType();
+         ringBuffer = new RingBuffer<>(bufferSize, RingBufferEntry::new, producerType, waitStrategy);
+      }
+
+      private boolean hasConsumers()
+      {
+         return consumers.length > 0;
+      }
+
+      private void publish(Object messageContent, SynchronizeHint hint)
+      {
+         if (!hasConsumers())
+            return;
+
+         long sequence = ringBuffer.next();
+         ringBuffer.get(sequence).set(topicID, messageContent, hint, primitiveType);
+         ringBuffer.publish(sequence);
+      }
+
+      private void publishPrimitive(long bits)
+      {
+         if (!hasConsumers())
+            return;
+
+         Object boxedValue = hasNonPrimitiveConsumers ? primitiveType.toBoxed(bits) : null;
+         long sequence = ringBuffer.next();
+         ringBuffer.get(sequence).setPrimitive(topicID, bits, boxedValue);
+         ringBuffer.publish(sequence);
+      }
+
+      private synchronized RingBufferConsumer addConsumer(TopicListenerBase<Object> listener)
+      {
+         RingBufferConsumer consumer = new RingBufferConsumer(topic, listener, isPrimitiveListener(listener), ringBuffer);
+         RingBufferConsumer[] newConsumers = Arrays.copyOf(consumers, consumers.length + 1);
+         newConsumers[newConsumers.length - 1] = consumer;
+         updateConsumers(newConsumers);
+         return consumer;
+      }
+
+      private synchronized boolean removeConsumer(TopicListenerBase<?> listener)
+      {
+         RingBufferConsumer[] currentConsumers = consumers;
+
+         for (int i = 0; i < currentConsumers.length; i++)
+         {
+            if (ExecutorTopicListener.matches(currentConsumers[i].listener, listener))
+            {
+               currentConsumers[i].stop();
+               RingBufferConsumer[] newConsumers = new RingBufferConsumer[currentConsumers.length - 1];
+               System.arraycopy(currentConsumers, 0, newConsumers, 0, i);
+               System.arraycopy(currentConsumers, i + 1, newConsumers, i, newConsumers.length - i);
+               updateConsumers(newConsumers);
+               return true;
+            }
+         }
+         return false;
+      }
+
+      private synchronized void clear()
+      {
+         for (RingBufferConsumer consumer : consumers)
+            consumer.stop();
+         updateConsumers(NO_CONSUMERS);
+      }
+
+      private void updateConsumers(RingBufferConsumer[] newConsumers)
+      {
+         boolean newHasNonPrimitiveConsumers = false;
+         for (RingBufferConsumer consumer : newConsumers)
+            newHasNonPrimitiveConsumers |= !consumer.isPrimitive;
+         hasNonPrimitiveConsumers = newHasNonPrimitiveConsumers;
+         consumers = newConsumers;
+      }
+
+      private boolean isPrimitiveListener(TopicListenerBase<Object> listener)
+      {
+         return primitiveType != null && listener instanceof PrimitiveTopicListener<?> primitiveListener
+               && primitiveListener.getPrimitiveType() == primitiveType;
+      }
+   }
+
+   /**
+    * Notifies a single listener of the messages published in a ring buffer, runs on its own thread.
+    */
+   private static class RingBufferConsumer implements Runnable
+   {
+      private final Topic<Object> topic;
+      private final TopicListenerBase<Object> listener;
+      private final PrimitiveTopicListener<?> primitiveListener;
+      private final boolean isPrimitive;
+      private final RingBuffer<RingBufferEntry> ringBuffer;
+      /** The sequence of the last entry consumed, used by the producers to not overwrite pending entries. */
+      private final AtomicLong sequence = new AtomicLong(-1L);
+      private final AtomicBoolean running = new AtomicBoolean(false);
+      private boolean isStopped = false;
+
+      private RingBufferConsumer(Topic<Object> topic, TopicListenerBase<Object> listener, boolean isPrimitive, RingBuffer<RingBufferEntry> ringBuffer)
+      {
+         this.topic = topic;
+         this.listener = listener;
+         this.isPrimitive = isPrimitive;
+         this.ringBuffer = ringBuffer;
+         primitiveListener = isPrimitive ? (PrimitiveTopicListener<?>) listener : null;
+      }
+
+      private synchronized void start(ThreadFactory threadFactory)
+      {
+         if (isStopped || running.get())
+            return;
+
+         // Start consuming from the messages published from now on.
+         sequence.set(ringBuffer.getCursor());
+         ringBuffer.addGatingSequence(sequence);
+         running.set(true);
+         Thread thread = threadFactory.newThread(this);
+         thread.start();
+      }
+
+      private synchronized void stop()
+      {
+         isStopped = true;
+         running.set(false);
+         ringBuffer.removeGatingSequence(sequence);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public void run()
+      {
+         long nextSequence = sequence.get() + 1L;
+
+         while (running.get())
+         {
+            long availableSequence = ringBuffer.waitFor(nextSequence, running);
+
+            while (nextSequence <= availableSequence && running.get())
+            {
+               RingBufferEntry entry = ringBuffer.get(nextSequence);
+
+               try
+               {
+                  if (isPrimitive && entry.hasBits)
+                     primitiveListener.receivedPrimitiveBits(entry.bits);
+                  else
+                     listener.receivedMessageForTopic(entry.message);
+               }
+               catch (Throwable e)
+               {
+                  LogTools.error("A listener for the topic {} threw an exception", topic.getName(), e);
+               }
+
+               nextSequence++;
+            }
+
+            sequence.set(nextSequence - 1L);
+         }
+      }
+   }
+}
@@ -0,0 +1,62 @@
+package us.ihmc.messager;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategies used by the {@link RingBuffer} consumers while waiting for new entries, and by the
+ * producers while waiting for the consumers to free up space.
+ * <p>
+ * The strategies trade latency for CPU usage: {@link #BUSY_SPIN} provides the lowest latency but
+ * keeps a core busy, {@link #PARK} is the most CPU friendly.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ */
+public enum RingBufferWaitStrategy
+{
+   /** Spins continuously, to be used only when there are fewer waiting threads than cores. */
+   BUSY_SPIN
+   {
+      @Override
+      public void idle(int counter)
+      {
+         Thread.onSpinWait();
+      }
+   },
+   /** Spins for a short while and then yields the thread. */
+   YIELD
+   {
+      @Override
+      public void idle(int counter)
+      {
+         if (counter < SPIN_TRIES)
+            Thread.onSpinWait();
+         else
+            Thread.yield();
+      }
+   },
+   /** Spins, yields, and eventually parks the thread for a short period. */
+   PARK
+   {
+      @Override
+      public void idle(int counter)
+      {
+         if (counter < SPIN_TRIES)
+            Thread.onSpinWait();
+         else if (counter < 2 * SPIN_TRIES)
+            Thread.yield();
+         else
+            LockSupport.parkNanos(PARK_NANOS);
+      }
+   };
+
+   private static final int SPIN_TRIES = 100;
+   private static final long PARK_NANOS = 50_000L;
+
+   /**
+    * Called repeatedly while the condition waited for is not met.
+    * 
+    * @param counter the number of times this method has been called for the current wait.
+    */
+   public abstract void idle(int counter);
+}
@@ -0,0 +1,144 @@
+package us.ihmc.messager;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import us.ihmc.log.LogTools;
+
+/**
+ * Executor that runs the submitted tasks one at a time and in submission order on top of another
+ * executor.
+ * <p>
+ * This is used by messagers to deliver messages asynchronously while preserving the order in which
+ * they were submitted, even when the underlying executor uses a pool of threads. The tasks are
+ * drained in batches: only one drain task is handed to the underlying executor at any time.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ */
+public class SequentialExecutor implements Executor
+{
+   private volatile Executor executor;
+   private final String name;
+   private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+   private final AtomicBoolean isDrainScheduled = new AtomicBoolean(false);
+   private final Runnable drainTask = this::drain;
+
+   /**
+    * Creates a new sequential executor.
+    * 
+    * @param executor the executor on which the tasks are to be run.
+    */
+   public SequentialExecutor(Executor executor)
+   {
+      this(executor, SequentialExecutor.class.getSimpleName());
+   }
+
+   /**
+    * Creates a new sequential executor.
+    * 
+    * @param executor the executor on which the tasks are to be run.
+    * @param name     the name used to report the tasks' failures, for instance the topic's name.
+    */
+   public SequentialExecutor(Executor executor, String name)
+   {
+      this.executor = executor;
+      this.name = name;
+   }
+
+   /**
+    * Gets the executor on which the tasks are run.
+    * 
+    * @return the underlying executor.
+    */
+   public Executor getExecutor()
+   {
+      return executor;
+   }
+
+   /**
+    * Changes the executor on which the tasks are run.
+    * <p>
+    * The order of the tasks is preserved: the tasks submitted before the change are still run first,
+    * possibly by a drain already scheduled on the previous executor, and the following drains are
+    * scheduled on the new executor.
+    * </p>
+    * 
+    * @param executor the executor on which the tasks are to be run from now on.
+    */
+   public void setExecutor(Executor executor)
+   {
+      this.executor = executor;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void execute(Runnable task)
+   {
+      tasks.add(task);
+      scheduleDrain();
+   }
+
+   private void scheduleDrain()
+   {
+      if (isDrainScheduled.compareAndSet(false, true))
+      {
+         try
+         {
+            executor.execute(drainTask);
+         }
+         catch (RuntimeException e)
+         {
+            isDrainScheduled.set(false);
+            throw e;
+         }
+      }
+   }
+
+   private void drain()
+   {
+      try
+      {
+         Runnable task;
+         while ((task = tasks.poll()) != null)
+         {
+            try
+            {
+               task.run();
+            }
+            catch (Throwable t)
+            {
+               LogTools.error("A task for {} threw an exception", name, t);
+            }
+         }
+      }
+      finally
+      {
+         isDrainScheduled.set(false);
+      }
+
+      // A task may have been added after the last poll but before the flag was cleared.
+      if (!tasks.isEmpty())
+         scheduleDrain();
+   }
+
+   /**
+    * Removes all the tasks that have not been run yet.
+    */
+   public void clear()
+   {
+      tasks.clear();
+   }
+
+   /**
+    * Gets the number of tasks waiting to be run.
+    * 
+    * @return the number of pending tasks.
+    */
+   public int getNumberOfPendingTasks()
+   {
+      return tasks.size();
+   }
+}
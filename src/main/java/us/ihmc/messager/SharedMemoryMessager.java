@@ -1,10 +1,10 @@
 package us.ihmc.messager;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -14,6 +14,12 @@ import us.ihmc.messager.MessagerAPIFactory.Topic;
 
 /**
  * Implementation of {@code Messager} using shared memory.
+ * <p>
+ * By default, messages are delivered on the thread submitting them. A dispatch executor can be set
+ * for the whole messager or per topic, see {@link #setDispatchExecutor(Executor)}, in which case
+ * messages submitted with {@link SynchronizeHint#ASYNCHRONOUS} are delivered on that executor while
+ * preserving the submission order for each topic.
+ * </p>
  * 
  * @author Sylvain Bertrand
  */
@@ -22,9 +28,21 @@ public class SharedMemoryMessager implements Messager
    protected final MessagerAPI messagerAPI;
 
    protected final AtomicBoolean isConnected = new AtomicBoolean(false);
-   protected final ConcurrentHashMap<Topic<?>, TopicEntry> topicEntries = new ConcurrentHashMap<>();
+   /** The inputs and listeners for each topic of the API. */
+   protected final TopicDispatchTable dispatchTable;
+   /** The entries for each topic of the API, indexed by topic ordinal. */
+   protected final TopicEntry[] topicEntries;
    protected final List<MessagerStateListener> connectionStateListeners = new ArrayList<>();
 
+   /** The executor used for asynchronous delivery, {@code null} to deliver on the submitting thread. */
+   private volatile Executor dispatchExecutor = null;
+   /** How messages with the hint {@link SynchronizeHint#NONE} are to be delivered. */
+   private volatile SynchronizeHint defaultSynchronizeHint = SynchronizeHint.SYNCHRONOUS;
+   /** The trampoline of each dispatching thread, {@code null} when trampolined dispatch is disabled. */
+   private volatile ThreadLocal<Trampoline> trampolines = null;
+   /** Whether this messager runs with the real-time profile, see {@link #setRealtimeProfile(boolean)}. */
+   private volatile boolean realtimeProfile = false;
+
    /**
     * Creates a new messager.
     * 
@@ -33,6 +51,73 @@ public class SharedMemoryMessager implements Messager
    public SharedMemoryMessager(MessagerAPI messagerAPI)
    {
       this.messagerAPI = messagerAPI;
+
+      dispatchTable = new TopicDispatchTable(messagerAPI);
+      topicEntries = new TopicEntry[messagerAPI.getNumberOfTopics()];
+      for (int i = 0; i < topicEntries.length; i++)
+         topicEntries[i] = new TopicEntry(dispatchTable, i);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * With the real-time profile, the message is carried by a holder preallocated for the topic
+    * instead of a new {@code Message}.
+    * </p>
+    */
+   @Override
+   public <T> void submitMessage(Topic<T> topic, T messageContent, SynchronizeHint hint)
+   {
+      if (!realtimeProfile)
+      {
+         Messager.super.submitMessage(topic, messageContent, hint);
+         return;
+      }
+
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+
+      if (ordinal < 0)
+         throw new RuntimeException("The message is not part of this messager's API.");
+
+      submitMessage(ordinal, messageContent, hint);
+   }
+
+   /**
+    * Dispatches data for a topic which has already been resolved, reusing the message holder of the
+    * topic when possible.
+    * <p>
+    * The holder is only reused when the message is delivered before returning and when no other
+    * thread is using it, otherwise a new message is created.
+    * </p>
+    * 
+    * @param ordinal        the ordinal of the topic in this messager's API.
+    * @param messageContent the data.
+    * @param hint           the synchronize hint of the message.
+    */
+   private void submitMessage(int ordinal, Object messageContent, SynchronizeHint hint)
+   {
+      TopicEntry topicEntry = topicEntries[ordinal];
+      Message<Object> holder = trampolines == null && canReuseMessageHolders() ? topicEntry.acquireMessageHolder() : null;
+
+      if (holder == null)
+      {
+         Message<Object> message = new Message<>(messagerAPI.getTopic(ordinal), messageContent);
+         message.setSynchronizeHint(hint == null ? SynchronizeHint.NONE : hint);
+         submitMessage(ordinal, message);
+         return;
+      }
+
+      try
+      {
+         holder.topicID = messagerAPI.getTopic(ordinal).getUniqueID();
+         holder.messageContent = messageContent;
+         holder.synchronizeHint = hint == null ? SynchronizeHint.NONE : hint;
+         submitMessage(ordinal, holder);
+      }
+      finally
+      {
+         topicEntry.releaseMessageHolder();
+      }
    }
 
    /** {@inheritDoc} */
@@ -40,25 +125,616 @@ public class SharedMemoryMessager implements Messager
    @Override
    public <T> void submitMessage(Message<T> message)
    {
-      if (!messagerAPI.containsTopic(message.getTopicID()))
+      int ordinal = messagerAPI.getTopicOrdinal(message.getTopicID());
+
+      if (ordinal < 0)
          throw new RuntimeException("The message is not part of this messager's API.");
 
-      Topic<?> messageTopic = messagerAPI.findTopic(message.getTopicID());
+      if (message.getSynchronizeHint() == null)
+         message.setSynchronizeHint(SynchronizeHint.NONE);
+      submitMessage(ordinal, (Message<Object>) message);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The topic of each message is resolved once and the messages are then dispatched in order.
+    * </p>
+    */
+   @SuppressWarnings("unchecked")
+   @Override
+   public void submitMessages(Collection<? extends Message<?>> messages)
+   {
+      int[] ordinals = new int[messages.size()];
+      int index = 0;
+
+      for (Message<?> message : messages)
+      {
+         int ordinal = messagerAPI.getTopicOrdinal(message.getTopicID());
+         if (ordinal < 0)
+            throw new RuntimeException("The message is not part of this messager's API.");
+         ordinals[index++] = ordinal;
+      }
 
       if (!isConnected.get())
       {
-         LogTools.warn("This messager is closed, message's topic: " + messageTopic.getSimpleName());
+         LogTools.warn("This messager is closed, dropping a batch of " + ordinals.length + " messages.");
          return;
       }
 
-      TopicEntry topicEntry = topicEntries.get(messageTopic);
+      index = 0;
 
-      if (topicEntry != null)
+      for (Message<?> message : messages)
       {
          if (message.getSynchronizeHint() == null)
             message.setSynchronizeHint(SynchronizeHint.NONE);
-         topicEntry.consumeMessage((Message<Object>) message);
+         submitMessage(ordinals[index++], (Message<Object>) message);
+      }
+   }
+
+   /**
+    * Dispatches a message which topic has already been resolved.
+    * <p>
+    * This is the common entry point for {@link #submitMessage(Message)} and the publishers created
+    * by this messager, subclasses that need to intercept messages should override this method.
+    * </p>
+    * 
+    * @param ordinal the ordinal of the message's topic in this messager's API.
+    * @param message the message to dispatch, its synchronize hint is not {@code null}.
+    */
+   protected void submitMessage(int ordinal, Message<Object> message)
+   {
+      if (!isConnected.get())
+      {
+         LogTools.warn("This messager is closed, message's topic: " + messagerAPI.getTopic(ordinal).getSimpleName());
+         return;
+      }
+
+      TopicEntry topicEntry = topicEntries[ordinal];
+      Executor executor = getAsynchronousExecutor(topicEntry, message.getSynchronizeHint());
+      ThreadLocal<Trampoline> trampolines = this.trampolines;
+
+      if (executor == null && trampolines != null && message.getSynchronizeHint() != SynchronizeHint.SYNCHRONOUS)
+         consumeTrampolined(trampolines.get(), ordinal, message, 0L);
+      else if (executor == null)
+         topicEntry.consumeMessageOnSubmittingThread(message);
+      else
+         topicEntry.consumeMessageAsynchronously(executor, message);
+   }
+
+   /**
+    * Delivers a message on the calling thread, or defers it if the calling thread is already
+    * delivering a message.
+    * <p>
+    * The outermost call delivers the deferred messages iteratively in the order they were submitted,
+    * such that chains of listeners submitting messages do not grow the stack. A listener failing does
+    * not prevent the delivery of the deferred messages, the first failure is rethrown once they are
+    * all delivered.
+    * </p>
+    * 
+    * @param trampoline the trampoline of the calling thread.
+    * @param ordinal    the ordinal of the message's topic.
+    * @param message    the message to deliver, or {@code null} for a primitive value.
+    * @param bits       the primitive value as raw bits, only used when {@code message} is
+    *                   {@code null}.
+    */
+   private void consumeTrampolined(Trampoline trampoline, int ordinal, Message<Object> message, long bits)
+   {
+      PendingMessageBuffer deferredMessages = trampoline.deferredMessages;
+
+      if (trampoline.isDispatching)
+      {
+         if (message != null)
+            deferredMessages.addMessage(ordinal, message);
+         else
+            deferredMessages.addPrimitive(ordinal, bits);
+         return;
+      }
+
+      trampoline.isDispatching = true;
+      Throwable failure = null;
+
+      try
+      {
+         while (true)
+         {
+            try
+            {
+               if (message != null)
+                  topicEntries[ordinal].consumeMessageOnSubmittingThread(message);
+               else
+                  topicEntries[ordinal].consumePrimitiveOnSubmittingThread(bits);
+            }
+            catch (Throwable t)
+            {
+               if (failure == null)
+                  failure = t;
+               else
+                  failure.addSuppressed(t);
+            }
+
+            if (deferredMessages.isEmpty())
+               break;
+
+            ordinal = deferredMessages.peekOrdinal();
+            message = deferredMessages.peekMessage();
+            bits = deferredMessages.peekPrimitiveBits();
+            deferredMessages.remove();
+         }
+      }
+      finally
+      {
+         trampoline.isDispatching = false;
+      }
+
+      if (failure instanceof RuntimeException runtimeException)
+         throw runtimeException;
+      if (failure instanceof Error error)
+         throw error;
+      if (failure != null)
+         throw new RuntimeException(failure);
+   }
+
+   /**
+    * Gets the executor to use for delivering a message to the given topic entry.
+    * 
+    * @param topicEntry the entry of the message's topic.
+    * @param hint       the hint of the message.
+    * @return the topic's sequential executor if the message should be delivered asynchronously,
+    *         {@code null} if it should be delivered on the calling thread.
+    */
+   protected Executor getAsynchronousExecutor(TopicEntry topicEntry, SynchronizeHint hint)
+   {
+      if (realtimeProfile)
+         return null;
+      if (hint == SynchronizeHint.NONE || hint == null)
+         hint = topicEntry.defaultSynchronizeHint != null ? topicEntry.defaultSynchronizeHint : defaultSynchronizeHint;
+      if (hint != SynchronizeHint.ASYNCHRONOUS)
+         return null;
+      return topicEntry.getSequentialExecutor(dispatchExecutor);
+   }
+
+   /**
+    * Sets the executor used to deliver the messages submitted with the hint
+    * {@link SynchronizeHint#ASYNCHRONOUS}.
+    * <p>
+    * Messages for a given topic are delivered one at a time and in submission order, even when the
+    * executor uses multiple threads. Messages submitted with {@link SynchronizeHint#SYNCHRONOUS} are
+    * always delivered on the submitting thread.
+    * </p>
+    * 
+    * @param dispatchExecutor the executor to use for asynchronous delivery, or {@code null} to always
+    *                         deliver messages on the submitting thread (default).
+    * @see #setDispatchExecutor(Topic, Executor)
+    * @see #setDefaultSynchronizeHint(SynchronizeHint)
+    */
+   public void setDispatchExecutor(Executor dispatchExecutor)
+   {
+      this.dispatchExecutor = dispatchExecutor;
+   }
+
+   /**
+    * Overrides the executor used to deliver the messages submitted with the hint
+    * {@link SynchronizeHint#ASYNCHRONOUS} for a single topic.
+    * 
+    * @param topic            the topic to set the executor of.
+    * @param dispatchExecutor the executor to use for this topic, or {@code null} to use the executor of
+    *                         this messager.
+    * @see #setDispatchExecutor(Executor)
+    */
+   public void setDispatchExecutor(Topic<?> topic, Executor dispatchExecutor)
+   {
+      getTopicEntry(topic).setDispatchExecutor(dispatchExecutor);
+   }
+
+   /**
+    * Sets whether the listeners of the given topic are to be notified on virtual threads, meant for
+    * topics which listeners perform blocking operations.
+    * <p>
+    * When enabled, the messages for the topic that are not submitted with
+    * {@link SynchronizeHint#SYNCHRONOUS} are queued and delivered in order on a virtual thread such
+    * that the submitting thread is not blocked by the listeners. Virtual threads require Java 21, on
+    * older versions a shared pool of platform threads is used instead, see {@link VirtualThreads}.
+    * </p>
+    * <p>
+    * When disabled, the topic gets back the executor and delivery it had before being enabled, see
+    * {@link #setDispatchExecutor(Topic, Executor)}.
+    * </p>
+    * 
+    * @param topic   the topic to configure.
+    * @param enabled {@code true} to deliver on virtual threads, {@code false} to restore the previous
+    *                delivery of the topic.
+    * @throws IllegalStateException if enabling while the real-time profile is enabled, see
+    *                               {@link #setRealtimeProfile(boolean)}.
+    * @see Messager#addVirtualThreadTopicListener(Topic, TopicListener)
+    */
+   public void setVirtualThreadDelivery(Topic<?> topic, boolean enabled)
+   {
+      if (enabled && realtimeProfile)
+         throw new IllegalStateException("The real-time profile delivers the messages on the submitting thread, not on virtual threads.");
+      getTopicEntry(topic).setVirtualThreadDelivery(enabled);
+   }
+
+   /**
+    * Sets whether the messages submitted from within a listener are to be deferred rather than
+    * delivered recursively.
+    * <p>
+    * By default, a listener submitting a message delivered on the same thread results in a nested
+    * delivery, such that long chains of listeners grow the stack and feedback loops may end with a
+    * {@code StackOverflowError}. When trampolined dispatch is enabled, such re-entrant submissions are
+    * queued in a buffer local to the dispatching thread and delivered iteratively once the current
+    * delivery is done, in breadth-first order. The buffer is reused and does not allocate once it has
+    * grown to the longest chain.
+    * </p>
+    * <p>
+    * Messages submitted with {@link SynchronizeHint#SYNCHRONOUS} are still delivered before the
+    * submission returns.
+    * </p>
+    * 
+    * @param enabled {@code true} to defer re-entrant submissions, {@code false} to deliver them
+    *                recursively (default).
+    */
+   public void setTrampolinedDispatch(boolean enabled)
+   {
+      trampolines = enabled ? ThreadLocal.withInitial(Trampoline::new) : null;
+   }
+
+   /**
+    * Tests whether re-entrant submissions are deferred, see {@link #setTrampolinedDispatch(boolean)}.
+    * 
+    * @return {@code true} if trampolined dispatch is enabled.
+    */
+   public boolean isTrampolinedDispatch()
+   {
+      return trampolines != null;
+   }
+
+   /**
+    * Sets whether the listeners of the given topic are to be notified in parallel.
+    * <p>
+    * Meant for topics with many independent listeners that each perform heavy computation. When
+    * enabled, each listener of the topic is notified of a message in its own task on the given pool,
+    * while the inputs are still updated on the delivering thread. A listener throwing an exception
+    * does not prevent the other listeners from being notified, the exceptions of all the listeners
+    * are aggregated into a single exception.
+    * </p>
+    * <p>
+    * When delivered asynchronously, see {@link #setDispatchExecutor(Executor)}, a message is done
+    * with once all its listeners are done such that the messages are still processed in order.
+    * </p>
+    * 
+    * @param topic           the topic to configure.
+    * @param forkJoinPool    the pool to notify the listeners on, or {@code null} to notify them
+    *                        sequentially (default).
+    * @param joinSynchronous when delivering on the submitting thread, whether to wait for the
+    *                        listeners to be done before returning from the submission, in which case
+    *                        the aggregated exception is thrown to the submitter. Otherwise the
+    *                        submission returns immediately and the aggregated exception is logged.
+    */
+   public void setParallelFanOut(Topic<?> topic, ForkJoinPool forkJoinPool, boolean joinSynchronous)
+   {
+      getTopicEntry(topic).setParallelFanOut(forkJoinPool, joinSynchronous);
+   }
+
+   /**
+    * Sets whether the listeners of the given topic are to be notified in parallel on the common
+    * {@code ForkJoinPool}, waiting for them to be done before returning from submissions delivered on
+    * the submitting thread.
+    * 
+    * @param topic   the topic to configure.
+    * @param enabled {@code true} to notify the listeners in parallel, {@code false} to notify them
+    *                sequentially (default).
+    * @see #setParallelFanOut(Topic, ForkJoinPool, boolean)
+    */
+   public void setParallelFanOut(Topic<?> topic, boolean enabled)
+   {
+      setParallelFanOut(topic, enabled ? ForkJoinPool.commonPool() : null, true);
+   }
+
+   /**
+    * Sets whether this messager is to run with the real-time profile, meant for applications with
+    * tight garbage collection budgets.
+    * <p>
+    * With the real-time profile:
+    * <ul>
+    * <li>a message holder is preallocated for each topic when starting the messager, it is reused by
+    * {@link #submitMessage(Topic, Object)} and the publishers created by this messager such that
+    * submitting and delivering data does not allocate. The listeners must not keep a reference to the
+    * message they receive.
+    * <li>messages are always delivered on the submitting thread, the dispatch executors are ignored.
+    * <li>registering or removing inputs and listeners is rejected once the messager is started, they
+    * all have to be set up beforehand.
+    * </ul>
+    * Values for primitive topics, see {@link PrimitiveType}, are only delivered without allocating to
+    * the inputs and listeners specialized for the topic's primitive type. Trampolined dispatch and
+    * parallel fan-out keep working but allocate.
+    * </p>
+    * 
+    * @param enabled {@code true} to enable the real-time profile, {@code false} otherwise (default).
+    * @throws IllegalStateException if this messager is already started.
+    */
+   public void setRealtimeProfile(boolean enabled)
+   {
+      if (isConnected.get())
+         throw new IllegalStateException("The real-time profile can only be changed before starting the messager.");
+
+      if (enabled)
+      {
+         for (TopicEntry topicEntry : topicEntries)
+         {
+            if (topicEntry.virtualThreadDelivery)
+               LogTools.warn("The topic {} is delivered on the submitting thread instead of virtual threads with the real-time profile.",
+                             messagerAPI.getTopic(topicEntry.ordinal).getName());
+         }
+      }
+
+      realtimeProfile = enabled;
+   }
+
+   /**
+    * Tests whether this messager runs with the real-time profile, see
+    * {@link #setRealtimeProfile(boolean)}.
+    * 
+    * @return {@code true} if the real-time profile is enabled.
+    */
+   public boolean isRealtimeProfile()
+   {
+      return realtimeProfile;
+   }
+
+   /**
+    * Tests whether the messages dispatched by this messager are done with once
+    * {@link #submitMessage(int, Message)} returns, such that the real-time profile can reuse them.
+    * <p>
+    * Subclasses that keep a reference to the messages beyond the submission should return
+    * {@code false}.
+    * </p>
+    * 
+    * @return {@code true} if the message holders can be reused.
+    */
+   protected boolean canReuseMessageHolders()
+   {
+      return true;
+   }
+
+   private void checkRegistrationAllowed()
+   {
+      if (realtimeProfile && isConnected.get())
+         throw new IllegalStateException("The real-time profile does not allow changing the inputs and listeners once the messager is started.");
+   }
+
+   /**
+    * Sets how the messages submitted with the hint {@link SynchronizeHint#NONE} are to be delivered.
+    * 
+    * @param defaultSynchronizeHint either {@link SynchronizeHint#SYNCHRONOUS} (default) to deliver on
+    *                               the submitting thread, or {@link SynchronizeHint#ASYNCHRONOUS} to
+    *                               deliver on the dispatch executor when one is available.
+    */
+   public void setDefaultSynchronizeHint(SynchronizeHint defaultSynchronizeHint)
+   {
+      if (defaultSynchronizeHint == null || defaultSynchronizeHint == SynchronizeHint.NONE)
+         throw new IllegalArgumentException("The default hint has to be either SYNCHRONOUS or ASYNCHRONOUS.");
+      this.defaultSynchronizeHint = defaultSynchronizeHint;
+   }
+
+   /**
+    * Sets whether the messages for the given topic are to be conflated when delivered
+    * asynchronously.
+    * <p>
+    * When conflated, at most one message is pending for the topic: a new message replaces the one
+    * that has not been delivered yet such that the listeners always receive the freshest value. This
+    * is meant for state topics for which the intermediate values can be dropped when the listeners
+    * cannot keep up. Messages delivered on the submitting thread are not affected.
+    * </p>
+    * 
+    * @param topic     the topic to configure.
+    * @param conflated {@code true} to only deliver the latest message, {@code false} to deliver all
+    *                  the messages (default).
+    * @see #getNumberOfConflatedMessages(Topic)
+    */
+   public void setConflated(Topic<?> topic, boolean conflated)
+   {
+      getTopicEntry(topic).setConflated(conflated);
+   }
+
+   /**
+    * Tests whether the messages for the given topic are conflated.
+    * 
+    * @param topic the query.
+    * @return {@code true} if only the latest message is delivered for the topic.
+    * @see #setConflated(Topic, boolean)
+    */
+   public boolean isConflated(Topic<?> topic)
+   {
+      return getTopicEntry(topic).isConflated();
+   }
+
+   /**
+    * Gets the number of messages for the given topic that were dropped because a newer message was
+    * submitted before they could be delivered.
+    * 
+    * @param topic the query.
+    * @return the number of conflated messages.
+    * @see #setConflated(Topic, boolean)
+    */
+   public long getNumberOfConflatedMessages(Topic<?> topic)
+   {
+      return getTopicEntry(topic).getNumberOfConflatedMessages();
+   }
+
+   /**
+    * Sets a bounded queue for the messages of the given topic that are delivered asynchronously.
+    * <p>
+    * By default, the pending messages are queued without limit which can cause the memory to grow
+    * indefinitely when the listeners cannot keep up. With a bounded queue, the given policy is applied
+    * once the queue is full. Note that with {@link BoundedQueue.OverflowPolicy#BLOCK}, a listener
+    * submitting a message to its own topic can end up waiting for itself.
+    * </p>
+    * <p>
+    * When the topic is also conflated, see {@link #setConflated(Topic, boolean)}, the conflation
+    * takes precedence.
+    * </p>
+    * 
+    * @param topic          the topic to configure.
+    * @param capacity       the maximum number of pending messages, or {@code 0} to use an unbounded
+    *                       queue (default).
+    * @param overflowPolicy the policy to apply when the queue is full.
+    * @see #getNumberOfDroppedMessages(Topic)
+    * @see #getNumberOfQueuedMessages(Topic)
+    */
+   public void setBoundedQueue(Topic<?> topic, int capacity, BoundedQueue.OverflowPolicy overflowPolicy)
+   {
+      getTopicEntry(topic).setBoundedQueue(capacity, overflowPolicy);
+   }
+
+   /**
+    * Gets the capacity of the bounded queue used for the given topic.
+    * 
+    * @param topic the query.
+    * @return the maximum number of pending messages, or {@code 0} if the queue is unbounded.
+    * @see #setBoundedQueue(Topic, int, BoundedQueue.OverflowPolicy)
+    */
+   public int getBoundedQueueCapacity(Topic<?> topic)
+   {
+      BoundedQueue<?> boundedQueue = getTopicEntry(topic).boundedQueue;
+      return boundedQueue == null ? 0 : boundedQueue.getCapacity();
+   }
+
+   /**
+    * Gets the policy applied when the bounded queue for the given topic is full.
+    * 
+    * @param topic the query.
+    * @return the overflow policy, or {@code null} if the queue is unbounded.
+    * @see #setBoundedQueue(Topic, int, BoundedQueue.OverflowPolicy)
+    */
+   public BoundedQueue.OverflowPolicy getOverflowPolicy(Topic<?> topic)
+   {
+      BoundedQueue<?> boundedQueue = getTopicEntry(topic).boundedQueue;
+      return boundedQueue == null ? null : boundedQueue.getOverflowPolicy();
+   }
+
+   /**
+    * Gets the number of messages for the given topic that were dropped because its bounded queue was
+    * full.
+    * 
+    * @param topic the query.
+    * @return the number of dropped messages since the queue was set.
+    * @see #setBoundedQueue(Topic, int, BoundedQueue.OverflowPolicy)
+    */
+   public long getNumberOfDroppedMessages(Topic<?> topic)
+   {
+      BoundedQueue<?> boundedQueue = getTopicEntry(topic).boundedQueue;
+      return boundedQueue == null ? 0L : boundedQueue.getNumberOfDroppedElements();
+   }
+
+   /**
+    * Gets the number of messages for the given topic currently waiting in its bounded queue.
+    * 
+    * @param topic the query.
+    * @return the occupancy of the queue, {@code 0} if the queue is unbounded.
+    * @see #setBoundedQueue(Topic, int, BoundedQueue.OverflowPolicy)
+    */
+   public int getNumberOfQueuedMessages(Topic<?> topic)
+   {
+      BoundedQueue<?> boundedQueue = getTopicEntry(topic).boundedQueue;
+      return boundedQueue == null ? 0 : boundedQueue.size();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void submitDouble(Topic<Double> topic, double messageContent)
+   {
+      submitPrimitive(topic, PrimitiveType.DOUBLE, Double.doubleToRawLongBits(messageContent));
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void submitLong(Topic<Long> topic, long messageContent)
+   {
+      submitPrimitive(topic, PrimitiveType.LONG, messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void submitInteger(Topic<Integer> topic, int messageContent)
+   {
+      submitPrimitive(topic, PrimitiveType.INTEGER, messageContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void submitBoolean(Topic<Boolean> topic, boolean messageContent)
+   {
+      submitPrimitive(topic, PrimitiveType.BOOLEAN, messageContent ? 1L : 0L);
+   }
+
+   @SuppressWarnings("unchecked")
+   private void submitPrimitive(Topic<?> topic, PrimitiveType primitiveType, long bits)
+   {
+      if (topic.getPrimitiveType() != primitiveType)
+      { // Not a primitive topic, falling back to the regular path.
+         submitMessage((Topic<Object>) topic, primitiveType.toBoxed(bits));
+         return;
+      }
+
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+
+      if (ordinal < 0)
+         throw new RuntimeException("The message is not part of this messager's API.");
+
+      submitPrimitive(ordinal, bits);
+   }
+
+   /**
+    * Dispatches a primitive value for a primitive topic which has already been resolved.
+    * <p>
+    * This is the counterpart of {@link #submitMessage(int, Message)} for primitive topics.
+    * </p>
+    * 
+    * @param ordinal the ordinal of the topic in this messager's API.
+    * @param bits    the value as raw bits, see {@link PrimitiveType}.
+    */
+   protected void submitPrimitive(int ordinal, long bits)
+   {
+      if (!isConnected.get())
+      {
+         LogTools.warn("This messager is closed, message's topic: " + messagerAPI.getTopic(ordinal).getSimpleName());
+         return;
       }
+
+      TopicEntry topicEntry = topicEntries[ordinal];
+      Executor executor = getAsynchronousExecutor(topicEntry, SynchronizeHint.NONE);
+      ThreadLocal<Trampoline> trampolines = this.trampolines;
+
+      if (executor == null && trampolines != null)
+      {
+         consumeTrampolined(trampolines.get(), ordinal, null, bits);
+      }
+      else if (executor == null)
+      {
+         topicEntry.consumePrimitiveOnSubmittingThread(bits);
+      }
+      else if (topicEntry.isBuffered())
+      { // The message is stored until delivery, the value has to be boxed.
+         Topic<Object> topic = messagerAPI.getTopic(ordinal);
+         Message<Object> message = new Message<>(topic, topic.getPrimitiveType().toBoxed(bits));
+         message.setSynchronizeHint(SynchronizeHint.NONE);
+         topicEntry.consumeMessageAsynchronously(executor, message);
+      }
+      else
+      {
+         executor.execute(() -> topicEntry.consumePrimitive(bits));
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public <T> TopicPublisher<T> createPublisher(Topic<T> topic)
+   {
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
+         throw new RuntimeException("The topic is not part of this messager's API: " + topic.getName());
+      return new SharedMemoryTopicPublisher<>(topic, ordinal);
    }
 
    /** {@inheritDoc} */
@@ -70,18 +746,23 @@ public class SharedMemoryMessager implements Messager
       return boundVariable;
    }
 
+   /** {@inheritDoc} */
+   @Override
+   public <T> TopicInput<T> createTopicInput(Topic<T> topic, T initialValue)
+   {
+      checkRegistrationAllowed();
+      int ordinal = dispatchTable.getTopicOrdinal(topic);
+      TopicValueSlot<T> slot = dispatchTable.acquireValueSlot(ordinal);
+      return new TopicInput<>(slot, initialValue, () -> dispatchTable.releaseValueSlot(ordinal, slot));
+   }
+
    /** {@inheritDoc} */
    @SuppressWarnings("unchecked")
    @Override
    public <T> void attachInput(Topic<T> topic, AtomicReference<T> input)
    {
-      TopicEntry topicEntry = topicEntries.get(topic);
-      if (topicEntry == null)
-      {
-         topicEntry = new TopicEntry();
-         topicEntries.put(topic, topicEntry);
-      }
-      topicEntry.bindVariable((AtomicReference<Object>) input);
+      checkRegistrationAllowed();
+      getTopicEntry(topic).bindVariable((AtomicReference<Object>) input);
    }
 
    /** {@inheritDoc} */
@@ -89,10 +770,11 @@ public class SharedMemoryMessager implements Messager
    @Override
    public <T> boolean removeInput(Topic<T> topic, AtomicReference<T> input)
    {
-      TopicEntry topicEntry = topicEntries.get(topic);
-      if (topicEntry == null)
+      checkRegistrationAllowed();
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
          return false;
-      return topicEntry.removeVariable((AtomicReference<Object>) input);
+      return topicEntries[ordinal].removeVariable((AtomicReference<Object>) input);
    }
 
    /** {@inheritDoc} */
@@ -100,13 +782,8 @@ public class SharedMemoryMessager implements Messager
    @SuppressWarnings("unchecked")
    public <T> void addTopicListenerBase(Topic<T> topic, TopicListenerBase<T> listener)
    {
-      TopicEntry topicEntry = topicEntries.get(topic);
-      if (topicEntry == null)
-      {
-         topicEntry = new TopicEntry();
-         topicEntries.put(topic, topicEntry);
-      }
-      topicEntry.addListener((TopicListenerBase<Object>) listener);
+      checkRegistrationAllowed();
+      getTopicEntry(topic).addListener((TopicListenerBase<Object>) listener);
    }
 
    /** {@inheritDoc} */
@@ -114,16 +791,50 @@ public class SharedMemoryMessager implements Messager
    @Override
    public <T> boolean removeTopicListener(Topic<T> topic, TopicListenerBase<T> listener)
    {
-      TopicEntry topicEntry = topicEntries.get(topic);
-      if (topicEntry == null)
+      checkRegistrationAllowed();
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
          return false;
-      return topicEntry.removeListener((TopicListenerBase<Object>) listener);
+      return topicEntries[ordinal].removeListener((TopicListenerBase<Object>) listener);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * This messager has no drain point of its own, this method has to be called by the application.
+    * </p>
+    */
+   @Override
+   public void flushBatchTopicListeners()
+   {
+      dispatchTable.flushBatchListeners();
+   }
+
+   /**
+    * Gets the entry for the given topic.
+    * 
+    * @param topic the topic to get the entry of.
+    * @return the topic entry.
+    * @throws RuntimeException if the topic is not part of this messager's API.
+    */
+   protected TopicEntry getTopicEntry(Topic<?> topic)
+   {
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
+         throw new RuntimeException("The topic is not part of this messager's API: " + topic.getName());
+      return topicEntries[ordinal];
    }
 
    /** {@inheritDoc} */
    @Override
    public void startMessager()
    {
+      if (realtimeProfile)
+      {
+         for (TopicEntry topicEntry : topicEntries)
+            topicEntry.preallocateMessageHolder();
+      }
+
       isConnected.set(true);
       notifyMessagerStateListeners();
    }
@@ -134,8 +845,8 @@ public class SharedMemoryMessager implements Messager
    {
       isConnected.set(false);
       notifyMessagerStateListeners();
-      topicEntries.values().forEach(TopicEntry::clear);
-      topicEntries.clear();
+      for (TopicEntry topicEntry : topicEntries)
+         topicEntry.clear();
       connectionStateListeners.clear();
    }
 
@@ -175,47 +886,392 @@ public class SharedMemoryMessager implements Messager
    }
 
    /**
-    * Convenience class for gathering the different variables associated with a single topic.
+    * Publisher which topic is resolved once at construction.
+    */
+   protected class SharedMemoryTopicPublisher<T> implements TopicPublisher<T>
+   {
+      private final Topic<T> topic;
+      private final int ordinal;
+
+      protected SharedMemoryTopicPublisher(Topic<T> topic, int ordinal)
+      {
+         this.topic = topic;
+         this.ordinal = ordinal;
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public Topic<T> getTopic()
+      {
+         return topic;
+      }
+
+      /** {@inheritDoc} */
+      @SuppressWarnings("unchecked")
+      @Override
+      public void publish(T messageContent, SynchronizeHint hint)
+      {
+         if (realtimeProfile)
+         {
+            submitMessage(ordinal, messageContent, hint);
+            return;
+         }
+
+         Message<T> message = new Message<>(topic, messageContent);
+         message.setSynchronizeHint(hint == null ? SynchronizeHint.NONE : hint);
+         submitMessage(ordinal, (Message<Object>) message);
+      }
+   }
+
+   /**
+    * State of the trampolined dispatch for a single thread.
+    */
+   private static class Trampoline
+   {
+      private final PendingMessageBuffer deferredMessages = new PendingMessageBuffer(16);
+      private boolean isDispatching = false;
+   }
+
+   /**
+    * Convenience class for gathering the delivery settings associated with a single topic.
+    * <p>
+    * The inputs and listeners of the topic are stored in the messager's {@link TopicDispatchTable}.
+    * </p>
     */
    protected static class TopicEntry
    {
-      private final Queue<AtomicReference<Object>> boundVariables = new ConcurrentLinkedQueue<>();
-      private final Queue<TopicListenerBase<Object>> topicListeners = new ConcurrentLinkedQueue<>();
+      private final TopicDispatchTable dispatchTable;
+      private final int ordinal;
+      /** The executor overriding the messager's for this topic, {@code null} if not overridden. */
+      private volatile Executor dispatchExecutor;
+      /** How messages with the hint {@link SynchronizeHint#NONE} are to be delivered, {@code null} to use the messager's. */
+      private volatile SynchronizeHint defaultSynchronizeHint = null;
+      /** Whether the messages are delivered on virtual threads, see {@link SharedMemoryMessager#setVirtualThreadDelivery(Topic, boolean)}. */
+      private volatile boolean virtualThreadDelivery = false;
+      /** The executor and default hint to restore when disabling the delivery on virtual threads. */
+      private Executor executorBeforeVirtualThreads;
+      private SynchronizeHint hintBeforeVirtualThreads;
+      /** Ensures in-order delivery of the asynchronous messages for this topic. */
+      private volatile SequentialExecutor sequentialExecutor;
+      /** Whether only the latest message is delivered asynchronously. */
+      private volatile boolean conflated = false;
+      /** The latest message waiting to be delivered when conflated. */
+      private final ConflatingSlot<Message<Object>> conflatingSlot = new ConflatingSlot<>();
+      private final Runnable pendingMessageConsumer = this::consumePendingMessage;
+      /** The queue of the messages to deliver asynchronously, {@code null} if unbounded. */
+      private volatile BoundedQueue<Message<Object>> boundedQueue = null;
+      private final AtomicBoolean isQueueDrainScheduled = new AtomicBoolean(false);
+      private volatile Executor queueDrainExecutor;
+      private final Runnable queueDrainTask = this::drainBoundedQueue;
+      /** The pool to notify the listeners on in parallel, {@code null} to notify them sequentially. */
+      private volatile ForkJoinPool fanOutPool = null;
+      /** Whether to wait for the parallel listeners when delivering on the submitting thread. */
+      private volatile boolean joinSynchronousFanOut = true;
+      /** The message reused for submissions with the real-time profile, {@code null} until started. */
+      private Message<Object> messageHolder = null;
+      private final AtomicBoolean isMessageHolderInUse = new AtomicBoolean(false);
+
+      protected TopicEntry(TopicDispatchTable dispatchTable, int ordinal)
+      {
+         this.dispatchTable = dispatchTable;
+         this.ordinal = ordinal;
+      }
 
       protected void clear()
       {
-         boundVariables.clear();
-         topicListeners.clear();
+         dispatchTable.clear(ordinal);
+         conflatingSlot.poll();
+         BoundedQueue<Message<Object>> currentQueue = boundedQueue;
+         if (currentQueue != null)
+            currentQueue.clear();
+         SequentialExecutor currentExecutor = sequentialExecutor;
+         if (currentExecutor != null)
+            currentExecutor.clear();
+      }
+
+      protected synchronized void setDispatchExecutor(Executor dispatchExecutor)
+      {
+         // Overrides the delivery on virtual threads, there is then nothing to restore.
+         virtualThreadDelivery = false;
+         executorBeforeVirtualThreads = null;
+         this.dispatchExecutor = dispatchExecutor;
+      }
+
+      protected synchronized void setVirtualThreadDelivery(boolean enabled)
+      {
+         if (enabled == virtualThreadDelivery)
+            return;
+
+         if (enabled)
+         {
+            executorBeforeVirtualThreads = dispatchExecutor;
+            hintBeforeVirtualThreads = defaultSynchronizeHint;
+            dispatchExecutor = VirtualThreads.getSharedExecutor();
+            defaultSynchronizeHint = SynchronizeHint.ASYNCHRONOUS;
+         }
+         else
+         {
+            dispatchExecutor = executorBeforeVirtualThreads;
+            defaultSynchronizeHint = hintBeforeVirtualThreads;
+            executorBeforeVirtualThreads = null;
+            hintBeforeVirtualThreads = null;
+         }
+
+         virtualThreadDelivery = enabled;
+      }
+
+      protected void preallocateMessageHolder()
+      {
+         if (messageHolder == null)
+            messageHolder = new Message<>();
+      }
+
+      /**
+       * Attempts to take the message holder of this topic.
+       * 
+       * @return the holder, or {@code null} if it is not available, i.e. in use by another thread or
+       *         by an outer submission on this thread, or if the messages may outlive the delivery.
+       */
+      protected Message<Object> acquireMessageHolder()
+      {
+         if (messageHolder == null || (fanOutPool != null && !joinSynchronousFanOut))
+            return null;
+         if (!isMessageHolderInUse.compareAndSet(false, true))
+            return null;
+         return messageHolder;
+      }
+
+      protected void releaseMessageHolder()
+      {
+         messageHolder.messageContent = null;
+         isMessageHolderInUse.set(false);
+      }
+
+      protected void setParallelFanOut(ForkJoinPool forkJoinPool, boolean joinSynchronous)
+      {
+         fanOutPool = forkJoinPool;
+         joinSynchronousFanOut = joinSynchronous;
+      }
+
+      protected void setConflated(boolean conflated)
+      {
+         this.conflated = conflated;
+      }
+
+      protected boolean isConflated()
+      {
+         return conflated;
+      }
+
+      protected long getNumberOfConflatedMessages()
+      {
+         return conflatingSlot.getNumberOfConflatedValues();
+      }
+
+      protected void setBoundedQueue(int capacity, BoundedQueue.OverflowPolicy overflowPolicy)
+      {
+         BoundedQueue<Message<Object>> previousQueue = boundedQueue;
+         boundedQueue = capacity > 0 ? new BoundedQueue<>(capacity, overflowPolicy) : null;
+
+         if (previousQueue != null)
+         { // Not dropping the messages that were pending.
+            Executor executor = queueDrainExecutor;
+            Message<Object> message;
+            while ((message = previousQueue.poll()) != null)
+               consumeMessageAsynchronously(executor, message);
+         }
+      }
+
+      /**
+       * Tests whether the asynchronous messages for this topic are buffered in this entry rather than
+       * in the executor.
+       * 
+       * @return {@code true} if the topic is conflated or uses a bounded queue.
+       */
+      protected boolean isBuffered()
+      {
+         return conflated || boundedQueue != null;
+      }
+
+      /**
+       * Gets the executor to use for delivering asynchronously to this topic.
+       * 
+       * @param defaultExecutor the messager's executor, used if not overridden for this topic.
+       * @return the sequential executor wrapping the dispatch executor, or {@code null} if no
+       *         dispatch executor is available.
+       */
+      protected SequentialExecutor getSequentialExecutor(Executor defaultExecutor)
+      {
+         Executor executor = dispatchExecutor != null ? dispatchExecutor : defaultExecutor;
+         if (executor == null)
+            return null;
+
+         SequentialExecutor currentExecutor = sequentialExecutor;
+         if (currentExecutor == null || currentExecutor.getExecutor() != executor)
+         {
+            synchronized (this)
+            {
+               currentExecutor = sequentialExecutor;
+               if (currentExecutor == null)
+               {
+                  currentExecutor = new SequentialExecutor(executor, dispatchTable.getMessagerAPI().getTopic(ordinal).getName());
+                  sequentialExecutor = currentExecutor;
+               }
+               else if (currentExecutor.getExecutor() != executor)
+               { // The messages already queued are delivered before the ones queued on the new executor.
+                  currentExecutor.setExecutor(executor);
+               }
+            }
+         }
+         return currentExecutor;
       }
 
       protected void bindVariable(AtomicReference<Object> variable)
       {
-         boundVariables.add(variable);
+         dispatchTable.addInput(ordinal, variable);
       }
 
       protected boolean removeVariable(AtomicReference<Object> variable)
       {
-         return boundVariables.remove(variable);
+         return dispatchTable.removeInput(ordinal, variable);
       }
 
       protected void addListener(TopicListenerBase<Object> listener)
       {
-         topicListeners.add(listener);
+         dispatchTable.addListener(ordinal, listener);
       }
 
       protected boolean removeListener(TopicListenerBase<Object> listener)
       {
-         return topicListeners.remove(listener);
+         return dispatchTable.removeListener(ordinal, listener);
       }
 
       protected void consumeMessage(Message<Object> message)
       {
-         Object messageContent = message.getMessageContent();
+         ForkJoinPool pool = fanOutPool;
+
+         if (pool == null)
+            dispatchTable.dispatch(ordinal, message);
+         else
+            dispatchTable.dispatchParallel(ordinal, message, pool, true);
+      }
+
+      /**
+       * Delivers the message on the calling thread, unless the listeners are notified in parallel
+       * without waiting for them.
+       * 
+       * @param message the message to deliver.
+       */
+      protected void consumeMessageOnSubmittingThread(Message<Object> message)
+      {
+         ForkJoinPool pool = fanOutPool;
+
+         if (pool == null)
+            dispatchTable.dispatch(ordinal, message);
+         else
+            dispatchTable.dispatchParallel(ordinal, message, pool, joinSynchronousFanOut);
+      }
+
+      /**
+       * Delivers the message on the given executor, or only updates the pending message if this
+       * topic is conflated and a delivery is already scheduled.
+       * 
+       * @param executor the executor to deliver on.
+       * @param message  the message to deliver.
+       */
+      protected void consumeMessageAsynchronously(Executor executor, Message<Object> message)
+      {
+         if (conflated)
+         {
+            if (conflatingSlot.offer(message))
+               executor.execute(pendingMessageConsumer);
+            return;
+         }
+
+         BoundedQueue<Message<Object>> currentQueue = boundedQueue;
+
+         if (currentQueue == null)
+         {
+            executor.execute(() -> consumeMessage(message));
+         }
+         else
+         {
+            currentQueue.offer(message);
+            queueDrainExecutor = executor;
+            scheduleQueueDrain(executor);
+         }
+      }
+
+      private void scheduleQueueDrain(Executor executor)
+      {
+         if (executor != null && isQueueDrainScheduled.compareAndSet(false, true))
+            executor.execute(queueDrainTask);
+      }
+
+      private void drainBoundedQueue()
+      {
+         BoundedQueue<Message<Object>> currentQueue = boundedQueue;
+
+         try
+         {
+            Message<Object> message;
+            while (currentQueue != null && (message = currentQueue.poll()) != null)
+            {
+               try
+               {
+                  consumeMessage(message);
+               }
+               catch (Throwable t)
+               {
+                  LogTools.error("A listener for the topic {} threw an exception", dispatchTable.getMessagerAPI().getTopic(ordinal).getName(), t);
+               }
+            }
+         }
+         finally
+         {
+            isQueueDrainScheduled.set(false);
+         }
+
+         // A message may have been added after the last poll but before the flag was cleared.
+         if (currentQueue != null && !currentQueue.isEmpty())
+            scheduleQueueDrain(queueDrainExecutor);
+      }
+
+      private void consumePendingMessage()
+      {
+         Message<Object> message = conflatingSlot.poll();
+         if (message != null)
+            consumeMessage(message);
+      }
+
+      protected void consumePrimitive(long bits)
+      {
+         if (fanOutPool == null)
+            dispatchTable.dispatchPrimitive(ordinal, bits);
+         else
+            consumeMessage(toBoxedMessage(bits));
+      }
+
+      /**
+       * Delivers the value on the calling thread, unless the listeners are notified in parallel
+       * without waiting for them.
+       * 
+       * @param bits the value as raw bits.
+       */
+      protected void consumePrimitiveOnSubmittingThread(long bits)
+      {
+         if (fanOutPool == null)
+            dispatchTable.dispatchPrimitive(ordinal, bits);
+         else
+            consumeMessageOnSubmittingThread(toBoxedMessage(bits));
+      }
 
-         for (AtomicReference<Object> boundVariable : boundVariables)
-            boundVariable.set(messageContent);
-         for (TopicListenerBase<Object> listener : topicListeners)
-            listener.receivedMessageForTopic(message);
+      private Message<Object> toBoxedMessage(long bits)
+      { // The value is shared by the parallel tasks, it has to be boxed.
+         Topic<Object> topic = dispatchTable.getMessagerAPI().getTopic(ordinal);
+         Message<Object> message = new Message<>(topic, topic.getPrimitiveType().toBoxed(bits));
+         message.setSynchronizeHint(SynchronizeHint.NONE);
+         return message;
       }
    }
 }
@@ -0,0 +1,214 @@
+package us.ihmc.messager;
+
+import us.ihmc.log.LogTools;
+import us.ihmc.messager.MessagerAPIFactory.MessagerAPI;
+
+/**
+ * Implementation of {@code Messager} using shared memory where messages are delivered only when the
+ * messager is stepped.
+ * <p>
+ * Submitting a message, from any thread, only stores it in a preallocated buffer. Calling
+ * {@link #step()} then delivers the pending messages on the calling thread in the global submission
+ * order, i.e. across all the topics, which makes the delivery reproducible from one run to another.
+ * This is meant for simulations and lock-step control loops where the messages are to be processed
+ * at each tick of the loop.
+ * </p>
+ * <p>
+ * Notes:
+ * <ul>
+ * <li>the synchronize hint of the messages and the dispatch executors are ignored, all the inputs and
+ * listeners are updated during {@link #step()}.
+ * <li>messages submitted by the listeners during a step are delivered at the next step.
+ * <li>the number of messages delivered per step can be limited with
+ * {@link #setMessageBudget(int)}, the remaining messages are kept for the next steps.
+ * <li>the buffer grows when more messages are pending than its capacity, which is the only time
+ * submitting a message allocates besides the message itself.
+ * </ul>
+ * </p>
+ *
+ * @author Sylvain Bertrand
+ */
+public class SteppedMessager extends SharedMemoryMessager
+{
+   private final PendingMessageBuffer pendingMessages;
+   private int messageBudget = -1;
+
+   /**
+    * Creates a new messager with a buffer of 256 pending messages.
+    *
+    * @param messagerAPI the API to use with this messager.
+    */
+   public SteppedMessager(MessagerAPI messagerAPI)
+   {
+      this(messagerAPI, 256);
+   }
+
+   /**
+    * Creates a new messager.
+    *
+    * @param messagerAPI     the API to use with this messager.
+    * @param initialCapacity the number of pending messages the buffer can hold before growing.
+    * @throws IllegalArgumentException if {@code initialCapacity} is not strictly positive.
+    */
+   public SteppedMessager(MessagerAPI messagerAPI, int initialCapacity)
+   {
+      super(messagerAPI);
+      pendingMessages = new PendingMessageBuffer(initialCapacity);
+   }
+
+   /**
+    * Sets the maximum number of messages to be delivered per step.
+    *
+    * @param messageBudget the maximum number of messages per step, zero or a negative value for no
+    *                      limit.
+    */
+   public synchronized void setMessageBudget(int messageBudget)
+   {
+      this.messageBudget = messageBudget;
+   }
+
+   /**
+    * Gets the maximum number of messages to be delivered per step.
+    *
+    * @return the maximum number of messages per step, zero or a negative value if there is no limit.
+    */
+   public synchronized int getMessageBudget()
+   {
+      return messageBudget;
+   }
+
+   /**
+    * Gets the number of messages waiting to be delivered.
+    *
+    * @return the number of pending messages.
+    */
+   public synchronized int getNumberOfPendingMessages()
+   {
+      return pendingMessages.size();
+   }
+
+   /**
+    * Delivers the messages pending at the time of the call, within the limit of the message budget.
+    *
+    * @return the number of messages delivered.
+    */
+   public int step()
+   {
+      return step(getMessageBudget());
+   }
+
+   /**
+    * Delivers the messages pending at the time of the call, within the limit of the given budget.
+    *
+    * @param messageBudget the maximum number of messages to deliver, zero or a negative value for no
+    *                      limit.
+    * @return the number of messages delivered.
+    */
+   public int step(int messageBudget)
+   {
+      int numberOfMessagesToDeliver;
+
+      synchronized (this)
+      {
+         numberOfMessagesToDeliver = pendingMessages.size();
+         if (messageBudget > 0)
+            numberOfMessagesToDeliver = Math.min(numberOfMessagesToDeliver, messageBudget);
+      }
+
+      for (int i = 0; i < numberOfMessagesToDeliver; i++)
+      {
+         int ordinal;
+         Message<Object> message;
+         long bits;
+
+         synchronized (this)
+         {
+            if (pendingMessages.isEmpty()) // The messager has been closed in the meantime.
+               return i;
+
+            ordinal = pendingMessages.peekOrdinal();
+            message = pendingMessages.peekMessage();
+            bits = pendingMessages.peekPrimitiveBits();
+            pendingMessages.remove();
+         }
+
+         if (message != null)
+            topicEntries[ordinal].consumeMessage(message);
+         else
+            topicEntries[ordinal].consumePrimitive(bits);
+      }
+
+      return numberOfMessagesToDeliver;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The message is stored until the next call to {@link #step()}.
+    * </p>
+    */
+   @Override
+   protected void submitMessage(int ordinal, Message<Object> message)
+   {
+      if (!isConnected.get())
+      {
+         LogTools.warn("This messager is closed, message's topic: " + messagerAPI.getTopic(ordinal).getSimpleName());
+         return;
+      }
+
+      synchronized (this)
+      {
+         pendingMessages.addMessage(ordinal, message);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The value is stored, without boxing it, until the next call to {@link #step()}.
+    * </p>
+    */
+   @Override
+   protected void submitPrimitive(int ordinal, long bits)
+   {
+      if (!isConnected.get())
+      {
+         LogTools.warn("This messager is closed, message's topic: " + messagerAPI.getTopic(ordinal).getSimpleName());
+         return;
+      }
+
+      synchronized (this)
+      {
+         pendingMessages.addPrimitive(ordinal, bits);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The messages are kept until the next step.
+    * </p>
+    */
+   @Override
+   protected boolean canReuseMessageHolders()
+   {
+      return false;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The pending messages are discarded.
+    * </p>
+    */
+   @Override
+   public void closeMessager()
+   {
+      super.closeMessager();
+
+      synchronized (this)
+      {
+         pendingMessages.clear();
+      }
+   }
+}
@@ -0,0 +1,191 @@
+package us.ihmc.messager;
+
+/**
+ * Options describing how often a listener is to be notified of the messages of a topic.
+ * <p>
+ * They are meant for listeners, such as user interfaces or loggers, that do not need every message
+ * of a high-rate topic. The messager discards the extra messages before they reach the listener
+ * instead of having the listener throttle itself after having been notified.
+ * </p>
+ * <p>
+ * Instances are immutable and created with the static factories:
+ * <ul>
+ * <li>{@link #latestAtRate(double)}: at most one message per period, the latest received at each
+ * tick.
+ * <li>{@link #firstInWindow(double)}: at most one message per period, the first received in each
+ * window.
+ * <li>{@link #everyNth(int)}: one message out of N.
+ * </ul>
+ * </p>
+ *
+ * @author Sylvain Bertrand
+ * @see Messager#addTopicListener(MessagerAPIFactory.Topic, TopicListener, SubscriptionOptions)
+ */
+public class SubscriptionOptions
+{
+   /**
+    * The strategy used to select the messages to be delivered to the listener.
+    */
+   public enum Sampling
+   {
+      /**
+       * At most one message is delivered per period. The messages received before the end of the
+       * period are held back and only the latest one is delivered once the period has elapsed, such
+       * that the listener eventually sees the most recent value.
+       */
+      LATEST_AT_TICK,
+      /**
+       * At most one message is delivered per period: the first one received after the period has
+       * elapsed. The messages received before the end of the period are discarded.
+       */
+      FIRST_IN_WINDOW,
+      /**
+       * One message is delivered out of N, starting with the first one, regardless of time.
+       */
+      EVERY_NTH
+   }
+
+   private final Sampling sampling;
+   private final double maxRate;
+   private final int decimation;
+
+   /**
+    * Creates options delivering at most {@code maxRate} messages per second, each being the latest
+    * received at the time of delivery.
+    *
+    * @param maxRate the maximum delivery rate in Hertz.
+    * @return the new options.
+    * @throws IllegalArgumentException if {@code maxRate} is not strictly positive and finite.
+    * @see Sampling#LATEST_AT_TICK
+    */
+   public static SubscriptionOptions latestAtRate(double maxRate)
+   {
+      return new SubscriptionOptions(Sampling.LATEST_AT_TICK, maxRate, 1);
+   }
+
+   /**
+    * Creates options delivering at most {@code maxRate} messages per second, each being the first
+    * received in its time window.
+    *
+    * @param maxRate the maximum delivery rate in Hertz.
+    * @return the new options.
+    * @throws IllegalArgumentException if {@code maxRate} is not strictly positive and finite.
+    * @see Sampling#FIRST_IN_WINDOW
+    */
+   public static SubscriptionOptions firstInWindow(double maxRate)
+   {
+      return new SubscriptionOptions(Sampling.FIRST_IN_WINDOW, maxRate, 1);
+   }
+
+   /**
+    * Creates options delivering one message out of {@code decimation}.
+    *
+    * @param decimation the number of messages received per message delivered.
+    * @return the new options.
+    * @throws IllegalArgumentException if {@code decimation} is not strictly positive.
+    * @see Sampling#EVERY_NTH
+    */
+   public static SubscriptionOptions everyNth(int decimation)
+   {
+      return new SubscriptionOptions(Sampling.EVERY_NTH, Double.POSITIVE_INFINITY, decimation);
+   }
+
+   /**
+    * Creates new options, see the static factories for the arguments' meaning.
+    *
+    * @param sampling   the strategy used to select the messages.
+    * @param maxRate    the maximum delivery rate in Hertz, ignored for {@link Sampling#EVERY_NTH}.
+    * @param decimation the number of messages received per message delivered, only used for
+    *                   {@link Sampling#EVERY_NTH}.
+    * @return the new options.
+    * @throws IllegalArgumentException if an argument is out of range.
+    */
+   public static SubscriptionOptions create(Sampling sampling, double maxRate, int decimation)
+   {
+      if (sampling == Sampling.EVERY_NTH)
+         return everyNth(decimation);
+      else
+         return new SubscriptionOptions(sampling, maxRate, 1);
+   }
+
+   private SubscriptionOptions(Sampling sampling, double maxRate, int decimation)
+   {
+      if (sampling == null)
+         throw new IllegalArgumentException("The sampling cannot be null.");
+      if (sampling != Sampling.EVERY_NTH && !(maxRate > 0.0 && Double.isFinite(maxRate)))
+         throw new IllegalArgumentException("The maximum rate has to be strictly positive and finite, was: " + maxRate);
+      if (decimation < 1)
+         throw new IllegalArgumentException("The decimation has to be strictly positive, was: " + decimation);
+
+      this.sampling = sampling;
+      this.maxRate = maxRate;
+      this.decimation = decimation;
+   }
+
+   /**
+    * Gets the strategy used to select the messages to be delivered.
+    *
+    * @return the sampling strategy.
+    */
+   public Sampling getSampling()
+   {
+      return sampling;
+   }
+
+   /**
+    * Gets the maximum number of messages delivered per second.
+    *
+    * @return the maximum rate in Hertz, infinite for {@link Sampling#EVERY_NTH}.
+    */
+   public double getMaxRate()
+   {
+      return maxRate;
+   }
+
+   /**
+    * Gets the minimum time between two deliveries.
+    *
+    * @return the period in nanoseconds, zero for {@link Sampling#EVERY_NTH}.
+    */
+   public long getPeriodNanos()
+   {
+      return sampling == Sampling.EVERY_NTH ? 0L : (long) (1.0e9 / maxRate);
+   }
+
+   /**
+    * Gets the number of messages received per message delivered.
+    *
+    * @return the decimation, 1 unless {@link Sampling#EVERY_NTH} is used.
+    */
+   public int getDecimation()
+   {
+      return decimation;
+   }
+
+   @Override
+   public boolean equals(Object object)
+   {
+      if (object == this)
+         return true;
+      if (!(object instanceof SubscriptionOptions))
+         return false;
+
+      SubscriptionOptions other = (SubscriptionOptions) object;
+      return sampling == other.sampling && Double.compare(maxRate, other.maxRate) == 0 && decimation == other.decimation;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      return 31 * (31 * sampling.hashCode() + Double.hashCode(maxRate)) + decimation;
+   }
+
+   @Override
+   public String toString()
+   {
+      if (sampling == Sampling.EVERY_NTH)
+         return "SubscriptionOptions[" + sampling + ", decimation: " + decimation + "]";
+      else
+         return "SubscriptionOptions[" + sampling + ", max rate: " + maxRate + "Hz]";
+   }
+}
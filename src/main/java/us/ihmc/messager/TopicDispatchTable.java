@@ -0,0 +1,665 @@
+package us.ihmc.messager;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import us.ihmc.log.LogTools;
+import us.ihmc.messager.MessagerAPIFactory.MessagerAPI;
+import us.ihmc.messager.MessagerAPIFactory.Topic;
+
+/**
+ * Table of the inputs and listeners registered to each topic of an API, indexed by topic ordinal.
+ * <p>
+ * The subscriptions of each topic are stored in immutable arrays that are replaced on registration
+ * changes (copy-on-write). Registering and removing subscriptions is thread-safe and can be done
+ * while messages are being dispatched, dispatching is a plain array loop that does not allocate nor
+ * lock.
+ * </p>
+ * <p>
+ * For primitive topics, see {@link PrimitiveType}, the listeners specialized for the topic's
+ * primitive type are notified without boxing the value. All the listeners of a topic are notified
+ * in the order they were registered, whether they are specialized or not.
+ * </p>
+ * <p>
+ * A {@link SubscriptionChangeListener} can be notified whenever a topic gains its first subscriber
+ * or loses its last one, for instance to let a remote side know which topics are consumed.
+ * </p>
+ *
+ * @author Sylvain Bertrand
+ */
+public class TopicDispatchTable
+{
+   private final MessagerAPI messagerAPI;
+   private final AtomicReferenceArray<Subscriptions> subscriptions;
+   /** The number of {@link TopicInput}s using the value slot of each topic, guarded by this table. */
+   private final int[] valueSlotUsers;
+   private SubscriptionChangeListener[] subscriptionChangeListeners = new SubscriptionChangeListener[0];
+
+   /**
+    * Listener notified when a topic gains its first subscriber or loses its last one.
+    */
+   public interface SubscriptionChangeListener
+   {
+      /**
+       * Called when a topic gains its first input or listener, or loses its last one.
+       * <p>
+       * It is called while holding the lock of the table, such that the notifications are in the
+       * order of the changes.
+       * </p>
+       *
+       * @param ordinal        the ordinal of the topic.
+       * @param hasSubscribers whether the topic now has at least one input or listener.
+       */
+      void subscriptionChanged(int ordinal, boolean hasSubscribers);
+   }
+
+   /**
+    * Creates a new empty table for the given API.
+    *
+    * @param messagerAPI the API which topics are to be dispatched.
+    */
+   public TopicDispatchTable(MessagerAPI messagerAPI)
+   {
+      this.messagerAPI = messagerAPI;
+      subscriptions = new AtomicReferenceArray<>(messagerAPI.getNumberOfTopics());
+      valueSlotUsers = new int[messagerAPI.getNumberOfTopics()];
+      for (int i = 0; i < subscriptions.length(); i++)
+         subscriptions.set(i, Subscriptions.EMPTY);
+   }
+
+   /**
+    * Gets the API this table is for.
+    *
+    * @return the API.
+    */
+   public MessagerAPI getMessagerAPI()
+   {
+      return messagerAPI;
+   }
+
+   /**
+    * Gets the ordinal of the given topic.
+    *
+    * @param topic the query.
+    * @return the topic ordinal.
+    * @throws RuntimeException if the topic is not part of the API.
+    */
+   public int getTopicOrdinal(Topic<?> topic)
+   {
+      int ordinal = messagerAPI.getTopicOrdinal(topic);
+      if (ordinal < 0)
+         throw new RuntimeException("The topic is not part of this messager's API: " + topic.getName());
+      return ordinal;
+   }
+
+   /**
+    * Registers an input for a topic.
+    *
+    * @param ordinal the ordinal of the topic.
+    * @param input   the input to be updated with the content of the messages.
+    */
+   public synchronized void addInput(int ordinal, AtomicReference<Object> input)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+      setSubscriptions(ordinal, new Subscriptions(append(current.inputs, input), current.listeners, current.primitiveFlags, current.valueSlot));
+   }
+
+   /**
+    * Removes an input previously registered to a topic.
+    *
+    * @param ordinal the ordinal of the topic.
+    * @param input   the input to remove.
+    * @return {@code true} if the input was registered.
+    */
+   public synchronized boolean removeInput(int ordinal, AtomicReference<?> input)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+      AtomicReference<Object>[] newInputs = remove(current.inputs, input);
+      if (newInputs == current.inputs)
+         return false;
+      setSubscriptions(ordinal, new Subscriptions(newInputs, current.listeners, current.primitiveFlags, current.valueSlot));
+      return true;
+   }
+
+   /**
+    * Registers a listener for a topic.
+    *
+    * @param ordinal  the ordinal of the topic.
+    * @param listener the listener to be notified of the messages.
+    */
+   public synchronized void addListener(int ordinal, TopicListenerBase<?> listener)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+      boolean[] newPrimitiveFlags = Arrays.copyOf(current.primitiveFlags, current.primitiveFlags.length + 1);
+      newPrimitiveFlags[current.primitiveFlags.length] = isPrimitiveListener(ordinal, listener);
+      setSubscriptions(ordinal, new Subscriptions(current.inputs, append(current.listeners, listener), newPrimitiveFlags, current.valueSlot));
+   }
+
+   /**
+    * Removes a listener previously registered to a topic.
+    *
+    * @param ordinal  the ordinal of the topic.
+    * @param listener the listener to remove.
+    * @return {@code true} if the listener was registered.
+    */
+   public synchronized boolean removeListener(int ordinal, TopicListenerBase<?> listener)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+      int index = indexOfListener(current.listeners, listener);
+
+      if (index < 0)
+         return false;
+
+      setSubscriptions(ordinal,
+                       new Subscriptions(current.inputs,
+                                         removeIndex(current.listeners, index),
+                                         removeIndex(current.primitiveFlags, index),
+                                         current.valueSlot));
+      return true;
+   }
+
+   /**
+    * Gets the slot holding the latest value of a topic, creating it if needed, and counts one more
+    * user of it.
+    * <p>
+    * The slot is updated with every message dispatched for the topic until it is released by all its
+    * users, it is meant to be shared by all the {@link TopicInput}s of the topic.
+    * </p>
+    *
+    * @param ordinal the ordinal of the topic.
+    * @return the value slot of the topic.
+    * @see #releaseValueSlot(int, TopicValueSlot)
+    */
+   @SuppressWarnings("unchecked")
+   public synchronized <T> TopicValueSlot<T> acquireValueSlot(int ordinal)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+
+      if (current.valueSlot == null)
+      {
+         current = new Subscriptions(current.inputs, current.listeners, current.primitiveFlags, new TopicValueSlot<>());
+         setSubscriptions(ordinal, current);
+         valueSlotUsers[ordinal] = 0;
+      }
+
+      valueSlotUsers[ordinal]++;
+      return (TopicValueSlot<T>) current.valueSlot;
+   }
+
+   /**
+    * Counts one less user of the value slot of a topic, the slot is dropped once it has no user left.
+    *
+    * @param ordinal the ordinal of the topic.
+    * @param slot    the slot previously obtained from {@link #acquireValueSlot(int)}.
+    * @return {@code true} if the slot was in use, {@code false} if it had already been dropped.
+    */
+   public synchronized boolean releaseValueSlot(int ordinal, TopicValueSlot<?> slot)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+
+      if (current.valueSlot != slot)
+         return false;
+
+      if (--valueSlotUsers[ordinal] == 0)
+         setSubscriptions(ordinal, new Subscriptions(current.inputs, current.listeners, current.primitiveFlags, null));
+      return true;
+   }
+
+   /**
+    * Removes all the inputs and listeners of a topic and drops its value slot.
+    * <p>
+    * The users of the dropped slot are forgotten, their later release is a no-op.
+    * </p>
+    *
+    * @param ordinal the ordinal of the topic.
+    */
+   public synchronized void clear(int ordinal)
+   {
+      setSubscriptions(ordinal, Subscriptions.EMPTY);
+      valueSlotUsers[ordinal] = 0;
+   }
+
+   /**
+    * Removes all the inputs and listeners of all the topics.
+    */
+   public synchronized void clear()
+   {
+      for (int i = 0; i < subscriptions.length(); i++)
+         clear(i);
+   }
+
+   /**
+    * Registers a listener to be notified when a topic gains its first subscriber or loses its last
+    * one.
+    *
+    * @param listener the listener to register.
+    */
+   public synchronized void addSubscriptionChangeListener(SubscriptionChangeListener listener)
+   {
+      subscriptionChangeListeners = append(subscriptionChangeListeners, listener);
+   }
+
+   /**
+    * Removes a listener previously registered with
+    * {@link #addSubscriptionChangeListener(SubscriptionChangeListener)}.
+    *
+    * @param listener the listener to remove.
+    * @return {@code true} if the listener was registered.
+    */
+   public synchronized boolean removeSubscriptionChangeListener(SubscriptionChangeListener listener)
+   {
+      SubscriptionChangeListener[] newListeners = remove(subscriptionChangeListeners, listener);
+      if (newListeners == subscriptionChangeListeners)
+         return false;
+      subscriptionChangeListeners = newListeners;
+      return true;
+   }
+
+   /** Replaces the subscriptions of a topic, to be called while holding the lock of this table. */
+   private void setSubscriptions(int ordinal, Subscriptions newSubscriptions)
+   {
+      boolean hadSubscribers = !subscriptions.get(ordinal).isEmpty();
+      subscriptions.set(ordinal, newSubscriptions);
+      boolean hasSubscribers = !newSubscriptions.isEmpty();
+
+      if (hadSubscribers != hasSubscribers)
+      {
+         for (SubscriptionChangeListener listener : subscriptionChangeListeners)
+            listener.subscriptionChanged(ordinal, hasSubscribers);
+      }
+   }
+
+   /**
+    * Tests whether a topic has at least one input or listener.
+    *
+    * @param ordinal the ordinal of the topic.
+    * @return {@code true} if messages for the topic would be dispatched to anyone.
+    */
+   public boolean hasSubscribers(int ordinal)
+   {
+      return !subscriptions.get(ordinal).isEmpty();
+   }
+
+   /**
+    * Tests whether a topic has at least one input or listener that requires the value of primitive
+    * topics to be boxed.
+    *
+    * @param ordinal the ordinal of the topic.
+    * @return {@code true} if there is any input or non-primitive listener.
+    */
+   public boolean hasNonPrimitiveSubscribers(int ordinal)
+   {
+      return subscriptions.get(ordinal).hasNonPrimitiveSubscribers();
+   }
+
+   /**
+    * Gets the total number of inputs and listeners registered to a topic.
+    *
+    * @param ordinal the ordinal of the topic.
+    * @return the number of subscribers.
+    */
+   public int getNumberOfSubscribers(int ordinal)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+      return current.inputs.length + current.listeners.length;
+   }
+
+   /**
+    * Delivers the messages accumulated by all the {@link BatchingTopicListener}s of this table and
+    * the messages held back by its {@link RateLimitedTopicListener}s whose period has elapsed.
+    */
+   public void flushBatchListeners()
+   {
+      for (int ordinal = 0; ordinal < subscriptions.length(); ordinal++)
+      {
+         TopicListenerBase<Object>[] listeners = subscriptions.get(ordinal).listeners;
+         for (int i = 0; i < listeners.length; i++)
+         {
+            if (listeners[i] instanceof BatchingTopicListener<?> batchingListener)
+               batchingListener.flush();
+            else if (listeners[i] instanceof RateLimitedTopicListener<?> rateLimitedListener)
+               rateLimitedListener.deliverPending();
+         }
+      }
+   }
+
+   /**
+    * Updates the inputs and notifies the listeners of a topic of a new message.
+    *
+    * @param ordinal the ordinal of the message's topic.
+    * @param message the message to dispatch.
+    */
+   public void dispatch(int ordinal, Message<Object> message)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+      Object messageContent = message.getMessageContent();
+      updateInputs(current, messageContent);
+
+      TopicListenerBase<Object>[] listeners = current.listeners;
+
+      if (current.numberOfPrimitiveListeners == 0)
+      {
+         for (int i = 0; i < listeners.length; i++)
+            listeners[i].receivedMessageForTopic(message);
+         return;
+      }
+
+      boolean[] primitiveFlags = current.primitiveFlags;
+      // Primitive listeners are not notified of null values.
+      long bits = messageContent == null ? 0L : messagerAPI.getTopic(ordinal).getPrimitiveType().toBits(messageContent);
+
+      for (int i = 0; i < listeners.length; i++)
+      {
+         if (!primitiveFlags[i])
+            listeners[i].receivedMessageForTopic(message);
+         else if (messageContent != null)
+            ((PrimitiveTopicListener<?>) listeners[i]).receivedPrimitiveBits(bits);
+      }
+   }
+
+   /**
+    * Updates the inputs and notifies the listeners of a primitive topic of a new value.
+    * <p>
+    * The value is boxed only if there is any input or listener that is not specialized for the
+    * topic's primitive type.
+    * </p>
+    *
+    * @param ordinal the ordinal of the primitive topic.
+    * @param bits    the value as raw bits, see {@link PrimitiveType}.
+    */
+   public void dispatchPrimitive(int ordinal, long bits)
+   {
+      dispatchPrimitive(ordinal, bits, SynchronizeHint.NONE);
+   }
+
+   /**
+    * Updates the inputs and notifies the listeners of a primitive topic of a new value.
+    * <p>
+    * The value is boxed only if there is any input or listener that is not specialized for the
+    * topic's primitive type, in which case the boxed message carries the given hint.
+    * </p>
+    *
+    * @param ordinal the ordinal of the primitive topic.
+    * @param bits    the value as raw bits, see {@link PrimitiveType}.
+    * @param hint    the synchronize hint the value was submitted with.
+    */
+   public void dispatchPrimitive(int ordinal, long bits, SynchronizeHint hint)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+      Message<Object> message = null;
+
+      if (current.hasNonPrimitiveSubscribers())
+      { // Boxing only for the subscribers that are not primitive specialized.
+         Topic<Object> topic = messagerAPI.getTopic(ordinal);
+         message = new Message<>(topic, topic.getPrimitiveType().toBoxed(bits));
+         message.setSynchronizeHint(hint == null ? SynchronizeHint.NONE : hint);
+         updateInputs(current, message.getMessageContent());
+      }
+
+      TopicListenerBase<Object>[] listeners = current.listeners;
+      boolean[] primitiveFlags = current.primitiveFlags;
+
+      for (int i = 0; i < listeners.length; i++)
+      {
+         if (primitiveFlags[i])
+            ((PrimitiveTopicListener<?>) listeners[i]).receivedPrimitiveBits(bits);
+         else
+            listeners[i].receivedMessageForTopic(message);
+      }
+   }
+
+   /**
+    * Updates the inputs of a topic and notifies its listeners of a new message in parallel.
+    * <p>
+    * The inputs are updated on the calling thread, then each listener is notified in its own task on
+    * the given pool. A listener throwing an exception does not prevent the other listeners from being
+    * notified, the exceptions are aggregated into a single {@code RuntimeException} once all the
+    * listeners are done.
+    * </p>
+    *
+    * @param ordinal      the ordinal of the message's topic.
+    * @param message      the message to dispatch.
+    * @param forkJoinPool the pool to notify the listeners on.
+    * @param join         whether to wait for all the listeners to be done, in which case the
+    *                     aggregated exception is thrown, otherwise it is only logged.
+    * @throws RuntimeException if {@code join} is {@code true} and at least one listener failed, the
+    *                          exceptions of the listeners are attached as suppressed exceptions.
+    */
+   public void dispatchParallel(int ordinal, Message<Object> message, ForkJoinPool forkJoinPool, boolean join)
+   {
+      Subscriptions current = subscriptions.get(ordinal);
+      updateInputs(current, message.getMessageContent());
+
+      if (current.listeners.length == 0)
+         return;
+
+      Topic<Object> topic = messagerAPI.getTopic(ordinal);
+      ListenerFanOut fanOut = new ListenerFanOut(topic, current, message, join);
+
+      if (join)
+      {
+         forkJoinPool.invoke(fanOut);
+         // Thrown from here rather than from the task as the pool would wrap it.
+         if (fanOut.aggregatedFailure != null)
+            throw fanOut.aggregatedFailure;
+      }
+      else
+      {
+         forkJoinPool.execute(fanOut);
+      }
+   }
+
+   private static void updateInputs(Subscriptions current, Object messageContent)
+   {
+      if (current.valueSlot != null)
+         current.valueSlot.set(messageContent);
+
+      AtomicReference<Object>[] inputs = current.inputs;
+      for (int i = 0; i < inputs.length; i++)
+         inputs[i].set(messageContent);
+   }
+
+   private boolean isPrimitiveListener(int ordinal, TopicListenerBase<?> listener)
+   {
+      PrimitiveType primitiveType = messagerAPI.getTopic(ordinal).getPrimitiveType();
+      return primitiveType != null && listener instanceof PrimitiveTopicListener<?> primitiveListener
+            && primitiveListener.getPrimitiveType() == primitiveType;
+   }
+
+   @SuppressWarnings("unchecked")
+   private static <E> E[] append(E[] array, Object element)
+   {
+      E[] newArray = Arrays.copyOf(array, array.length + 1);
+      newArray[array.length] = (E) element;
+      return newArray;
+   }
+
+   private static int indexOfListener(TopicListenerBase<?>[] array, TopicListenerBase<?> listener)
+   {
+      for (int i = 0; i < array.length; i++)
+      {
+         if (ExecutorTopicListener.matches(array[i], listener))
+            return i;
+      }
+      return -1;
+   }
+
+   private static <E> E[] removeIndex(E[] array, int index)
+   {
+      E[] newArray = Arrays.copyOf(array, array.length - 1);
+      System.arraycopy(array, index + 1, newArray, index, newArray.length - index);
+      return newArray;
+   }
+
+   private static boolean[] removeIndex(boolean[] array, int index)
+   {
+      boolean[] newArray = Arrays.copyOf(array, array.length - 1);
+      System.arraycopy(array, index + 1, newArray, index, newArray.length - index);
+      return newArray;
+   }
+
+   private static <E> E[] remove(E[] array, Object element)
+   {
+      for (int i = 0; i < array.length; i++)
+      {
+         if (array[i].equals(element))
+         {
+            E[] newArray = Arrays.copyOf(array, array.length - 1);
+            System.arraycopy(array, i + 1, newArray, i, newArray.length - i);
+            return newArray;
+         }
+      }
+      return array;
+   }
+
+   /**
+    * Task notifying each listener of a topic in a separate subtask and aggregating their exceptions.
+    */
+   @SuppressWarnings("serial")
+   private static class ListenerFanOut extends RecursiveAction
+   {
+      private final Topic<Object> topic;
+      private final Subscriptions subscriptions;
+      private final Message<Object> message;
+      private final boolean rethrow;
+      private final Throwable[] failures;
+      /** The exception aggregating the failures of the listeners, only set when rethrowing. */
+      private RuntimeException aggregatedFailure = null;
+
+      private ListenerFanOut(Topic<Object> topic, Subscriptions subscriptions, Message<Object> message, boolean rethrow)
+      {
+         this.topic = topic;
+         this.subscriptions = subscriptions;
+         this.message = message;
+         this.rethrow = rethrow;
+         failures = new Throwable[subscriptions.listeners.length];
+      }
+
+      @Override
+      protected void compute()
+      {
+         TopicListenerBase<Object>[] listeners = subscriptions.listeners;
+         boolean[] primitiveFlags = subscriptions.primitiveFlags;
+         Object messageContent = message.getMessageContent();
+         // As for the sequential dispatch, primitive listeners are not notified of null values.
+         boolean notifyPrimitiveListeners = subscriptions.numberOfPrimitiveListeners > 0 && messageContent != null;
+         long bits = notifyPrimitiveListeners ? topic.getPrimitiveType().toBits(messageContent) : 0L;
+         ListenerTask[] tasks = new ListenerTask[listeners.length - (notifyPrimitiveListeners ? 0 : subscriptions.numberOfPrimitiveListeners)];
+         int index = 0;
+
+         for (int i = 0; i < listeners.length; i++)
+         {
+            TopicListenerBase<Object> listener = listeners[i];
+
+            if (!primitiveFlags[i])
+               tasks[index] = new ListenerTask(index, () -> listener.receivedMessageForTopic(message));
+            else if (notifyPrimitiveListeners)
+               tasks[index] = new ListenerTask(index, () -> ((PrimitiveTopicListener<?>) listener).receivedPrimitiveBits(bits));
+            else
+               continue;
+            index++;
+         }
+
+         invokeAll(tasks);
+
+         RuntimeException exception = null;
+
+         for (Throwable failure : failures)
+         {
+            if (failure == null)
+               continue;
+            if (exception == null)
+               exception = new RuntimeException("Listener(s) failed for the topic: " + topic.getName());
+            exception.addSuppressed(failure);
+         }
+
+         if (exception == null)
+            return;
+         if (rethrow)
+         {
+            aggregatedFailure = exception;
+            return;
+         }
+
+         LogTools.error(exception.getMessage(), exception);
+      }
+
+      private class ListenerTask extends RecursiveAction
+      {
+         private final int index;
+         private final Runnable notification;
+
+         private ListenerTask(int index, Runnable notification)
+         {
+            this.index = index;
+            this.notification = notification;
+         }
+
+         @Override
+         protected void compute()
+         {
+            try
+            {
+               notification.run();
+            }
+            catch (Throwable t)
+            {
+               failures[index] = t;
+            }
+         }
+      }
+   }
+
+   /**
+    * Immutable snapshot of the subscriptions of a single topic.
+    */
+   private static class Subscriptions
+   {
+      @SuppressWarnings("unchecked")
+      private static final Subscriptions EMPTY = new Subscriptions((AtomicReference<Object>[]) new AtomicReference<?>[0],
+                                                                    (TopicListenerBase<Object>[]) new TopicListenerBase<?>[0],
+                                                                    new boolean[0],
+                                                                    null);
+
+      private final AtomicReference<Object>[] inputs;
+      /** All the listeners of the topic in registration order. */
+      private final TopicListenerBase<Object>[] listeners;
+      /** Whether each listener is a {@link PrimitiveTopicListener} specialized for the topic. */
+      private final boolean[] primitiveFlags;
+      private final int numberOfPrimitiveListeners;
+      /** The slot shared by the {@link TopicInput}s of the topic, {@code null} if there is none. */
+      private final TopicValueSlot<Object> valueSlot;
+
+      private Subscriptions(AtomicReference<Object>[] inputs,
+                            TopicListenerBase<Object>[] listeners,
+                            boolean[] primitiveFlags,
+                            TopicValueSlot<Object> valueSlot)
+      {
+         this.inputs = inputs;
+         this.listeners = listeners;
+         this.primitiveFlags = primitiveFlags;
+         this.valueSlot = valueSlot;
+
+         int count = 0;
+         for (boolean primitiveFlag : primitiveFlags)
+         {
+            if (primitiveFlag)
+               count++;
+         }
+         numberOfPrimitiveListeners = count;
+      }
+
+      private boolean hasNonPrimitiveSubscribers()
+      {
+         return inputs.length > 0 || listeners.length > numberOfPrimitiveListeners || valueSlot != null;
+      }
+
+      private boolean isEmpty()
+      {
+         return inputs.length == 0 && listeners.length == 0 && valueSlot == null;
+      }
+   }
+}
@@ -0,0 +1,124 @@
+package us.ihmc.messager;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read-only variable updated with the latest data received for a topic, with change detection.
+ * <p>
+ * All the inputs of a topic created by a given messager read from the same {@link TopicValueSlot}
+ * such that receiving a message costs a single write however many inputs there are.
+ * </p>
+ * <p>
+ * Typical use:
+ * 
+ * <pre>
+ * long version = input.version();
+ * ...
+ * if (input.hasChangedSince(version))
+ * {
+ *    version = input.version();
+ *    process(input.get());
+ * }
+ * </pre>
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @param <T> the data type.
+ * @see Messager#createTopicInput(MessagerAPIFactory.Topic, Object)
+ * @see Messager#removeTopicInput(MessagerAPIFactory.Topic, TopicInput)
+ */
+public class TopicInput<T>
+{
+   private final TopicValueSlot<T> slot;
+   private final T initialValue;
+   private final long initialVersion;
+   /** Called once to let the messager know this input is no longer used, may be {@code null}. */
+   private final Runnable releaser;
+   private final AtomicBoolean isReleased = new AtomicBoolean(false);
+
+   /**
+    * Creates a new input reading from the given slot.
+    * 
+    * @param slot         the slot holding the latest value of the topic.
+    * @param initialValue the value of this input until the slot is updated.
+    */
+   public TopicInput(TopicValueSlot<T> slot, T initialValue)
+   {
+      this(slot, initialValue, null);
+   }
+
+   /**
+    * Creates a new input reading from the given slot.
+    * 
+    * @param slot         the slot holding the latest value of the topic.
+    * @param initialValue the value of this input until the slot is updated.
+    * @param releaser     called the first time this input is released, to stop updating the slot
+    *                     once it has no user left. Can be {@code null}.
+    */
+   public TopicInput(TopicValueSlot<T> slot, T initialValue, Runnable releaser)
+   {
+      this.slot = slot;
+      this.initialValue = initialValue;
+      this.releaser = releaser;
+      initialVersion = slot.getVersion();
+   }
+
+   /**
+    * Releases this input such that it is no longer updated, see
+    * {@link Messager#removeTopicInput(MessagerAPIFactory.Topic, TopicInput)}.
+    * 
+    * @return {@code true} if this input was released by this call, {@code false} if it had already
+    *         been released.
+    */
+   public boolean release()
+   {
+      if (!isReleased.compareAndSet(false, true))
+         return false;
+
+      if (releaser != null)
+         releaser.run();
+      return true;
+   }
+
+   /**
+    * Gets the latest data received for the topic, or the initial value if none has been received
+    * since this input was created.
+    * 
+    * @return the current value.
+    */
+   public T get()
+   {
+      return slot.getVersion() == initialVersion ? initialValue : slot.get();
+   }
+
+   /**
+    * Gets the version of the value, which is incremented every time new data is received.
+    * <p>
+    * The version should be read before calling {@link #get()} such that the value is at least as
+    * recent as the version.
+    * </p>
+    * 
+    * @return the current version.
+    */
+   public long version()
+   {
+      return slot.getVersion();
+   }
+
+   /**
+    * Tests whether new data has been received since the given version.
+    * 
+    * @param version a version previously obtained from {@link #version()}.
+    * @return {@code true} if the value has been updated since.
+    */
+   public boolean hasChangedSince(long version)
+   {
+      return slot.getVersion() != version;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "TopicInput[version: " + version() + ", value: " + get() + "]";
+   }
+}
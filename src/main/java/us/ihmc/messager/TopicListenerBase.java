@@ -11,6 +11,12 @@ public interface TopicListenerBase<T>
 {
    /**
     * The messager just received data for the topic.
+    * <p>
+    * The message may be recycled by the messager once this method returns, for instance by the
+    * {@link RingBufferMessager} or with the real-time profile of the {@link SharedMemoryMessager}. A
+    * listener keeping the message beyond this call, rather than its content, has to copy it with
+    * {@link Message#Message(Message)}.
+    * </p>
     * 
     * @param message the message.
     */
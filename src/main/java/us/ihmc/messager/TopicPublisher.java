@@ -0,0 +1,45 @@
+package us.ihmc.messager;
+
+import us.ihmc.messager.MessagerAPIFactory.Topic;
+
+/**
+ * A publisher is a handle for sending data to a single topic.
+ * <p>
+ * The topic is validated against the messager's API once when creating the publisher via
+ * {@link Messager#createPublisher(Topic)}, such that publishing does not need to resolve the topic
+ * every time. It is the preferred way of sending data when the same topic is published at a high
+ * rate.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @param <T> the data type.
+ */
+public interface TopicPublisher<T>
+{
+   /**
+    * Gets the topic this publisher sends data to.
+    * 
+    * @return the topic.
+    */
+   Topic<T> getTopic();
+
+   /**
+    * Sends data to this publisher's topic.
+    * 
+    * @param messageContent the data.
+    */
+   default void publish(T messageContent)
+   {
+      publish(messageContent, SynchronizeHint.NONE);
+   }
+
+   /**
+    * Sends data to this publisher's topic alongside a flag to indicate the preferred wait of
+    * synchronizing the execution.
+    * 
+    * @param messageContent the data.
+    * @param hint           hint for how the execution should be performed, see
+    *                       {@link Messager#submitMessage(Topic, Object, SynchronizeHint)}.
+    */
+   void publish(T messageContent, SynchronizeHint hint);
+}
@@ -0,0 +1,78 @@
+package us.ihmc.messager;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Versioned holder of the latest value received for a topic, shared by all the
+ * {@link TopicInput}s of that topic.
+ * <p>
+ * Updating the slot costs a single write however many inputs read from it. The version is
+ * incremented after each update of the value such that readers can cheaply detect whether the value
+ * has changed without ever blocking the writers.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ * @param <T> the type of the value.
+ */
+public class TopicValueSlot<T>
+{
+   private static final VarHandle VERSION;
+
+   static
+   {
+      try
+      {
+         VERSION = MethodHandles.lookup().findVarHandle(TopicValueSlot.class, "version", long.class);
+      }
+      catch (ReflectiveOperationException e)
+      {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   private volatile long version = 0L;
+   private volatile T value;
+
+   /**
+    * Creates a new slot with a {@code null} value and a version of {@code 0}.
+    */
+   public TopicValueSlot()
+   {
+   }
+
+   /**
+    * Updates the value and then increments the version.
+    * 
+    * @param newValue the new value.
+    */
+   public void set(T newValue)
+   {
+      value = newValue;
+      VERSION.getAndAdd(this, 1L);
+   }
+
+   /**
+    * Gets the latest value.
+    * 
+    * @return the value.
+    */
+   public T get()
+   {
+      return value;
+   }
+
+   /**
+    * Gets the number of times the value has been updated.
+    * <p>
+    * The value is written before the version is incremented: when the version is read before the
+    * value, the value is at least as recent as the version.
+    * </p>
+    * 
+    * @return the version of the value.
+    */
+   public long getVersion()
+   {
+      return version;
+   }
+}
@@ -0,0 +1,120 @@
+package us.ihmc.messager;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tools for delivering messages on virtual threads, meant for listeners that do blocking work such
+ * as file writes or waiting on hardware.
+ * <p>
+ * Virtual threads are only available from Java 21, they are looked up reflectively such that this
+ * library can still run on older versions. When they are not available, the executors provided here
+ * fall back to a shared pool of daemon platform threads.
+ * </p>
+ * 
+ * @author Sylvain Bertrand
+ */
+public final class VirtualThreads
+{
+   private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+   private static ExecutorService fallbackExecutor;
+   private static Executor sharedExecutor;
+
+   private VirtualThreads()
+   {
+   }
+
+   private static ThreadFactory createVirtualThreadFactory()
+   {
+      try
+      {
+         Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+         Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+         builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "MessagerVirtualThread-", 0L);
+         return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+      }
+      catch (ReflectiveOperationException | RuntimeException e)
+      { // Either before Java 21, or Java 19/20 without preview features enabled.
+         return null;
+      }
+   }
+
+   /**
+    * Tests whether virtual threads are available in the running JVM.
+    * 
+    * @return {@code true} if virtual threads are available.
+    */
+   public static boolean isSupported()
+   {
+      return VIRTUAL_THREAD_FACTORY != null;
+   }
+
+   /**
+    * Gets an executor that runs each task on a new virtual thread.
+    * <p>
+    * When virtual threads are not available, the tasks are run on a shared pool of daemon platform
+    * threads instead.
+    * </p>
+    * 
+    * @return the executor.
+    */
+   public static Executor newExecutor()
+   {
+      if (VIRTUAL_THREAD_FACTORY != null)
+         return task -> VIRTUAL_THREAD_FACTORY.newThread(task).start();
+      else
+         return getFallbackExecutor();
+   }
+
+   /**
+    * Gets the executor shared by the messagers to deliver messages on virtual threads, see
+    * {@link #newExecutor()}.
+    * 
+    * @return the shared executor.
+    */
+   public static synchronized Executor getSharedExecutor()
+   {
+      if (sharedExecutor == null)
+         sharedExecutor = newExecutor();
+      return sharedExecutor;
+   }
+
+   private static synchronized Executor getFallbackExecutor()
+   {
+      if (fallbackExecutor == null)
+      {
+         AtomicInteger threadIndex = new AtomicInteger(0);
+         fallbackExecutor = Executors.newCachedThreadPool(runnable ->
+         {
+            Thread thread = new Thread(runnable, "MessagerBlockingThread-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+         });
+      }
+      return fallbackExecutor;
+   }
+
+   /**
+    * Tests whether the given thread is a virtual thread.
+    * 
+    * @param thread the query.
+    * @return {@code true} if the thread is virtual, always {@code false} before Java 21.
+    */
+   public static boolean isVirtual(Thread thread)
+   {
+      if (VIRTUAL_THREAD_FACTORY == null)
+         return false;
+
+      try
+      {
+         return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+      }
+      catch (ReflectiveOperationException e)
+      {
+         return false;
+      }
+   }
+}
@@ -1,5 +1,6 @@
 package us.ihmc.messager;
 
+import com.sun.management.ThreadMXBean;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.junit.jupiter.api.Test;
 import us.ihmc.commons.MutationTestFacilitator;
@@ -8,15 +9,35 @@ import us.ihmc.messager.MessagerAPIFactory.Category;
 import us.ihmc.messager.MessagerAPIFactory.CategoryTheme;
 import us.ihmc.messager.MessagerAPIFactory.MessagerAPI;
 import us.ihmc.messager.MessagerAPIFactory.Topic;
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
 import us.ihmc.messager.examples.EnglishPerson;
 import us.ihmc.messager.examples.FrenchPerson;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static us.ihmc.messager.examples.EnglishPerson.ListenEnglish;
 import static us.ihmc.messager.examples.EnglishPerson.SpeakEnglish;
 import static us.ihmc.messager.examples.FrenchPerson.ListenFrench;
@@ -77,6 +98,12 @@ public class MessagerTest
 
       CategoryTheme theme = apiFactory.createCategoryTheme("SomethingElseTheme");
       Topic<Boolean> topic = rootCategory.child(theme).topic(apiFactory.createTypedTopicTheme(Boolean.class.getSimpleName()));
+      Topic<double[]> typedTopic = rootCategory.topic(apiFactory.createTypedTopicTheme("Typed", double[].class));
+      Topic<Long> longTopic = rootCategory.topic(apiFactory.createLongTopicTheme("Long"));
+      assertNull(topic.getPayloadType());
+      assertEquals(double[].class, typedTopic.getPayloadType());
+      assertEquals(Long.class, longTopic.getPayloadType());
+      assertEquals(String.class, SpeakEnglish.getPayloadType());
 
       MessagerAPI api1 = apiFactory.getAPIAndCloseFactory();
 
@@ -89,6 +116,1133 @@ public class MessagerTest
       messager.closeMessager();
    }
 
+   @Test
+   public void testTopicOrdinals() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI, FrenchPerson.FrenchAPI);
+      MessagerAPI api = apiFactory.getAPIAndCloseFactory();
+
+      assertEquals(4, api.getNumberOfTopics());
+
+      boolean[] ordinalsUsed = new boolean[api.getNumberOfTopics()];
+
+      for (Topic<?> topic : new Topic<?>[] {ListenEnglish, SpeakEnglish, ListenFrench, SpeakFrench})
+      {
+         int ordinal = api.getTopicOrdinal(topic);
+         assertFalse(ordinalsUsed[ordinal]);
+         ordinalsUsed[ordinal] = true;
+         assertSame(topic, api.getTopic(ordinal));
+         assertSame(topic.getUniqueID(), topic.getUniqueID());
+         // Simulates an ID received over network.
+         TopicID copy = new TopicID(topic.getUniqueID().getID());
+         assertEquals(ordinal, api.getTopicOrdinal(copy));
+         assertSame(topic, api.findTopic(copy));
+         assertEquals(topic.getUniqueID().hashCode(), copy.hashCode());
+         // The ID cannot be modified through its accessor.
+         copy.getID()[0]++;
+         assertEquals(topic.getUniqueID(), copy);
+      }
+
+      assertTrue(EnglishPerson.EnglishAPI.containsTopic(SpeakEnglish));
+      assertFalse(EnglishPerson.EnglishAPI.containsTopic(SpeakFrench));
+      assertEquals(-1, EnglishPerson.EnglishAPI.getTopicOrdinal(SpeakFrench.getUniqueID()));
+   }
+
+   @Test
+   public void testTopicPublisher() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      Messager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      AtomicReference<String> englishInput = messager.createInput(SpeakEnglish);
+      AtomicReference<SynchronizeHint> hint = new AtomicReference<>();
+      messager.addTopicListenerBase(SpeakEnglish, message -> hint.set(message.getSynchronizeHint()));
+
+      TopicPublisher<String> publisher = messager.createPublisher(SpeakEnglish);
+      assertSame(SpeakEnglish, publisher.getTopic());
+
+      publisher.publish("Hello");
+      assertEquals("Hello", englishInput.get());
+      assertEquals(SynchronizeHint.NONE, hint.get());
+
+      publisher.publish("Goodbye", SynchronizeHint.SYNCHRONOUS);
+      assertEquals("Goodbye", englishInput.get());
+      assertEquals(SynchronizeHint.SYNCHRONOUS, hint.get());
+
+      assertThrows(RuntimeException.class, () -> messager.createPublisher(SpeakFrench));
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testPrimitiveTopics() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      Category root = apiFactory.createRootCategory("Root");
+      Topic<Double> doubleTopic = root.topic(apiFactory.createDoubleTopicTheme("Double"));
+      Topic<Boolean> booleanTopic = root.topic(apiFactory.createBooleanTopicTheme("Boolean"));
+      Messager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      assertSame(PrimitiveType.DOUBLE, doubleTopic.getPrimitiveType());
+
+      DoubleInput doubleInput = messager.createDoubleInput(doubleTopic, -1.0);
+      AtomicReference<Double> boxedInput = messager.createInput(doubleTopic);
+      MutableInt primitiveCount = new MutableInt();
+      DoubleTopicListener primitiveListener = value -> primitiveCount.increment();
+      messager.addTopicListener(doubleTopic, primitiveListener);
+      BooleanInput booleanInput = messager.createBooleanInput(booleanTopic, false);
+
+      assertEquals(-1.0, doubleInput.get());
+
+      messager.submitDouble(doubleTopic, 3.5);
+      assertEquals(3.5, doubleInput.get());
+      assertEquals(3.5, boxedInput.get());
+      assertEquals(1, primitiveCount.intValue());
+
+      messager.submitMessage(doubleTopic, 4.5);
+      assertEquals(4.5, doubleInput.get());
+      assertEquals(4.5, boxedInput.get());
+      assertEquals(2, primitiveCount.intValue());
+
+      assertTrue(messager.removeTopicListener(doubleTopic, primitiveListener));
+      messager.submitDouble(doubleTopic, 5.5);
+      assertEquals(2, primitiveCount.intValue());
+
+      messager.submitBoolean(booleanTopic, true);
+      assertTrue(booleanInput.get());
+
+      // Primitive and regular listeners are notified in the order they were registered.
+      List<String> notifications = new ArrayList<>();
+      messager.addTopicListener(doubleTopic, value -> notifications.add("regular " + value));
+      messager.addTopicListener(doubleTopic, (DoubleTopicListener) value -> notifications.add("primitive " + value));
+      messager.addTopicListener(doubleTopic, value -> notifications.add("last " + value));
+      messager.submitDouble(doubleTopic, 6.5);
+      assertEquals(List.of("regular 6.5", "primitive 6.5", "last 6.5"), notifications);
+      notifications.clear();
+      messager.submitMessage(doubleTopic, 7.5);
+      assertEquals(List.of("regular 7.5", "primitive 7.5", "last 7.5"), notifications);
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testAsynchronousDispatch() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      messager.setDispatchExecutor(executor);
+      messager.startMessager();
+
+      List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+      AtomicReference<Thread> listenerThread = new AtomicReference<>();
+      CountDownLatch done = new CountDownLatch(1);
+      int numberOfMessages = 200;
+
+      messager.addTopicListener(SpeakEnglish, message ->
+      {
+         listenerThread.set(Thread.currentThread());
+         received.add(Integer.parseInt(message));
+         if (received.size() == numberOfMessages)
+            done.countDown();
+      });
+
+      messager.submitMessage(SpeakEnglish, "-1", SynchronizeHint.SYNCHRONOUS);
+      assertSame(Thread.currentThread(), listenerThread.get());
+      received.clear();
+
+      for (int i = 0; i < numberOfMessages; i++)
+         messager.submitMessage(SpeakEnglish, Integer.toString(i), SynchronizeHint.ASYNCHRONOUS);
+
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertNotSame(Thread.currentThread(), listenerThread.get());
+      for (int i = 0; i < numberOfMessages; i++)
+         assertEquals(i, received.get(i).intValue());
+
+      // NONE is delivered inline unless configured otherwise.
+      messager.submitMessage(SpeakEnglish, "0");
+      assertSame(Thread.currentThread(), listenerThread.get());
+
+      // Changing the executor of the topic keeps the messages in order.
+      List<Runnable> firstTasks = new ArrayList<>();
+      List<Runnable> secondTasks = new ArrayList<>();
+      List<String> listened = new ArrayList<>();
+      messager.addTopicListener(ListenEnglish, listened::add);
+      messager.setDispatchExecutor(ListenEnglish, firstTasks::add);
+      messager.submitMessage(ListenEnglish, "1", SynchronizeHint.ASYNCHRONOUS);
+      messager.setDispatchExecutor(ListenEnglish, secondTasks::add);
+      messager.submitMessage(ListenEnglish, "2", SynchronizeHint.ASYNCHRONOUS);
+      secondTasks.forEach(Runnable::run);
+      firstTasks.forEach(Runnable::run);
+      assertEquals(List.of("1", "2"), listened);
+      messager.submitMessage(ListenEnglish, "3", SynchronizeHint.ASYNCHRONOUS);
+      assertEquals(1, secondTasks.size());
+
+      messager.closeMessager();
+      executor.shutdown();
+   }
+
+   @Test
+   public void testRingBufferMessager() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      Category root = apiFactory.createRootCategory("Root");
+      Topic<Double> doubleTopic = root.topic(apiFactory.createDoubleTopicTheme("Double"));
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      // Small buffer to exercise the wrapping and the producers waiting for the consumers.
+      RingBufferMessager messager = new RingBufferMessager(apiFactory.getAPIAndCloseFactory(), 8, RingBuffer.ProducerType.MULTI, RingBufferWaitStrategy.YIELD);
+
+      int numberOfProducers = 4;
+      int numberOfMessagesPerProducer = 500;
+      int numberOfMessages = numberOfProducers * numberOfMessagesPerProducer;
+      List<List<Integer>> receivedPerListener = new ArrayList<>();
+      CountDownLatch done = new CountDownLatch(3);
+
+      for (int i = 0; i < 2; i++)
+      {
+         List<Integer> received = new ArrayList<>();
+         receivedPerListener.add(received);
+         messager.addTopicListener(SpeakEnglish, message ->
+         {
+            received.add(Integer.parseInt(message));
+            if (received.size() == numberOfMessages)
+               done.countDown();
+         });
+      }
+
+      MutableInt doubleCount = new MutableInt();
+      AtomicReference<Double> lastDouble = new AtomicReference<>();
+      messager.addTopicListener(doubleTopic, (DoubleTopicListener) value ->
+      {
+         lastDouble.set(value);
+         doubleCount.increment();
+         if (doubleCount.intValue() == numberOfMessages)
+            done.countDown();
+      });
+      AtomicReference<String> input = messager.createInput(SpeakEnglish);
+
+      messager.startMessager();
+
+      TopicPublisher<String> publisher = messager.createPublisher(SpeakEnglish);
+      ExecutorService executor = Executors.newFixedThreadPool(numberOfProducers);
+
+      for (int producerIndex = 0; producerIndex < numberOfProducers; producerIndex++)
+      {
+         int offset = producerIndex * numberOfMessagesPerProducer;
+         executor.execute(() ->
+         {
+            for (int i = 0; i < numberOfMessagesPerProducer; i++)
+            {
+               if (i % 2 == 0)
+                  publisher.publish(Integer.toString(offset + i));
+               else
+                  messager.submitMessage(SpeakEnglish, Integer.toString(offset + i));
+            }
+         });
+      }
+
+      for (int i = 0; i < numberOfMessages; i++)
+         messager.submitDouble(doubleTopic, i);
+
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      executor.shutdown();
+
+      for (List<Integer> received : receivedPerListener)
+      {
+         assertEquals(numberOfMessages, received.size());
+         // The messages from the same producer are received in order.
+         int[] lastPerProducer = new int[numberOfProducers];
+         Arrays.fill(lastPerProducer, -1);
+         for (int value : received)
+         {
+            int producerIndex = value / numberOfMessagesPerProducer;
+            assertTrue(value > lastPerProducer[producerIndex]);
+            lastPerProducer[producerIndex] = value;
+         }
+      }
+      assertEquals(numberOfMessages - 1.0, lastDouble.get());
+      assertTrue(input.get() != null);
+
+      // The publishers deliver to the inputs as any submitted message, here asynchronously.
+      List<Runnable> pendingTasks = new ArrayList<>();
+      messager.setDispatchExecutor(ListenEnglish, pendingTasks::add);
+      AtomicReference<String> asynchronousInput = messager.createInput(ListenEnglish);
+      CountDownLatch listened = new CountDownLatch(1);
+      messager.addTopicListener(ListenEnglish, message -> listened.countDown());
+      messager.createPublisher(ListenEnglish).publish("hi", SynchronizeHint.ASYNCHRONOUS);
+      assertTrue(listened.await(10, TimeUnit.SECONDS));
+      assertNull(asynchronousInput.get());
+      pendingTasks.forEach(Runnable::run);
+      assertEquals("hi", asynchronousInput.get());
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testConflation() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      List<Runnable> pendingTasks = new ArrayList<>();
+      messager.setDispatchExecutor(pendingTasks::add);
+      messager.setConflated(SpeakEnglish, true);
+      messager.startMessager();
+
+      List<String> received = new ArrayList<>();
+      messager.addTopicListener(SpeakEnglish, received::add);
+
+      for (int i = 0; i < 10; i++)
+         messager.submitMessage(SpeakEnglish, Integer.toString(i), SynchronizeHint.ASYNCHRONOUS);
+
+      // Only one delivery is scheduled and only the latest message is delivered.
+      assertEquals(1, pendingTasks.size());
+      pendingTasks.remove(0).run();
+      assertEquals(Collections.singletonList("9"), received);
+      assertEquals(9, messager.getNumberOfConflatedMessages(SpeakEnglish));
+
+      messager.submitMessage(SpeakEnglish, "10", SynchronizeHint.ASYNCHRONOUS);
+      assertEquals(1, pendingTasks.size());
+      pendingTasks.remove(0).run();
+      assertEquals("10", received.get(1));
+      assertEquals(9, messager.getNumberOfConflatedMessages(SpeakEnglish));
+
+      messager.setConflated(SpeakEnglish, false);
+      messager.submitMessage(SpeakEnglish, "11", SynchronizeHint.ASYNCHRONOUS);
+      messager.submitMessage(SpeakEnglish, "12", SynchronizeHint.ASYNCHRONOUS);
+      while (!pendingTasks.isEmpty())
+         pendingTasks.remove(0).run();
+      assertEquals(4, received.size());
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testBoundedQueue() throws Exception
+   {
+      BoundedQueue<Integer> dropOldest = new BoundedQueue<>(3, BoundedQueue.OverflowPolicy.DROP_OLDEST);
+      BoundedQueue<Integer> dropNewest = new BoundedQueue<>(3, BoundedQueue.OverflowPolicy.DROP_NEWEST);
+      BoundedQueue<Integer> conflate = new BoundedQueue<>(3, BoundedQueue.OverflowPolicy.CONFLATE);
+
+      for (int i = 0; i < 5; i++)
+      {
+         dropOldest.offer(i);
+         dropNewest.offer(i);
+         conflate.offer(i);
+      }
+
+      for (BoundedQueue<Integer> queue : List.of(dropOldest, dropNewest, conflate))
+      {
+         assertEquals(3, queue.size());
+         assertEquals(3, queue.getPeakSize());
+         assertEquals(2, queue.getNumberOfDroppedElements());
+      }
+
+      assertEquals(List.of(2, 3, 4), List.of(dropOldest.poll(), dropOldest.poll(), dropOldest.poll()));
+      assertEquals(List.of(0, 1, 2), List.of(dropNewest.poll(), dropNewest.poll(), dropNewest.poll()));
+      assertEquals(List.of(0, 1, 4), List.of(conflate.poll(), conflate.poll(), conflate.poll()));
+      assertTrue(conflate.isEmpty());
+      assertEquals(null, conflate.poll());
+
+      BoundedQueue<Integer> block = new BoundedQueue<>(1, BoundedQueue.OverflowPolicy.BLOCK);
+      block.offer(0);
+      CountDownLatch offered = new CountDownLatch(1);
+      Thread producer = new Thread(() ->
+      {
+         block.offer(1);
+         offered.countDown();
+      });
+      producer.start();
+      assertFalse(offered.await(50, TimeUnit.MILLISECONDS));
+      assertEquals(0, block.poll().intValue());
+      assertTrue(offered.await(5, TimeUnit.SECONDS));
+      assertEquals(1, block.poll().intValue());
+
+      // Bounded asynchronous delivery in the messager.
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      List<Runnable> pendingTasks = new ArrayList<>();
+      messager.setDispatchExecutor(pendingTasks::add);
+      messager.setBoundedQueue(SpeakEnglish, 4, BoundedQueue.OverflowPolicy.DROP_OLDEST);
+      messager.startMessager();
+
+      List<String> received = new ArrayList<>();
+      messager.addTopicListener(SpeakEnglish, received::add);
+
+      for (int i = 0; i < 10; i++)
+         messager.submitMessage(SpeakEnglish, Integer.toString(i), SynchronizeHint.ASYNCHRONOUS);
+
+      assertEquals(4, messager.getBoundedQueueCapacity(SpeakEnglish));
+      assertEquals(4, messager.getNumberOfQueuedMessages(SpeakEnglish));
+      assertEquals(6, messager.getNumberOfDroppedMessages(SpeakEnglish));
+      while (!pendingTasks.isEmpty())
+         pendingTasks.remove(0).run();
+      assertEquals(List.of("6", "7", "8", "9"), received);
+      assertEquals(0, messager.getNumberOfQueuedMessages(SpeakEnglish));
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testSubmitMessages() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI, FrenchPerson.FrenchAPI);
+      Messager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      List<String> received = new ArrayList<>();
+      messager.addTopicListener(SpeakEnglish, received::add);
+      messager.addTopicListener(SpeakFrench, received::add);
+
+      messager.submitMessages(List.of(new Message<>(SpeakEnglish, "one"), new Message<>(SpeakFrench, "deux"), new Message<>(SpeakEnglish, "three")));
+      assertEquals(List.of("one", "deux", "three"), received);
+
+      MessagerAPIFactory otherAPIFactory = new MessagerAPIFactory();
+      Topic<String> otherTopic = otherAPIFactory.createRootCategory("Other").topic(otherAPIFactory.createTypedTopicTheme("Other"));
+      otherAPIFactory.getAPIAndCloseFactory();
+      // Nothing is sent when one of the messages is invalid.
+      assertThrows(RuntimeException.class, () -> messager.submitMessages(List.of(new Message<>(SpeakEnglish, "four"), new Message<>(otherTopic, "five"))));
+      assertEquals(3, received.size());
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testTopicDispatchTable() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      MessagerAPI api = apiFactory.getAPIAndCloseFactory();
+      TopicDispatchTable dispatchTable = new TopicDispatchTable(api);
+      int ordinal = dispatchTable.getTopicOrdinal(SpeakEnglish);
+
+      List<String> received = new ArrayList<>();
+      TopicListener<Object> lateListener = message -> received.add("late " + message);
+      TopicListener<Object> selfRemovingListener = new TopicListener<Object>()
+      {
+         @Override
+         public void receivedMessageForTopic(Object messageContent)
+         {
+            received.add("self " + messageContent);
+            // Modifying the subscriptions while dispatching only affects the next messages.
+            dispatchTable.removeListener(ordinal, this);
+            dispatchTable.addListener(ordinal, lateListener);
+         }
+      };
+      AtomicReference<Object> input = new AtomicReference<>();
+      List<Boolean> subscriptionChanges = new ArrayList<>();
+      dispatchTable.addSubscriptionChangeListener((changedOrdinal, hasSubscribers) -> subscriptionChanges.add(hasSubscribers));
+
+      assertFalse(dispatchTable.hasSubscribers(ordinal));
+      dispatchTable.addListener(ordinal, selfRemovingListener);
+      dispatchTable.addInput(ordinal, input);
+      assertEquals(2, dispatchTable.getNumberOfSubscribers(ordinal));
+
+      dispatchTable.dispatch(ordinal, new Message<>(SpeakEnglish.getUniqueID(), "one"));
+      assertEquals(List.of("self one"), received);
+      assertEquals("one", input.get());
+
+      dispatchTable.dispatch(ordinal, new Message<>(SpeakEnglish.getUniqueID(), "two"));
+      assertEquals(List.of("self one", "late two"), received);
+
+      assertFalse(dispatchTable.removeListener(ordinal, selfRemovingListener));
+      assertTrue(dispatchTable.removeListener(ordinal, lateListener));
+      assertTrue(dispatchTable.removeInput(ordinal, input));
+      assertFalse(dispatchTable.hasSubscribers(ordinal));
+      // Only notified when gaining the first subscriber and losing the last one.
+      assertEquals(List.of(true, false), subscriptionChanges);
+
+      // The value slot counts as a subscriber until released by all its users.
+      TopicValueSlot<Object> slot = dispatchTable.acquireValueSlot(ordinal);
+      assertSame(slot, dispatchTable.acquireValueSlot(ordinal));
+      assertTrue(dispatchTable.releaseValueSlot(ordinal, slot));
+      assertTrue(dispatchTable.hasSubscribers(ordinal));
+      assertTrue(dispatchTable.releaseValueSlot(ordinal, slot));
+      assertFalse(dispatchTable.hasSubscribers(ordinal));
+      assertFalse(dispatchTable.releaseValueSlot(ordinal, slot));
+      assertEquals(List.of(true, false, true, false), subscriptionChanges);
+
+      // Clearing the topic drops the slot with its users, a stale release does not affect the new slot.
+      TopicValueSlot<Object> staleSlot = dispatchTable.acquireValueSlot(ordinal);
+      dispatchTable.clear(ordinal);
+      TopicValueSlot<Object> newSlot = dispatchTable.acquireValueSlot(ordinal);
+      assertNotSame(staleSlot, newSlot);
+      assertFalse(dispatchTable.releaseValueSlot(ordinal, staleSlot));
+      assertTrue(dispatchTable.hasSubscribers(ordinal));
+      assertTrue(dispatchTable.releaseValueSlot(ordinal, newSlot));
+      assertFalse(dispatchTable.hasSubscribers(ordinal));
+   }
+
+   @Test
+   public void testExecutorTopicListener() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      Messager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      Thread executorThread = executor.submit(Thread::currentThread).get();
+
+      List<String> received = Collections.synchronizedList(new ArrayList<>());
+      List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+      int numberOfMessages = 100;
+      CountDownLatch done = new CountDownLatch(numberOfMessages);
+      TopicListener<String> listener = message ->
+      {
+         received.add(message);
+         threads.add(Thread.currentThread());
+         done.countDown();
+      };
+      messager.addTopicListener(SpeakEnglish, listener, executor);
+      List<String> inlineReceived = new ArrayList<>();
+      messager.addTopicListener(SpeakEnglish, inlineReceived::add);
+
+      for (int i = 0; i < numberOfMessages; i++)
+         messager.submitMessage(SpeakEnglish, Integer.toString(i));
+
+      // The inline listener is notified right away.
+      assertEquals(numberOfMessages, inlineReceived.size());
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         assertEquals(Integer.toString(i), received.get(i));
+         assertSame(executorThread, threads.get(i));
+      }
+
+      // Only the wrappers are equal to each other, the raw listener is matched when removing.
+      ExecutorTopicListener<String> wrapper = new ExecutorTopicListener<>(listener, executor);
+      assertNotEquals(wrapper, listener);
+      assertNotEquals(listener, wrapper);
+      assertEquals(wrapper, new ExecutorTopicListener<>(listener, executor));
+      assertTrue(wrapper.matches(listener));
+
+      assertTrue(messager.removeTopicListener(SpeakEnglish, listener));
+      messager.submitMessage(SpeakEnglish, "after removal");
+      executor.submit(() -> null).get();
+      assertEquals(numberOfMessages, received.size());
+
+      messager.closeMessager();
+      executor.shutdown();
+   }
+
+   @Test
+   public void testVirtualThreadDelivery() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      CountDownLatch unblock = new CountDownLatch(1);
+      CountDownLatch done = new CountDownLatch(4);
+      List<String> received = Collections.synchronizedList(new ArrayList<>());
+      AtomicReference<Thread> listenerThread = new AtomicReference<>();
+
+      // Blocking listeners, neither must block the submitting thread.
+      messager.addVirtualThreadTopicListener(SpeakEnglish, message ->
+      {
+         listenerThread.set(Thread.currentThread());
+         awaitUninterruptibly(unblock);
+         done.countDown();
+      });
+      messager.setVirtualThreadDelivery(ListenEnglish, true);
+      messager.addTopicListener(ListenEnglish, message ->
+      {
+         awaitUninterruptibly(unblock);
+         received.add(message);
+         done.countDown();
+      });
+
+      messager.submitMessage(SpeakEnglish, "one");
+      messager.submitMessage(SpeakEnglish, "two");
+      messager.submitMessage(ListenEnglish, "three");
+      messager.submitMessage(ListenEnglish, "four");
+      assertEquals(4, done.getCount());
+
+      unblock.countDown();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(List.of("three", "four"), received);
+      assertNotSame(Thread.currentThread(), listenerThread.get());
+      assertEquals(VirtualThreads.isSupported(), VirtualThreads.isVirtual(listenerThread.get()));
+
+      // Disabling restores the executor the topic had before.
+      List<Runnable> pendingTasks = new ArrayList<>();
+      messager.setVirtualThreadDelivery(ListenEnglish, false);
+      messager.setDispatchExecutor(ListenEnglish, pendingTasks::add);
+      messager.setVirtualThreadDelivery(ListenEnglish, true);
+      messager.setVirtualThreadDelivery(ListenEnglish, false);
+      messager.submitMessage(ListenEnglish, "five", SynchronizeHint.ASYNCHRONOUS);
+      assertEquals(1, pendingTasks.size());
+      pendingTasks.get(0).run();
+      assertEquals(List.of("three", "four", "five"), received);
+
+      messager.closeMessager();
+
+      // The real-time profile always delivers on the submitting thread.
+      SharedMemoryMessager realtimeMessager = new SharedMemoryMessager(messager.getMessagerAPI());
+      realtimeMessager.setRealtimeProfile(true);
+      assertThrows(IllegalStateException.class, () -> realtimeMessager.setVirtualThreadDelivery(ListenEnglish, true));
+   }
+
+   @Test
+   public void testTopicInput() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      TopicInput<String> firstInput = messager.createTopicInput(SpeakEnglish, "zero");
+      TopicInput<String> secondInput = messager.createTopicInput(SpeakEnglish);
+      AtomicReference<String> legacyInput = messager.createInput(SpeakEnglish, "zero");
+
+      assertEquals("zero", firstInput.get());
+      assertNull(secondInput.get());
+      long version = firstInput.version();
+      assertFalse(firstInput.hasChangedSince(version));
+
+      messager.submitMessage(SpeakEnglish, "one");
+      assertTrue(firstInput.hasChangedSince(version));
+      assertEquals(version + 1, firstInput.version());
+      assertEquals("one", firstInput.get());
+      assertEquals("one", secondInput.get());
+      assertEquals("one", legacyInput.get());
+
+      version = firstInput.version();
+      messager.submitMessage(SpeakEnglish, "two");
+      messager.submitMessage(SpeakEnglish, "three");
+      assertEquals(version + 2, secondInput.version());
+      assertEquals("three", secondInput.get());
+
+      // Inputs created after an update start from their own initial value.
+      TopicInput<String> lateInput = messager.createTopicInput(SpeakEnglish, "late");
+      assertEquals("late", lateInput.get());
+      messager.submitMessage(SpeakEnglish, "four");
+      assertEquals("four", lateInput.get());
+
+      // Inputs are updated from concurrent publishers without tearing the version.
+      int numberOfThreads = 4;
+      int numberOfMessages = 1000;
+      long startVersion = firstInput.version();
+      ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+      for (int i = 0; i < numberOfThreads; i++)
+      {
+         executor.execute(() ->
+         {
+            for (int j = 0; j < numberOfMessages; j++)
+               messager.submitMessage(SpeakEnglish, "concurrent");
+         });
+      }
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+      assertEquals(startVersion + numberOfThreads * numberOfMessages, firstInput.version());
+      assertEquals("concurrent", firstInput.get());
+
+      // The shared slot is only dropped once all its inputs are removed.
+      assertTrue(messager.removeTopicInput(SpeakEnglish, firstInput));
+      assertFalse(messager.removeTopicInput(SpeakEnglish, firstInput));
+      assertTrue(messager.removeTopicInput(SpeakEnglish, secondInput));
+      messager.submitMessage(SpeakEnglish, "five");
+      assertEquals("five", lateInput.get());
+      assertTrue(messager.removeTopicInput(SpeakEnglish, lateInput));
+      messager.submitMessage(SpeakEnglish, "six");
+      assertEquals("five", lateInput.get());
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testPollingInput() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      PollingInput<String> input = messager.createPollingInput(SpeakEnglish, "zero", 3);
+      List<String> polled = new ArrayList<>();
+      String[] buffer = new String[4];
+
+      assertEquals("zero", input.get());
+      assertEquals(0, input.sequence());
+      assertFalse(input.pollIfNew(polled::add));
+      assertEquals(0, input.drainTo(buffer));
+
+      messager.submitMessage(SpeakEnglish, "one");
+      assertTrue(input.hasNew());
+      assertTrue(input.pollIfNew(polled::add));
+      assertFalse(input.pollIfNew(polled::add));
+      assertEquals(List.of("one"), polled);
+
+      // Only the latest value is polled, all the values since the last poll are drained.
+      messager.submitMessage(SpeakEnglish, "two");
+      messager.submitMessage(SpeakEnglish, "three");
+      assertEquals(3, input.sequence());
+      assertEquals(2, input.drainTo(buffer));
+      assertEquals("two", buffer[0]);
+      assertEquals("three", buffer[1]);
+      assertFalse(input.hasNew());
+      assertFalse(input.pollIfNew(polled::add));
+
+      // Values exceeding the capacity are skipped and accounted.
+      for (String number : new String[] {"four", "five", "six", "seven", "eight"})
+         messager.submitMessage(SpeakEnglish, number);
+      assertEquals(3, input.drainTo(buffer));
+      assertEquals(List.of("six", "seven", "eight"), Arrays.asList(buffer).subList(0, 3));
+      assertEquals(2, input.getNumberOfMissedUpdates());
+      assertEquals("eight", input.get());
+
+      messager.submitMessage(SpeakEnglish, "nine");
+      assertTrue(input.pollIfNew(polled::add));
+      assertEquals(List.of("one", "nine"), polled);
+
+      assertThrows(IllegalArgumentException.class, () -> new PollingInput<>(null, 0));
+      messager.removeTopicListener(SpeakEnglish, input);
+      messager.submitMessage(SpeakEnglish, "ten");
+      assertFalse(input.hasNew());
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testSteppedMessager() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI, FrenchPerson.FrenchAPI);
+      SteppedMessager messager = new SteppedMessager(apiFactory.getAPIAndCloseFactory(), 2);
+      messager.startMessager();
+
+      List<String> received = new ArrayList<>();
+      AtomicReference<String> input = messager.createInput(SpeakFrench, "rien");
+      messager.addTopicListener(SpeakEnglish, received::add);
+      messager.addTopicListener(SpeakFrench, received::add);
+      // Messages submitted during a step are delivered at the next step.
+      messager.addTopicListener(ListenEnglish, message -> messager.submitMessage(SpeakEnglish, "echo " + message));
+
+      messager.submitMessage(SpeakEnglish, "one");
+      messager.submitMessage(SpeakFrench, "deux", SynchronizeHint.SYNCHRONOUS);
+      messager.createPublisher(SpeakEnglish).publish("three");
+      messager.submitMessage(ListenEnglish, "four");
+      messager.submitMessage(SpeakFrench, "cinq");
+      assertTrue(received.isEmpty());
+      assertEquals("rien", input.get());
+      assertEquals(5, messager.getNumberOfPendingMessages());
+
+      messager.setMessageBudget(3);
+      assertEquals(3, messager.step());
+      assertEquals(List.of("one", "deux", "three"), received);
+      assertEquals("deux", input.get());
+
+      assertEquals(2, messager.step(0));
+      assertEquals(List.of("one", "deux", "three", "cinq"), received);
+      assertEquals("cinq", input.get());
+      assertEquals(1, messager.getNumberOfPendingMessages());
+
+      assertEquals(1, messager.step());
+      assertEquals(List.of("one", "deux", "three", "cinq", "echo four"), received);
+      assertEquals(0, messager.step());
+
+      messager.submitMessage(SpeakEnglish, "lost");
+      messager.closeMessager();
+      assertEquals(0, messager.getNumberOfPendingMessages());
+   }
+
+   @Test
+   public void testTrampolinedDispatch() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI, FrenchPerson.FrenchAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      List<String> received = new ArrayList<>();
+      messager.addTopicListener(SpeakEnglish, message ->
+      {
+         received.add(message);
+         messager.submitMessage(ListenEnglish, message + " a");
+         messager.submitMessage(ListenFrench, message + " b");
+      });
+      messager.addTopicListener(ListenEnglish, message ->
+      {
+         received.add(message);
+         messager.submitMessage(SpeakFrench, message + " c");
+      });
+      messager.addTopicListener(ListenFrench, received::add);
+      messager.addTopicListener(SpeakFrench, received::add);
+
+      // Default: depth-first.
+      messager.submitMessage(SpeakEnglish, "x");
+      assertEquals(List.of("x", "x a", "x a c", "x b"), received);
+
+      // Trampolined: breadth-first.
+      received.clear();
+      messager.setTrampolinedDispatch(true);
+      assertTrue(messager.isTrampolinedDispatch());
+      messager.submitMessage(SpeakEnglish, "x");
+      assertEquals(List.of("x", "x a", "x b", "x a c"), received);
+
+      // A failing listener does not discard the messages deferred before it failed.
+      received.clear();
+      TopicListener<String> failingListener = message ->
+      {
+         throw new IllegalStateException("failing on " + message);
+      };
+      messager.addTopicListener(SpeakEnglish, failingListener);
+      assertThrows(IllegalStateException.class, () -> messager.submitMessage(SpeakEnglish, "y"));
+      assertEquals(List.of("y", "y a", "y b", "y a c"), received);
+
+      messager.closeMessager();
+
+      // A long feedback loop does not grow the stack.
+      apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager loopMessager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      loopMessager.setTrampolinedDispatch(true);
+      loopMessager.startMessager();
+
+      int chainLength = 100000;
+      MutableInt count = new MutableInt(0);
+      int[] stackDepths = new int[2];
+      loopMessager.addTopicListener(SpeakEnglish, message ->
+      {
+         count.increment();
+         if (count.intValue() == 1)
+            stackDepths[0] = Thread.currentThread().getStackTrace().length;
+         else if (count.intValue() == chainLength)
+            stackDepths[1] = Thread.currentThread().getStackTrace().length;
+         if (count.intValue() < chainLength)
+            loopMessager.submitMessage(SpeakEnglish, message);
+      });
+      loopMessager.submitMessage(SpeakEnglish, "loop");
+      assertEquals(chainLength, count.intValue());
+      assertEquals(stackDepths[0], stackDepths[1]);
+
+      loopMessager.closeMessager();
+   }
+
+   @Test
+   public void testParallelFanOut() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      int numberOfListeners = 3;
+      ForkJoinPool pool = new ForkJoinPool(numberOfListeners);
+      messager.setParallelFanOut(SpeakEnglish, pool, true);
+
+      // The listeners can only get past the barrier if they run in parallel.
+      CyclicBarrier barrier = new CyclicBarrier(numberOfListeners);
+      List<String> received = Collections.synchronizedList(new ArrayList<>());
+      AtomicReference<String> input = messager.createInput(SpeakEnglish);
+
+      for (int i = 0; i < numberOfListeners; i++)
+      {
+         messager.addTopicListener(SpeakEnglish, message ->
+         {
+            try
+            {
+               barrier.await(5, TimeUnit.SECONDS);
+            }
+            catch (Exception e)
+            {
+               throw new RuntimeException(e);
+            }
+            received.add(message);
+         });
+      }
+
+      messager.submitMessage(SpeakEnglish, "one");
+      assertEquals(List.of("one", "one", "one"), received);
+      assertEquals("one", input.get());
+
+      // A failing listener does not prevent the other listeners from being notified.
+      TopicListener<String> failingListener = message ->
+      {
+         throw new IllegalStateException("failing on " + message);
+      };
+      messager.addTopicListener(SpeakEnglish, failingListener);
+      received.clear();
+      RuntimeException exception = assertThrows(RuntimeException.class, () -> messager.submitMessage(SpeakEnglish, "two"));
+      assertEquals(1, exception.getSuppressed().length);
+      assertEquals("failing on two", exception.getSuppressed()[0].getMessage());
+      assertEquals(List.of("two", "two", "two"), received);
+
+      // Without joining, the submission returns before the listeners are done.
+      messager.removeTopicListener(SpeakEnglish, failingListener);
+      messager.setParallelFanOut(SpeakEnglish, pool, false);
+      received.clear();
+      barrier.reset();
+      messager.submitMessage(SpeakEnglish, "three");
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (received.size() < numberOfListeners && System.nanoTime() < deadline)
+         Thread.sleep(1);
+      assertEquals(List.of("three", "three", "three"), received);
+
+      // Nor when the submissions are trampolined.
+      messager.setTrampolinedDispatch(true);
+      messager.setParallelFanOut(ListenEnglish, pool, false);
+      CountDownLatch submitted = new CountDownLatch(1);
+      CountDownLatch listened = new CountDownLatch(1);
+      messager.addTopicListener(ListenEnglish, message ->
+      {
+         try
+         {
+            if (submitted.await(5, TimeUnit.SECONDS))
+               listened.countDown();
+         }
+         catch (InterruptedException e)
+         {
+            throw new RuntimeException(e);
+         }
+      });
+      messager.submitMessage(ListenEnglish, "four");
+      submitted.countDown();
+      assertTrue(listened.await(5, TimeUnit.SECONDS));
+
+      messager.closeMessager();
+      pool.shutdown();
+   }
+
+   @Test
+   public void testRealtimeProfile() throws Exception
+   {
+      assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+      ThreadMXBean allocationMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+      assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+      allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      Category root = apiFactory.createRootCategory("Realtime");
+      Topic<Double> jointAngle = root.topic(apiFactory.createDoubleTopicTheme("JointAngle"));
+      Topic<String> mode = root.topic(apiFactory.createTypedTopicTheme("Mode"));
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.setRealtimeProfile(true);
+      assertTrue(messager.isRealtimeProfile());
+
+      DoubleInput jointAngleInput = messager.createDoubleInput(jointAngle, 0.0);
+      AtomicReference<String> modeInput = messager.createInput(mode);
+      int[] modeCount = new int[1];
+      messager.addTopicListener(mode, message -> modeCount[0]++);
+      TopicPublisher<String> modePublisher = messager.createPublisher(mode);
+      messager.startMessager();
+
+      assertThrows(IllegalStateException.class, () -> messager.addTopicListener(mode, message ->
+      {
+      }));
+      assertThrows(IllegalStateException.class, () -> messager.setRealtimeProfile(false));
+
+      String[] modes = {"idle", "walking", "standing"};
+      int numberOfIterations = 10000;
+
+      long threadID = Thread.currentThread().getId();
+      long overhead = allocationMXBean.getThreadAllocatedBytes(threadID);
+      overhead = allocationMXBean.getThreadAllocatedBytes(threadID) - overhead;
+
+      // The first rounds also measure the allocations of the JIT compilation, the least allocating
+      // round is kept. Allocating a message holder or boxing a value would take at least 16 bytes.
+      int numberOfMessages = 3 * numberOfIterations;
+      double maximumBytesPerMessage = 1.0;
+      double bytesPerMessage = Double.POSITIVE_INFINITY;
+
+      for (int round = 0; round < 20 && bytesPerMessage > maximumBytesPerMessage; round++)
+      {
+         int modeCountBefore = modeCount[0];
+         long start = allocationMXBean.getThreadAllocatedBytes(threadID);
+         for (int i = 0; i < numberOfIterations; i++)
+            publishRealtime(messager, jointAngle, mode, modePublisher, modes, i);
+         long allocated = allocationMXBean.getThreadAllocatedBytes(threadID) - start - overhead;
+         bytesPerMessage = Math.min(bytesPerMessage, (double) allocated / numberOfMessages);
+         assertEquals(2 * numberOfIterations, modeCount[0] - modeCountBefore);
+      }
+
+      assertTrue(bytesPerMessage <= maximumBytesPerMessage, "Publishing and delivering allocated " + bytesPerMessage + " bytes per message");
+      assertEquals(numberOfIterations - 1, jointAngleInput.get());
+      assertEquals(modes[(numberOfIterations - 1) % modes.length], modeInput.get());
+
+      messager.closeMessager();
+   }
+
+   private static void publishRealtime(Messager messager, Topic<Double> jointAngle, Topic<String> mode, TopicPublisher<String> modePublisher, String[] modes,
+                                       int iteration)
+   {
+      messager.submitDouble(jointAngle, iteration);
+      modePublisher.publish(modes[iteration % modes.length]);
+      messager.submitMessage(mode, modes[iteration % modes.length]);
+   }
+
+   @Test
+   public void testBatchTopicListener() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      List<List<String>> sizeBatches = new ArrayList<>();
+      List<List<String>> flushBatches = new ArrayList<>();
+      BatchingTopicListener<String> sizeListener = messager.addBatchTopicListener(SpeakEnglish, batch ->
+      {
+         assertThrows(UnsupportedOperationException.class, () -> batch.add("intruder"));
+         sizeBatches.add(new ArrayList<>(batch));
+      }, 3, -1L);
+      messager.addBatchTopicListener(SpeakEnglish, batch -> flushBatches.add(new ArrayList<>(batch)));
+
+      for (String number : new String[] {"one", "two", "three", "four", "five"})
+         messager.submitMessage(SpeakEnglish, number);
+
+      assertEquals(List.of(List.of("one", "two", "three")), sizeBatches);
+      assertTrue(flushBatches.isEmpty());
+      assertEquals(2, sizeListener.getNumberOfPendingMessages());
+
+      messager.flushBatchTopicListeners();
+      assertEquals(List.of(List.of("one", "two", "three"), List.of("four", "five")), sizeBatches);
+      assertEquals(List.of(List.of("one", "two", "three", "four", "five")), flushBatches);
+
+      // Nothing accumulated, nothing delivered.
+      messager.flushBatchTopicListeners();
+      assertEquals(2, sizeBatches.size());
+      assertEquals(1, flushBatches.size());
+
+      // The time threshold is evaluated when receiving messages.
+      List<List<String>> timeBatches = new ArrayList<>();
+      messager.addBatchTopicListener(ListenEnglish, batch -> timeBatches.add(new ArrayList<>(batch)), -1, 20L);
+      messager.submitMessage(ListenEnglish, "six");
+      Thread.sleep(30);
+      messager.submitMessage(ListenEnglish, "seven");
+      assertEquals(List.of(List.of("six", "seven")), timeBatches);
+
+      assertTrue(messager.removeTopicListener(SpeakEnglish, sizeListener));
+      messager.submitMessage(SpeakEnglish, "eight");
+      messager.flushBatchTopicListeners();
+      assertEquals(2, sizeBatches.size());
+      assertEquals(List.of("eight"), flushBatches.get(1));
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testRingBufferDrainPoint() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      RingBufferMessager messager = new RingBufferMessager(apiFactory.getAPIAndCloseFactory(), 8, RingBuffer.ProducerType.MULTI, RingBufferWaitStrategy.YIELD);
+      messager.startMessager();
+
+      // The listeners are ring-buffer consumers, the drain point still has to reach them.
+      List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+      BatchingTopicListener<String> batchingListener = messager.addBatchTopicListener(SpeakEnglish, batch -> batches.add(new ArrayList<>(batch)));
+      messager.submitMessage(SpeakEnglish, "one");
+      messager.submitMessage(SpeakEnglish, "two");
+
+      while (batchingListener.getNumberOfPendingMessages() < 2)
+         Thread.yield();
+      messager.flushBatchTopicListeners();
+      assertEquals(List.of(List.of("one", "two")), batches);
+
+      // The latest sample held back by a rate-limited listener is delivered at the drain point.
+      List<String> latest = Collections.synchronizedList(new ArrayList<>());
+      RateLimitedTopicListener<String> rateLimitedListener = messager.addTopicListener(ListenEnglish, latest::add, SubscriptionOptions.latestAtRate(10.0));
+      messager.submitMessage(ListenEnglish, "three");
+      messager.submitMessage(ListenEnglish, "four");
+
+      while (!rateLimitedListener.hasPendingMessage())
+         Thread.yield();
+      Thread.sleep(150);
+      messager.flushBatchTopicListeners();
+      assertEquals(List.of("three", "four"), latest);
+
+      messager.closeMessager();
+   }
+
+   @Test
+   public void testRateLimitedTopicListener() throws Exception
+   {
+      assertThrows(IllegalArgumentException.class, () -> SubscriptionOptions.latestAtRate(0.0));
+      assertThrows(IllegalArgumentException.class, () -> SubscriptionOptions.firstInWindow(Double.POSITIVE_INFINITY));
+      assertThrows(IllegalArgumentException.class, () -> SubscriptionOptions.everyNth(0));
+
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI);
+      SharedMemoryMessager messager = new SharedMemoryMessager(apiFactory.getAPIAndCloseFactory());
+      messager.startMessager();
+
+      List<String> everyThird = new ArrayList<>();
+      List<String> firstInWindow = new ArrayList<>();
+      List<String> latestAtTick = new ArrayList<>();
+      messager.addTopicListener(SpeakEnglish, everyThird::add, SubscriptionOptions.everyNth(3));
+      RateLimitedTopicListener<String> firstInWindowListener = messager.addTopicListener(SpeakEnglish,
+                                                                                          firstInWindow::add,
+                                                                                          SubscriptionOptions.firstInWindow(1.0e-3));
+      RateLimitedTopicListener<String> latestAtTickListener = messager.addTopicListener(SpeakEnglish,
+                                                                                         latestAtTick::add,
+                                                                                         SubscriptionOptions.latestAtRate(5.0));
+
+      for (String number : new String[] {"one", "two", "three", "four", "five", "six", "seven"})
+         messager.submitMessage(SpeakEnglish, number);
+
+      assertEquals(List.of("one", "four", "seven"), everyThird);
+      assertEquals(List.of("one"), firstInWindow);
+      assertEquals(6, firstInWindowListener.getNumberOfDroppedMessages());
+
+      // The latest message is held back until the end of the period.
+      assertEquals(List.of("one"), latestAtTick);
+      assertTrue(latestAtTickListener.hasPendingMessage());
+      assertEquals(5, latestAtTickListener.getNumberOfDroppedMessages());
+      messager.flushBatchTopicListeners();
+      assertEquals(List.of("one"), latestAtTick);
+      Thread.sleep(300);
+      messager.flushBatchTopicListeners();
+      assertEquals(List.of("one", "seven"), latestAtTick);
+      assertFalse(latestAtTickListener.hasPendingMessage());
+
+      assertTrue(messager.removeTopicListener(SpeakEnglish, latestAtTickListener));
+      Thread.sleep(300);
+      messager.submitMessage(SpeakEnglish, "eight");
+      assertEquals(List.of("one", "seven"), latestAtTick);
+
+      messager.closeMessager();
+   }
+
+   private static void awaitUninterruptibly(CountDownLatch latch)
+   {
+      try
+      {
+         latch.await();
+      }
+      catch (InterruptedException e)
+      {
+         throw new RuntimeException(e);
+      }
+   }
+
    private void frenchPersonListensToFrench(Messager messager, String messageContent, String[] numbers, MutableInt count)
    {
       LogTools.info("Je viens tout juste d'entendre que {}", messageContent);
@@ -1,20 +1,37 @@
 package us.ihmc.messager.kryo;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.lang3.mutable.MutableObject;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import us.ihmc.commons.MutationTestFacilitator;
 import us.ihmc.log.LogTools;
+import us.ihmc.messager.DeliveryMode;
+import us.ihmc.messager.Message;
 import us.ihmc.messager.Messager;
 import us.ihmc.messager.MessagerAPIFactory;
+import us.ihmc.messager.MessagerAPIFactory.Category;
+import us.ihmc.messager.MessagerAPIFactory.MessagerAPI;
+import us.ihmc.messager.MessagerAPIFactory.Topic;
+import us.ihmc.messager.MessagerAPIFactory.TopicID;
+import us.ihmc.messager.SubscriptionOptions;
+import us.ihmc.messager.SynchronizeHint;
+import us.ihmc.messager.TopicListener;
 import us.ihmc.messager.examples.EnglishPerson;
 import us.ihmc.messager.examples.FrenchPerson;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -33,6 +50,446 @@ public class KryoMessagerTest
       Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> runKryoMessagerTest());
    }
 
+   @Test
+   public void testMessageSerializer()
+   {
+      // The sub-APIs are included in a different order on each side.
+      MessagerAPIFactory senderAPIFactory = new MessagerAPIFactory();
+      senderAPIFactory.createRootCategory("TranslatorExample");
+      senderAPIFactory.includeMessagerAPIs(EnglishPerson.EnglishAPI, FrenchPerson.FrenchAPI);
+      MessagerAPI senderAPI = senderAPIFactory.getAPIAndCloseFactory();
+      MessagerAPIFactory receiverAPIFactory = new MessagerAPIFactory();
+      receiverAPIFactory.createRootCategory("TranslatorExample");
+      receiverAPIFactory.includeMessagerAPIs(FrenchPerson.FrenchAPI, EnglishPerson.EnglishAPI);
+      MessagerAPI receiverAPI = receiverAPIFactory.getAPIAndCloseFactory();
+
+      Kryo sender = createKryo(new TopicIDSerializer(senderAPI));
+      TopicIDSerializer receiverTopicIDs = new TopicIDSerializer(receiverAPI);
+      Kryo receiver = createKryo(receiverTopicIDs);
+
+      for (Topic<String> topic : List.of(SpeakEnglish, ListenEnglish, SpeakFrench, ListenFrench))
+      {
+         Message<String> message = new Message<>(topic, "hi");
+         message.setSynchronizeHint(SynchronizeHint.SYNCHRONOUS);
+         Output output = new Output(64);
+         sender.writeClassAndObject(output, message);
+         // Class ID, topic ordinal, flags, then the string with its class ID.
+         assertTrue(output.position() <= 7, "Message is " + output.position() + " bytes");
+
+         Message<?> received = (Message<?>) receiver.readClassAndObject(new Input(output.toBytes()));
+         assertEquals(receiverAPI.getTopicOrdinal(topic), receiverTopicIDs.resolveOrdinal(received.getTopicID(), null));
+         assertEquals("hi", received.getMessageContent());
+         assertEquals(SynchronizeHint.SYNCHRONOUS, received.getSynchronizeHint());
+      }
+
+      // IDs of topics that are not part of the API are sent with their full path.
+      TopicID unknownID = new TopicID(new int[] {1, 2, 3});
+      Output output = new Output(64);
+      sender.writeClassAndObject(output, new Message<>(unknownID, null));
+      Message<?> received = (Message<?>) receiver.readClassAndObject(new Input(output.toBytes()));
+      assertEquals(unknownID, received.getTopicID());
+      assertNull(received.getMessageContent());
+      assertNull(received.getSynchronizeHint());
+
+      // The hint of primitive messages is kept as well.
+      output = new Output(64);
+      sender.writeClassAndObject(output, new PrimitiveMessage(SpeakEnglish.getUniqueID(), 42L, SynchronizeHint.ASYNCHRONOUS));
+      PrimitiveMessage receivedPrimitive = (PrimitiveMessage) receiver.readClassAndObject(new Input(output.toBytes()));
+      assertEquals(receiverAPI.getTopicOrdinal(SpeakEnglish), receiverTopicIDs.resolveOrdinal(receivedPrimitive.topicID, null));
+      assertEquals(42L, receivedPrimitive.bits);
+      assertEquals(SynchronizeHint.ASYNCHRONOUS, receivedPrimitive.synchronizeHint);
+   }
+
+   @Test
+   public void testAPIHandshake()
+   {
+      Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> runAPIHandshakeTest());
+   }
+
+   private void runAPIHandshakeTest() throws Exception
+   {
+      // The client does not have the English topics.
+      ManualUpdateThread serverUpdater = new ManualUpdateThread();
+      ManualUpdateThread clientUpdater = new ManualUpdateThread();
+      KryoMessager server = KryoMessager.createServer(createAPI(EnglishPerson.EnglishAPI, FrenchPerson.FrenchAPI), 54558, serverUpdater);
+      KryoMessager client = KryoMessager.createClient(createAPI(FrenchPerson.FrenchAPI), "localhost", 54558, clientUpdater);
+      startMessagers(server, client);
+
+      while (!server.isHandshakeComplete() || !client.isHandshakeComplete())
+      {
+         serverUpdater.update();
+         clientUpdater.update();
+      }
+
+      List<String> frenchMessages = new ArrayList<>();
+      client.addTopicListener(SpeakFrench, frenchMessages::add);
+      AtomicReference<String> frenchInput = server.createInput(ListenFrench, "rien");
+      // Lets each side know the topics consumed by the other.
+      serverUpdater.update();
+      clientUpdater.update();
+      serverUpdater.update();
+
+      server.submitMessage(SpeakEnglish, "hello");
+      server.submitMessage(SpeakFrench, "bonjour");
+      assertTrue(server.submitMessageAndAwait(SpeakEnglish, "hello").isCompletedExceptionally());
+      client.submitMessage(ListenFrench, "salut");
+      serverUpdater.update();
+      clientUpdater.update();
+      assertEquals(List.of("bonjour"), frenchMessages);
+      assertEquals("salut", frenchInput.get());
+
+      client.closeMessager();
+      server.closeMessager();
+
+      // The connection is closed when the exact same API is required.
+      serverUpdater = new ManualUpdateThread();
+      clientUpdater = new ManualUpdateThread();
+      server = KryoMessager.createServer(createAPI(EnglishPerson.EnglishAPI, FrenchPerson.FrenchAPI), 54559, serverUpdater);
+      client = KryoMessager.createClient(createAPI(FrenchPerson.FrenchAPI), "localhost", 54559, clientUpdater);
+      server.setRequireIdenticalAPI(true);
+      // The connection can be rejected by the server before it is seen open.
+      CountDownLatch rejected = new CountDownLatch(1);
+      server.addMessagerStateListener(open ->
+      {
+         if (!open)
+            rejected.countDown();
+      });
+      startMessagers(server, client);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+      while (!rejected.await(1, TimeUnit.MILLISECONDS) && !server.isHandshakeComplete())
+      {
+         assertTrue(System.nanoTime() < deadline, "Neither completed nor rejected the handshake");
+         serverUpdater.update();
+         clientUpdater.update();
+      }
+
+      assertEquals(0L, rejected.getCount());
+      assertFalse(server.isHandshakeComplete());
+      client.closeMessager();
+      server.closeMessager();
+   }
+
+   @Test
+   public void testUnreliableTopic()
+   {
+      Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> runUnreliableTopicTest());
+   }
+
+   private void runUnreliableTopicTest() throws Exception
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      Category root = apiFactory.createRootCategory("Robot");
+      Topic<String> state = root.topic(apiFactory.createTypedTopicTheme("State", String.class, DeliveryMode.UNRELIABLE));
+      Topic<String> command = root.topic(apiFactory.createTypedTopicTheme("Command", String.class));
+      MessagerAPI messagerAPI = apiFactory.getAPIAndCloseFactory();
+      assertEquals(DeliveryMode.UNRELIABLE, state.getDeliveryMode());
+      assertEquals(DeliveryMode.RELIABLE, command.getDeliveryMode());
+
+      ManualUpdateThread serverUpdater = new ManualUpdateThread();
+      ManualUpdateThread clientUpdater = new ManualUpdateThread();
+      KryoMessager server = KryoMessager.createServer(messagerAPI, 54560, 54780, serverUpdater);
+      KryoMessager client = KryoMessager.createClient(messagerAPI, "localhost", 54560, 54780, clientUpdater);
+      startMessagers(server, client);
+
+      while (!server.isHandshakeComplete() || !client.isHandshakeComplete())
+      {
+         serverUpdater.update();
+         clientUpdater.update();
+      }
+
+      List<String> states = new ArrayList<>();
+      List<String> commands = new ArrayList<>();
+      client.addTopicListener(state, states::add);
+      client.addTopicListener(command, commands::add);
+      clientUpdater.update();
+      serverUpdater.update();
+
+      // Too large for a datagram, falls back to TCP.
+      String largeState = "x".repeat(4 * KryoAdapter.DEFAULT_MAX_UDP_PACKET_SIZE);
+      server.submitMessage(state, "standing");
+      server.submitMessage(state, largeState);
+      server.submitMessages(List.of(new Message<>(command, "walk"), new Message<>(state, "walking")));
+      clientUpdater.update();
+      assertEquals(List.of("standing", largeState, "walking"), states);
+      assertEquals(List.of("walk"), commands);
+      assertEquals(0L, client.getNumberOfLateMessages());
+
+      client.closeMessager();
+      server.closeMessager();
+
+      // Late and duplicated messages are discarded, a sender restarting its sequence is not.
+      assertFalse(new UnreliableMessage(5, null).isLate(4));
+      assertTrue(new UnreliableMessage(4, null).isLate(4));
+      assertTrue(new UnreliableMessage(3, null).isLate(4));
+      assertTrue(new UnreliableMessage(Integer.MAX_VALUE, null).isLate(Integer.MIN_VALUE));
+      assertFalse(new UnreliableMessage(Integer.MIN_VALUE, null).isLate(Integer.MAX_VALUE));
+      assertFalse(new UnreliableMessage(1, null).isLate(4 + UnreliableMessage.MAX_REORDERING));
+   }
+
+   @Test
+   public void testSubscriptionPropagation()
+   {
+      Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> runSubscriptionPropagationTest());
+   }
+
+   private void runSubscriptionPropagationTest() throws Exception
+   {
+      MessagerAPI messagerAPI = createAPI(EnglishPerson.EnglishAPI, FrenchPerson.FrenchAPI);
+      ManualUpdateThread serverUpdater = new ManualUpdateThread();
+      ManualUpdateThread englishUpdater = new ManualUpdateThread();
+      ManualUpdateThread frenchUpdater = new ManualUpdateThread();
+      KryoMessager server = KryoMessager.createServer(messagerAPI, 54561, serverUpdater);
+      KryoMessager englishClient = KryoMessager.createClient(messagerAPI, "localhost", 54561, englishUpdater);
+      KryoMessager frenchClient = KryoMessager.createClient(messagerAPI, "localhost", 54561, frenchUpdater);
+      List<String> englishMessages = new ArrayList<>();
+      englishClient.addTopicListener(SpeakEnglish, englishMessages::add);
+      startMessagers(server, englishClient, frenchClient);
+
+      for (int i = 0; i < 3; i++)
+      {
+         serverUpdater.update();
+         englishUpdater.update();
+         frenchUpdater.update();
+      }
+
+      // The subscriptions are advertised when connecting.
+      assertTrue(server.isTopicConsumedRemotely(SpeakEnglish));
+      assertFalse(server.isTopicConsumedRemotely(SpeakFrench));
+      assertFalse(englishClient.isTopicConsumedRemotely(ListenEnglish));
+
+      server.submitMessage(SpeakEnglish, "hello");
+      server.submitMessages(List.of(new Message<>(SpeakEnglish, "bye"), new Message<>(SpeakFrench, "salut")));
+      englishUpdater.update();
+      assertEquals(List.of("hello", "bye"), englishMessages);
+
+      // Then updated as the listeners and inputs change.
+      List<String> frenchMessages = new ArrayList<>();
+      TopicListener<String> frenchListener = frenchMessages::add;
+      frenchClient.addTopicListener(SpeakFrench, frenchListener);
+      AtomicReference<String> englishInput = server.createInput(ListenEnglish, "nothing");
+      // The changes are sent with the next update of the side they happened on.
+      serverUpdater.update();
+      assertFalse(server.isTopicConsumedRemotely(SpeakFrench));
+      frenchUpdater.update();
+      serverUpdater.update();
+      englishUpdater.update();
+      assertTrue(server.isTopicConsumedRemotely(SpeakFrench));
+      assertTrue(englishClient.isTopicConsumedRemotely(ListenEnglish));
+
+      server.submitMessage(SpeakFrench, "bonjour");
+      englishClient.submitMessage(ListenEnglish, "good morning");
+      frenchUpdater.update();
+      serverUpdater.update();
+      assertEquals(List.of("bonjour"), frenchMessages);
+      assertEquals("good morning", englishInput.get());
+
+      frenchClient.removeTopicListener(SpeakFrench, frenchListener);
+      frenchUpdater.update();
+      serverUpdater.update();
+      assertFalse(server.isTopicConsumedRemotely(SpeakFrench));
+
+      // A server awaits the acknowledgement of each client.
+      CompletableFuture<Void> acknowledgement = server.submitMessageAndAwait(SpeakEnglish, "are you there?");
+      englishUpdater.update();
+      serverUpdater.update();
+      assertFalse(acknowledgement.isDone());
+      frenchUpdater.update();
+      serverUpdater.update();
+      assertTrue(acknowledgement.isDone());
+      assertFalse(acknowledgement.isCompletedExceptionally());
+
+      // The throttling requested by a client only applies to the messages it is sent.
+      List<String> frenchHeardEnglish = new ArrayList<>();
+      frenchClient.addTopicListener(SpeakEnglish, frenchHeardEnglish::add);
+      englishClient.requestRemoteSubscriptionOptions(SpeakEnglish, SubscriptionOptions.everyNth(2));
+      frenchUpdater.update();
+      serverUpdater.update();
+      englishMessages.clear();
+      server.submitMessages(List.of(new Message<>(SpeakEnglish, "one"), new Message<>(SpeakEnglish, "two")));
+      server.submitMessage(SpeakEnglish, "three");
+      englishUpdater.update();
+      frenchUpdater.update();
+      assertEquals(List.of("one", "three"), englishMessages);
+      assertEquals(List.of("one", "two", "three"), frenchHeardEnglish);
+
+      frenchClient.closeMessager();
+      englishClient.closeMessager();
+      server.closeMessager();
+   }
+
+   @Test
+   public void testClientsWithDifferentAPIs()
+   {
+      Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> runClientsWithDifferentAPIsTest());
+   }
+
+   private void runClientsWithDifferentAPIsTest() throws Exception
+   {
+      // The topics of each client have the same wire ordinals, the server resolves them per client.
+      ManualUpdateThread serverUpdater = new ManualUpdateThread();
+      ManualUpdateThread englishUpdater = new ManualUpdateThread();
+      ManualUpdateThread frenchUpdater = new ManualUpdateThread();
+      KryoMessager server = KryoMessager.createServer(createAPI(EnglishPerson.EnglishAPI, FrenchPerson.FrenchAPI), 54562, serverUpdater);
+      KryoMessager englishClient = KryoMessager.createClient(createAPI(EnglishPerson.EnglishAPI), "localhost", 54562, englishUpdater);
+      KryoMessager frenchClient = KryoMessager.createClient(createAPI(FrenchPerson.FrenchAPI), "localhost", 54562, frenchUpdater);
+      startMessagers(server, englishClient, frenchClient);
+
+      while (!server.isHandshakeComplete() || !englishClient.isHandshakeComplete() || !frenchClient.isHandshakeComplete())
+      {
+         serverUpdater.update();
+         englishUpdater.update();
+         frenchUpdater.update();
+      }
+
+      List<String> englishMessages = new ArrayList<>();
+      List<String> frenchMessages = new ArrayList<>();
+      englishClient.addTopicListener(SpeakEnglish, englishMessages::add);
+      frenchClient.addTopicListener(SpeakFrench, frenchMessages::add);
+      AtomicReference<String> englishInput = server.createInput(ListenEnglish, "nothing");
+      AtomicReference<String> frenchInput = server.createInput(ListenFrench, "rien");
+      serverUpdater.update();
+      englishUpdater.update();
+      frenchUpdater.update();
+      serverUpdater.update();
+
+      englishClient.submitMessage(ListenEnglish, "hi");
+      frenchClient.submitMessage(ListenFrench, "salut");
+      serverUpdater.update();
+      assertEquals("hi", englishInput.get());
+      assertEquals("salut", frenchInput.get());
+
+      server.submitMessage(SpeakEnglish, "hello");
+      server.submitMessage(SpeakFrench, "bonjour");
+      englishUpdater.update();
+      frenchUpdater.update();
+      assertEquals(List.of("hello"), englishMessages);
+      assertEquals(List.of("bonjour"), frenchMessages);
+
+      // A client disconnecting does not affect the others.
+      englishClient.closeMessager();
+      serverUpdater.update();
+      assertTrue(server.isHandshakeComplete());
+      frenchClient.submitMessage(ListenFrench, "au revoir");
+      serverUpdater.update();
+      assertEquals("au revoir", frenchInput.get());
+      assertEquals("hi", englishInput.get());
+
+      frenchClient.closeMessager();
+      server.closeMessager();
+   }
+
+   @Test
+   public void testPayloadClassOnOneSide()
+   {
+      Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> runPayloadClassOnOneSideTest());
+   }
+
+   private void runPayloadClassOnOneSideTest() throws Exception
+   {
+      // Only the server has the Pose topic, its payload class sorts before the one of the shared topic.
+      MessagerAPIFactory serverAPIFactory = new MessagerAPIFactory();
+      Category serverRoot = serverAPIFactory.createRootCategory("Robot");
+      serverRoot.topic(serverAPIFactory.createTypedTopicTheme("Pose", Pose.class));
+      Topic<Velocity> serverVelocity = serverRoot.topic(serverAPIFactory.createTypedTopicTheme("Velocity", Velocity.class));
+      MessagerAPIFactory clientAPIFactory = new MessagerAPIFactory();
+      Category clientRoot = clientAPIFactory.createRootCategory("Robot");
+      Topic<Velocity> clientVelocity = clientRoot.topic(clientAPIFactory.createTypedTopicTheme("Velocity", Velocity.class));
+
+      ManualUpdateThread serverUpdater = new ManualUpdateThread();
+      ManualUpdateThread clientUpdater = new ManualUpdateThread();
+      KryoMessager server = KryoMessager.createServer(serverAPIFactory.getAPIAndCloseFactory(), 54563, serverUpdater);
+      KryoMessager client = KryoMessager.createClient(clientAPIFactory.getAPIAndCloseFactory(), "localhost", 54563, clientUpdater);
+      startMessagers(server, client);
+
+      while (!server.isHandshakeComplete() || !client.isHandshakeComplete())
+      {
+         serverUpdater.update();
+         clientUpdater.update();
+      }
+
+      List<Velocity> velocities = new ArrayList<>();
+      client.addTopicListener(clientVelocity, velocities::add);
+      clientUpdater.update();
+      serverUpdater.update();
+
+      Velocity velocity = new Velocity();
+      velocity.linear = 1.5;
+      server.submitMessage(serverVelocity, velocity);
+      clientUpdater.update();
+      assertEquals(1, velocities.size());
+      assertEquals(1.5, velocities.get(0).linear);
+      assertTrue(server.isMessagerOpen());
+
+      client.closeMessager();
+      server.closeMessager();
+   }
+
+   public static class Pose
+   {
+      public double x;
+   }
+
+   public static class Velocity
+   {
+      public double linear;
+   }
+
+   private static MessagerAPI createAPI(MessagerAPI... includedAPIs)
+   {
+      MessagerAPIFactory apiFactory = new MessagerAPIFactory();
+      apiFactory.createRootCategory("TranslatorExample");
+      apiFactory.includeMessagerAPIs(includedAPIs);
+      return apiFactory.getAPIAndCloseFactory();
+   }
+
+   private static void startMessagers(KryoMessager... messagers) throws InterruptedException
+   {
+      Thread[] threads = new Thread[messagers.length];
+
+      for (int i = 0; i < messagers.length; i++)
+      {
+         threads[i] = new Thread(messagers[i]::startMessagerBlocking);
+         threads[i].start();
+      }
+
+      for (Thread thread : threads)
+         thread.join();
+   }
+
+   private static class ManualUpdateThread implements MessagerUpdateThread
+   {
+      private Runnable runnable;
+
+      @Override
+      public void start(Runnable runnable)
+      {
+         this.runnable = runnable;
+      }
+
+      @Override
+      public void stop()
+      {
+         runnable = null;
+      }
+
+      public void update()
+      {
+         if (runnable != null)
+            runnable.run();
+      }
+   }
+
+   private static Kryo createKryo(TopicIDSerializer topicIDSerializer)
+   {
+      Kryo kryo = new Kryo();
+      kryo.register(Message.class, new MessageSerializer(topicIDSerializer), 100);
+      kryo.register(TopicID.class, topicIDSerializer, 101);
+      kryo.register(PrimitiveMessage.class, 102);
+      kryo.register(SynchronizeHint.class, 103);
+      return kryo;
+   }
+
    private void runKryoMessagerTest() throws Exception
    {
       Map<String, String> englishToFrenchNumbers = new HashMap<>();
@@ -166,7 +623,48 @@ public class KryoMessagerTest
       runUpdates(serverUpdater, clientUpdater);
       assertEquals("deux", frenchInput.get(), "Should have heard 2");
 
+      MutableInt numberOfFrenchMessages = new MutableInt();
+      serverMessager.addTopicListener(ListenFrench, message -> numberOfFrenchMessages.increment());
+      clientMessager.submitMessages(List.of(new Message<>(ListenFrench, "quatre"), new Message<>(ListenFrench, "cinq")));
+      runUpdates(serverUpdater, clientUpdater);
+      assertEquals(2, numberOfFrenchMessages.intValue(), "Should have heard the whole batch");
+      assertEquals("cinq", frenchInput.get(), "Should have heard 5 last");
+
+      // Batch listeners are notified after each update.
+      List<List<String>> englishBatches = new ArrayList<>();
+      clientMessager.addBatchTopicListener(ListenEnglish, batch -> englishBatches.add(new ArrayList<>(batch)));
+      serverMessager.submitMessage(ListenEnglish, "three");
+      serverMessager.submitMessage(ListenEnglish, "four");
+      runUpdates(serverUpdater, clientUpdater);
+      assertEquals(List.of(List.of("three", "four")), englishBatches);
+
+      // The remote side throttles the messages it sends upon request.
+      List<String> englishMessages = new ArrayList<>();
+      clientMessager.addTopicListener(ListenEnglish, englishMessages::add);
+      ((KryoMessager) clientMessager).requestRemoteSubscriptionOptions(ListenEnglish, SubscriptionOptions.everyNth(2));
+      runUpdates(serverUpdater, clientUpdater);
+      for (String number : new String[] {"five", "six", "seven"})
+         serverMessager.submitMessage(ListenEnglish, number);
+      runUpdates(serverUpdater, clientUpdater);
+      assertEquals(List.of("five", "seven"), englishMessages);
+      ((KryoMessager) clientMessager).requestRemoteSubscriptionOptions(ListenEnglish, null);
+      runUpdates(serverUpdater, clientUpdater);
+
+      // Pipelined messages are acknowledged once processed by the remote listeners.
+      CompletableFuture<Void> firstAcknowledgement = clientMessager.submitMessageAndAwait(SpeakFrench, "un");
+      CompletableFuture<Void> secondAcknowledgement = clientMessager.submitMessageAndAwait(SpeakFrench, "deux");
+      assertFalse(firstAcknowledgement.isDone());
+      assertFalse(secondAcknowledgement.isDone());
+      runUpdates(serverUpdater, clientUpdater);
+      assertTrue(firstAcknowledgement.isDone());
+      assertTrue(secondAcknowledgement.isDone());
+      assertFalse(secondAcknowledgement.isCompletedExceptionally());
+      assertEquals("the French said: two", englishInput.get(), "Should have heard 2 last");
+
+      CompletableFuture<Void> lostAcknowledgement = serverMessager.submitMessageAndAwait(ListenEnglish, "lost");
+      clientMessager.closeMessager();
       serverMessager.closeMessager();
+      assertTrue(lostAcknowledgement.isCompletedExceptionally());
    }
 
    private void runUpdates(MutableObject<Runnable> serverUpdater, MutableObject<Runnable> clientUpdater)